@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Joiner;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.Status;
+import io.fabric8.kubernetes.api.model.StatusBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Raw access to the Kubernetes REST API through the HTTP client of the {@link KubernetesClient}, for the requests
+ * that are not covered by the typed client DSL.
+ * <p>
+ * The kinds without a dedicated updater are resolved through the API discovery of their group version, which is
+ * requested at most once per group version.
+ */
+final class ApiResources {
+    /**
+     * Ask the API server to return only the metadata of the listed resources.
+     */
+    private static final String ACCEPT_METADATA_LIST =
+            "application/json;as=PartialObjectMetadataList;g=meta.k8s.io;v=v1,application/json";
+
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private final String masterUrl;
+    private final OkHttpClient httpClient;
+    private final Map<String, Map<String, ResourcePaths.ResourceType>> discovered = new ConcurrentHashMap<>();
+
+    ApiResources(KubernetesClient client) {
+        this.masterUrl = client.getMasterUrl().toString();
+        this.httpClient = client.adapt(OkHttpClient.class);
+    }
+
+    String getMasterUrl() {
+        return masterUrl;
+    }
+
+    OkHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Resolve the REST resource of a kind.
+     *
+     * @param kind       the resource kind
+     * @param apiVersion the API version of the resource, may be {@code null} for the kinds with a dedicated updater
+     * @return the resource type
+     * @throws IOException if the kind is not served by the API server
+     */
+    ResourcePaths.ResourceType resolve(String kind, String apiVersion) throws IOException {
+        ResourcePaths.ResourceType type = ResourcePaths.knownType(kind);
+        if (type != null) {
+            return type;
+        }
+        if (StringUtils.isEmpty(apiVersion)) {
+            throw new IOException(Messages.ApiResources_unknownResourceType(kind, apiVersion));
+        }
+        Map<String, ResourcePaths.ResourceType> types = discovered.get(apiVersion);
+        if (types == null || !types.containsKey(kind)) {
+            // the custom resource definition may be created in the same deployment, so look it up again
+            types = discover(apiVersion);
+            discovered.put(apiVersion, types);
+        }
+        type = types.get(kind);
+        if (type == null) {
+            throw new IOException(Messages.ApiResources_unknownResourceType(kind, apiVersion));
+        }
+        return type;
+    }
+
+    /**
+     * List the names and resource versions of the resources of a kind, with a metadata-only list request.
+     *
+     * @param kind       the resource kind
+     * @param apiVersion the API version of the resource, may be {@code null} for the kinds with a dedicated updater
+     * @param namespace  the namespace, ignored for the cluster-scoped resources
+     * @return the resource versions by the resource names
+     * @throws IOException if the request fails
+     */
+    Map<String, String> listResourceVersions(String kind, String apiVersion, String namespace) throws IOException {
+        ResourcePaths.ResourceType type = resolve(kind, apiVersion);
+        String version = StringUtils.defaultIfEmpty(apiVersion, type.getDefaultApiVersion());
+        Request request = new Request.Builder()
+                .url(ResourcePaths.resource(masterUrl, version, type, namespace, null).build())
+                .header("Accept", ACCEPT_METADATA_LIST)
+                .get()
+                .build();
+        Map<String, String> versions = new HashMap<>();
+        try (Response response = httpClient.newCall(request).execute()) {
+            String body = readBody(response);
+            if (!response.isSuccessful()) {
+                throw requestFailed(response.code(), body);
+            }
+            for (JsonNode item : Serialization.jsonMapper().readTree(body).path("items")) {
+                JsonNode metadata = item.path("metadata");
+                versions.put(metadata.path("name").asText(), metadata.path("resourceVersion").asText());
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Get the live state of a resource.
+     *
+     * @param resource the resource loaded from the configuration
+     * @param <T>      the resource type
+     * @return the live resource, or {@code null} if it does not exist
+     * @throws IOException if the request fails
+     */
+    <T extends HasMetadata> T get(T resource) throws IOException {
+        Request request = new Request.Builder()
+                .url(url(resource, resource.getMetadata().getName()).build())
+                .get()
+                .build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            String body = readBody(response);
+            if (response.code() == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            return parse(response, body, resource);
+        }
+    }
+
+    /**
+     * List the resources of the same kind in the namespace of a resource.
+     *
+     * @param resource the resource loaded from the configuration
+     * @param labels   the labels the listed resources should match, empty to list all
+     * @param <T>      the resource type
+     * @return the resources in the cluster
+     * @throws IOException if the request fails
+     */
+    @SuppressWarnings("unchecked")
+    <T extends HasMetadata> List<T> list(T resource, Map<String, String> labels) throws IOException {
+        HttpUrl.Builder url = url(resource, null);
+        if (!labels.isEmpty()) {
+            url.addQueryParameter("labelSelector", Joiner.on(',').withKeyValueSeparator("=").join(labels));
+        }
+        Request request = new Request.Builder()
+                .url(url.build())
+                .get()
+                .build();
+        List<T> items = new ArrayList<>();
+        try (Response response = httpClient.newCall(request).execute()) {
+            String body = readBody(response);
+            if (!response.isSuccessful()) {
+                throw requestFailed(response.code(), body);
+            }
+            for (JsonNode item : Serialization.jsonMapper().readTree(body).path("items")) {
+                items.add((T) Serialization.jsonMapper().treeToValue(item, resource.getClass()));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Create a resource.
+     *
+     * @param resource the resource to be created
+     * @param <T>      the resource type
+     * @return the resource returned by the API server
+     * @throws IOException if the request fails
+     */
+    <T extends HasMetadata> T create(T resource) throws IOException {
+        Request request = new Request.Builder()
+                .url(url(resource, null).build())
+                .post(RequestBody.create(JSON, toJson(resource, null)))
+                .build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            return parse(response, readBody(response), resource);
+        }
+    }
+
+    /**
+     * Replace the live resource with the desired one, at the resource version of the live resource, so that the
+     * request fails with HTTP 409 Conflict if the resource is changed by others in between.
+     *
+     * @param original the live resource
+     * @param current  the desired resource
+     * @param <T>      the resource type
+     * @return the resource returned by the API server, or {@code null} if the resource no longer exists
+     * @throws IOException if the request fails
+     */
+    <T extends HasMetadata> T replace(T original, T current) throws IOException {
+        Request request = new Request.Builder()
+                .url(url(current, current.getMetadata().getName()).build())
+                .put(RequestBody.create(JSON, toJson(current, original.getMetadata().getResourceVersion())))
+                .build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            String body = readBody(response);
+            if (response.code() == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            return parse(response, body, current);
+        }
+    }
+
+    private HttpUrl.Builder url(HasMetadata resource, String name) throws IOException {
+        String kind = ApplyPlanner.kindOf(resource);
+        ResourcePaths.ResourceType type = resolve(kind, resource.getApiVersion());
+        String apiVersion = StringUtils.defaultIfEmpty(resource.getApiVersion(), type.getDefaultApiVersion());
+        return ResourcePaths.resource(masterUrl, apiVersion, type, ApplyPlanner.namespaceOf(resource), name);
+    }
+
+    private String toJson(HasMetadata resource, String resourceVersion) throws IOException {
+        String kind = ApplyPlanner.kindOf(resource);
+        ResourcePaths.ResourceType type = resolve(kind, resource.getApiVersion());
+        ObjectNode manifest = Serialization.jsonMapper().valueToTree(resource);
+        manifest.put("apiVersion", StringUtils.defaultIfEmpty(resource.getApiVersion(), type.getDefaultApiVersion()));
+        manifest.put("kind", kind);
+        if (resourceVersion != null) {
+            manifest.with("metadata").put("resourceVersion", resourceVersion);
+        }
+        return Serialization.jsonMapper().writeValueAsString(manifest);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends HasMetadata> T parse(Response response, String body, T resource) throws IOException {
+        if (!response.isSuccessful()) {
+            throw requestFailed(response.code(), body);
+        }
+        return (T) Serialization.jsonMapper().readValue(body, resource.getClass());
+    }
+
+    private Map<String, ResourcePaths.ResourceType> discover(String apiVersion) throws IOException {
+        Request request = new Request.Builder()
+                .url(ResourcePaths.groupVersion(masterUrl, apiVersion).build())
+                .get()
+                .build();
+        Map<String, ResourcePaths.ResourceType> types = new HashMap<>();
+        try (Response response = httpClient.newCall(request).execute()) {
+            String body = readBody(response);
+            if (response.code() == HttpURLConnection.HTTP_NOT_FOUND) {
+                return types;
+            }
+            if (!response.isSuccessful()) {
+                throw requestFailed(response.code(), body);
+            }
+            for (JsonNode resource : Serialization.jsonMapper().readTree(body).path("resources")) {
+                String plural = resource.path("name").asText();
+                // skip the subresources, e.g., deployments/scale
+                if (plural.isEmpty() || plural.indexOf('/') >= 0) {
+                    continue;
+                }
+                types.put(resource.path("kind").asText(),
+                        new ResourcePaths.ResourceType(apiVersion, plural, resource.path("namespaced").asBoolean()));
+            }
+        }
+        return types;
+    }
+
+    static String readBody(Response response) throws IOException {
+        ResponseBody body = response.body();
+        return body == null ? "" : body.string();
+    }
+
+    /**
+     * Build the exception for a failed request, in the same form as the one thrown by the typed client DSL.
+     */
+    static KubernetesClientException requestFailed(int code, String body) {
+        Status status = null;
+        try {
+            status = Serialization.jsonMapper().readValue(body, Status.class);
+        } catch (IOException e) {
+            // not a Status response, e.g., from a proxy in front of the API server
+        }
+        if (status == null || status.getCode() == null) {
+            status = new StatusBuilder()
+                    .withCode(code)
+                    .withMessage(body)
+                    .build();
+        }
+        return new KubernetesClientException(status);
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.google.common.base.Ticker;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Circuit breakers of the API servers, shared by all the clients in the JVM, so that the deployments to an API server
+ * that is down fail fast instead of waiting for the socket timeouts of every request.
+ * <p>
+ * Each API server has a circuit, which records the outcome of the last {@link #WINDOW_SIZE} requests sent by any
+ * client:
+ * <ul>
+ * <li><b>Closed</b>: the requests are sent. When at least {@link #MINIMUM_CALLS} requests are recorded, and
+ * {@link #FAILURE_RATE_THRESHOLD} percent of them failed (connection failures, timeouts, or HTTP 5xx), or
+ * {@link #SLOW_CALL_RATE_THRESHOLD} percent of them took {@link #SLOW_CALL_MILLIS} milliseconds or longer, the circuit
+ * opens.</li>
+ * <li><b>Open</b>: the requests are rejected at once with {@link CircuitOpenException}, for {@link #OPEN_SECONDS}
+ * seconds.</li>
+ * <li><b>Half-open</b>: the next request first probes {@code /readyz}, or {@code /healthz} on the API servers that
+ * do not have it, and the other requests are still rejected meanwhile. The circuit closes if the API server is
+ * healthy, or opens again otherwise.</li>
+ * </ul>
+ * The thresholds can be changed with the system properties of the same names, and the circuit breakers disabled
+ * with {@link #DISABLED}. The watch requests are not counted as slow.
+ */
+public final class ApiServerCircuitBreaker {
+    private static final Logger LOGGER = Logger.getLogger(ApiServerCircuitBreaker.class.getName());
+
+    static final boolean DISABLED = Boolean.getBoolean(ApiServerCircuitBreaker.class.getName() + ".disabled");
+    static final int WINDOW_SIZE = Integer.getInteger(ApiServerCircuitBreaker.class.getName() + ".windowSize", 20);
+    static final int MINIMUM_CALLS =
+            Integer.getInteger(ApiServerCircuitBreaker.class.getName() + ".minimumCalls", 10);
+    static final int FAILURE_RATE_THRESHOLD =
+            Integer.getInteger(ApiServerCircuitBreaker.class.getName() + ".failureRateThreshold", 50);
+    static final long SLOW_CALL_MILLIS =
+            Long.getLong(ApiServerCircuitBreaker.class.getName() + ".slowCallMillis", 10000);
+    static final int SLOW_CALL_RATE_THRESHOLD =
+            Integer.getInteger(ApiServerCircuitBreaker.class.getName() + ".slowCallRateThreshold", 80);
+    static final long OPEN_SECONDS = Long.getLong(ApiServerCircuitBreaker.class.getName() + ".openSeconds", 30);
+
+    private static final String[] HEALTH_PATHS = {"readyz", "healthz"};
+
+    private static final ApiServerCircuitBreaker INSTANCE = new ApiServerCircuitBreaker(
+            WINDOW_SIZE, MINIMUM_CALLS, FAILURE_RATE_THRESHOLD, TimeUnit.MILLISECONDS.toNanos(SLOW_CALL_MILLIS),
+            SLOW_CALL_RATE_THRESHOLD, TimeUnit.SECONDS.toNanos(OPEN_SECONDS), Ticker.systemTicker());
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long slowCallNanos;
+    private final int slowCallRateThreshold;
+    private final long openNanos;
+    private final Ticker ticker;
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    ApiServerCircuitBreaker(int windowSize,
+                            int minimumCalls,
+                            int failureRateThreshold,
+                            long slowCallNanos,
+                            int slowCallRateThreshold,
+                            long openNanos,
+                            Ticker ticker) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = slowCallNanos;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openNanos = openNanos;
+        this.ticker = ticker;
+    }
+
+    public static ApiServerCircuitBreaker get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Add the circuit breaker of the API server to the HTTP client.
+     *
+     * @param http      the HTTP client
+     * @param serverUrl the URL of the API server
+     * @return the HTTP client with the circuit breaker, or the given one if the circuit breakers are disabled
+     */
+    public OkHttpClient decorate(OkHttpClient http, String serverUrl) {
+        if (DISABLED || serverUrl == null) {
+            return http;
+        }
+        return http.newBuilder().addInterceptor(interceptor(serverUrl)).build();
+    }
+
+    Interceptor interceptor(final String serverUrl) {
+        final String key = ApiServerRateLimiter.key(serverUrl);
+        return new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                return ApiServerCircuitBreaker.this.intercept(chain, serverUrl, circuit(key));
+            }
+        };
+    }
+
+    /**
+     * Fail at once if the circuit of the API server is open, before any request is prepared.
+     *
+     * @param serverUrl the URL of the API server
+     * @throws CircuitOpenException if the circuit is open, and not due for a probe yet
+     */
+    public void checkAvailable(String serverUrl) throws CircuitOpenException {
+        if (DISABLED || serverUrl == null) {
+            return;
+        }
+        Circuit circuit = circuits.get(ApiServerRateLimiter.key(serverUrl));
+        if (circuit != null) {
+            circuit.check(serverUrl, ticker.read());
+        }
+    }
+
+    State getState(String serverUrl) {
+        Circuit circuit = circuits.get(ApiServerRateLimiter.key(serverUrl));
+        return circuit == null ? State.CLOSED : circuit.getState();
+    }
+
+    Circuit circuit(String key) {
+        Circuit circuit = circuits.get(key);
+        if (circuit == null) {
+            Circuit created = new Circuit();
+            circuit = circuits.putIfAbsent(key, created);
+            if (circuit == null) {
+                circuit = created;
+            }
+        }
+        return circuit;
+    }
+
+    private Response intercept(Interceptor.Chain chain, String serverUrl, Circuit circuit) throws IOException {
+        Request request = chain.request();
+        if (circuit.acquire(serverUrl, ticker.read())) {
+            boolean healthy = false;
+            try {
+                healthy = probe(chain, serverUrl);
+            } finally {
+                circuit.onProbe(serverUrl, healthy, ticker.read());
+            }
+            if (!healthy) {
+                circuit.check(serverUrl, ticker.read());
+            }
+        }
+
+        boolean watch = "true".equals(request.url().queryParameter("watch"));
+        long start = ticker.read();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            // the requests cancelled or interrupted by the caller do not tell about the API server
+            if (!(e instanceof InterruptedIOException) || e instanceof SocketTimeoutException) {
+                circuit.record(serverUrl, true, false, ticker.read());
+            }
+            throw e;
+        }
+        long end = ticker.read();
+        boolean failure = response.code() >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+        circuit.record(serverUrl, failure, !watch && end - start >= slowCallNanos, end);
+        return response;
+    }
+
+    /**
+     * Check the health of the API server with the credentials of the intercepted request.
+     */
+    private static boolean probe(Interceptor.Chain chain, String serverUrl) {
+        HttpUrl base = HttpUrl.parse(serverUrl);
+        if (base == null) {
+            return false;
+        }
+        for (String path : HEALTH_PATHS) {
+            Request request = chain.request().newBuilder()
+                    .url(base.newBuilder().addPathSegment(path).build())
+                    .get()
+                    .build();
+            try (Response response = chain.proceed(request)) {
+                if (response.isSuccessful()) {
+                    return true;
+                }
+                if (response.code() != HttpURLConnection.HTTP_NOT_FOUND) {
+                    return false;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to probe " + serverUrl, e);
+                return false;
+            }
+        }
+        return false;
+    }
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    /**
+     * The state of the circuit of an API server, with the outcomes of the recent requests in a ring buffer.
+     */
+    final class Circuit {
+        private final boolean[] failures = new boolean[windowSize];
+        private final boolean[] slowCalls = new boolean[windowSize];
+        private int recorded;
+        private int next;
+        private int failureCount;
+        private int slowCallCount;
+        private State state = State.CLOSED;
+        private long openedAt;
+        private String reason;
+
+        synchronized State getState() {
+            return state;
+        }
+
+        /**
+         * Reject the request if the circuit is open and not due for a probe, or is being probed.
+         */
+        synchronized void check(String serverUrl, long now) throws CircuitOpenException {
+            if (state == State.HALF_OPEN || (state == State.OPEN && now - openedAt < openNanos)) {
+                long waitSeconds = Math.max(0, TimeUnit.NANOSECONDS.toSeconds(openedAt + openNanos - now));
+                throw new CircuitOpenException(
+                        Messages.ApiServerCircuitBreaker_open(serverUrl, reason, waitSeconds));
+            }
+        }
+
+        /**
+         * Let the request through.
+         *
+         * @return {@code true} if the caller must probe the API server first
+         * @throws CircuitOpenException if the request is rejected
+         */
+        synchronized boolean acquire(String serverUrl, long now) throws CircuitOpenException {
+            check(serverUrl, now);
+            if (state == State.OPEN) {
+                state = State.HALF_OPEN;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void onProbe(String serverUrl, boolean healthy, long now) {
+            if (healthy) {
+                LOGGER.log(Level.INFO, "API server {0} is healthy again, closing the circuit", serverUrl);
+                reset();
+                state = State.CLOSED;
+            } else {
+                open(serverUrl, Messages.ApiServerCircuitBreaker_probeFailed(), now);
+            }
+        }
+
+        synchronized void record(String serverUrl, boolean failure, boolean slow, long now) {
+            if (state != State.CLOSED) {
+                return;
+            }
+            if (recorded == windowSize) {
+                if (failures[next]) {
+                    --failureCount;
+                }
+                if (slowCalls[next]) {
+                    --slowCallCount;
+                }
+            } else {
+                ++recorded;
+            }
+            failures[next] = failure;
+            slowCalls[next] = slow;
+            if (failure) {
+                ++failureCount;
+            }
+            if (slow) {
+                ++slowCallCount;
+            }
+            next = (next + 1) % windowSize;
+
+            if (recorded < minimumCalls) {
+                return;
+            }
+            final int percent = 100;
+            if (failureCount * percent >= failureRateThreshold * recorded) {
+                open(serverUrl, Messages.ApiServerCircuitBreaker_failureRate(failureCount, recorded), now);
+            } else if (slowCallCount * percent >= slowCallRateThreshold * recorded) {
+                open(serverUrl, Messages.ApiServerCircuitBreaker_slowCallRate(slowCallCount, recorded,
+                        TimeUnit.NANOSECONDS.toMillis(slowCallNanos)), now);
+            }
+        }
+
+        private void open(String serverUrl, String why, long now) {
+            LOGGER.log(Level.WARNING, "Opening the circuit of API server {0}: {1}", new Object[]{serverUrl, why});
+            state = State.OPEN;
+            openedAt = now;
+            reason = why;
+            reset();
+        }
+
+        private void reset() {
+            recorded = 0;
+            next = 0;
+            failureCount = 0;
+            slowCallCount = 0;
+        }
+    }
+
+    /**
+     * Thrown when a request is rejected because the circuit of the API server is open.
+     */
+    public static final class CircuitOpenException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side rate limiter of the requests to the API servers, shared by all the clients in the JVM, with one token
+ * bucket per API server URL.
+ * <p>
+ * Like the token bucket rate limiter of client-go, a bucket holds up to {@code burst} tokens, refilled at {@code qps}
+ * tokens per second, and each request takes one token. A request that finds no token waits for its turn instead of
+ * failing: the tokens are reserved in the order of the requests, so the builds sharing an API server are served
+ * fairly.
+ * <p>
+ * Every pooled client is throttled, with {@link #DEFAULT_QPS} and {@link #DEFAULT_BURST} unless its
+ * {@link TransportProfile} sets the rate, like the defaults of kubectl. A default rate of zero disables the limit for
+ * the clients without a rate of their own. The clients sharing an API server may ask for different rates: the bucket
+ * of the server takes the lowest rate and burst asked for, so that no client raises the limit set for another.
+ * <p>
+ * The time waited is recorded to the {@link WaitAccount} attached to the thread sending the request, if any.
+ */
+public final class ApiServerRateLimiter {
+    static final int DEFAULT_QPS = Integer.getInteger(ApiServerRateLimiter.class.getName() + ".qps", 50);
+    static final int DEFAULT_BURST = Integer.getInteger(ApiServerRateLimiter.class.getName() + ".burst", 300);
+
+    private static final ApiServerRateLimiter INSTANCE = new ApiServerRateLimiter();
+
+    private static final ThreadLocal<WaitAccount> CURRENT_ACCOUNT = new ThreadLocal<>();
+
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    ApiServerRateLimiter() {
+    }
+
+    public static ApiServerRateLimiter get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Create an interceptor that takes a token from the bucket of the API server before each request.
+     *
+     * @param serverUrl the URL of the API server
+     * @param qps       the refill rate of the bucket, in tokens per second
+     * @param burst     the capacity of the bucket
+     * @return the interceptor to add to the HTTP client
+     */
+    public Interceptor interceptor(String serverUrl, final double qps, final int burst) {
+        final String key = key(serverUrl);
+        return new Interceptor() {
+            @Override
+            public Response intercept(Chain chain) throws IOException {
+                acquire(key, qps, burst);
+                return chain.proceed(chain.request());
+            }
+        };
+    }
+
+    /**
+     * Normalize the API server URL, ignoring the case and the trailing slash.
+     */
+    static String key(String serverUrl) {
+        return StringUtils.removeEnd(StringUtils.lowerCase(serverUrl), "/");
+    }
+
+    /**
+     * Take a token from the bucket of the API server, waiting for it if the bucket is empty.
+     *
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    void acquire(String key, double qps, int burst) throws InterruptedIOException {
+        TokenBucket bucket = bucket(key, qps, burst);
+        long waitNanos = bucket.reserve(System.nanoTime());
+        WaitAccount account = CURRENT_ACCOUNT.get();
+        if (account != null) {
+            account.record(waitNanos);
+        }
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(Messages.ApiServerRateLimiter_interrupted(key));
+            }
+        }
+    }
+
+    TokenBucket bucket(String key, double qps, int burst) {
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            TokenBucket created = new TokenBucket(qps, burst, System.nanoTime());
+            bucket = buckets.putIfAbsent(key, created);
+            if (bucket == null) {
+                return created;
+            }
+        }
+        // the clients with different profiles for the same API server share the bucket, with the lowest settings
+        bucket.limitRate(qps, burst);
+        return bucket;
+    }
+
+    /**
+     * A token bucket whose tokens may be reserved ahead of time, so that the waiting requests are served in order.
+     */
+    static final class TokenBucket {
+        private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+        private double qps;
+        private int burst;
+        private double tokens;
+        private long lastRefillNanos;
+
+        TokenBucket(double qps, int burst, long nowNanos) {
+            this.qps = qps;
+            this.burst = burst;
+            this.tokens = burst;
+            this.lastRefillNanos = nowNanos;
+        }
+
+        /**
+         * Lower the rate and the burst to the given ones if they are lower, they are never raised.
+         */
+        synchronized void limitRate(double maxQps, int maxBurst) {
+            qps = Math.min(qps, maxQps);
+            burst = Math.min(burst, maxBurst);
+            tokens = Math.min(tokens, burst);
+        }
+
+        /**
+         * Take a token, reserving a future one if the bucket is empty.
+         *
+         * @param nowNanos the current {@link System#nanoTime()}
+         * @return how long the caller must wait before using the token, in nanoseconds
+         */
+        synchronized long reserve(long nowNanos) {
+            if (nowNanos > lastRefillNanos) {
+                tokens = Math.min(burst, tokens + (nowNanos - lastRefillNanos) * qps / NANOS_PER_SECOND);
+                lastRefillNanos = nowNanos;
+            }
+            tokens -= 1;
+            if (tokens >= 0) {
+                return 0;
+            }
+            return (long) Math.ceil(-tokens / qps * NANOS_PER_SECOND);
+        }
+    }
+
+    /**
+     * The time waited for the rate limiter by the requests of one deployment.
+     */
+    public static final class WaitAccount {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong throttledRequests = new AtomicLong();
+        private final AtomicLong waitedNanos = new AtomicLong();
+
+        /**
+         * Record the requests sent by the current thread to this account, until it is detached.
+         *
+         * @return the account previously attached to the thread, to be restored by {@link #detach(WaitAccount)}
+         */
+        public WaitAccount attach() {
+            WaitAccount previous = CURRENT_ACCOUNT.get();
+            CURRENT_ACCOUNT.set(this);
+            return previous;
+        }
+
+        /**
+         * Stop recording the requests sent by the current thread, restoring the previously attached account.
+         *
+         * @param previous the account returned by {@link #attach()}
+         */
+        public static void detach(WaitAccount previous) {
+            if (previous == null) {
+                CURRENT_ACCOUNT.remove();
+            } else {
+                CURRENT_ACCOUNT.set(previous);
+            }
+        }
+
+        void record(long nanos) {
+            requests.incrementAndGet();
+            if (nanos > 0) {
+                throttledRequests.incrementAndGet();
+                waitedNanos.addAndGet(nanos);
+            }
+        }
+
+        /**
+         * Get the number of requests that went through a rate limiter.
+         */
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public long getThrottledRequests() {
+            return throttledRequests.get();
+        }
+
+        public long getWaitedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(waitedNanos.get());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.google.common.base.Joiner;
+import com.google.common.util.concurrent.SettableFuture;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.client.utils.Serialization;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-flight coalescing of the identical applies running at the same time in the JVM, e.g., the shared
+ * ConfigMaps or the registry pull Secret deployed by several builds to the same namespace.
+ * <p>
+ * The applies are identified by the cluster, the kind, namespace and name of the resource, and the digest of its
+ * desired state. The first one to {@link #join(String)} a key leads the flight and sends the requests. The others
+ * joining the key before the leader {@link Flight#complete(HasMetadata, HasMetadata) completes} wait for it and
+ * share its result, instead of sending the same requests and racing each other into conflicts. If the leader
+ * {@link Flight#fail() fails}, each of them applies the resource by itself.
+ * <p>
+ * The state of the resource found by the leader before its apply is shared along with the result, so that the
+ * {@link ResourceUpdateMonitor} of the others is told about an update rather than a creation when the resource
+ * already existed.
+ */
+final class ApplyCoalescer {
+    private static final ApplyCoalescer INSTANCE = new ApplyCoalescer();
+
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    ApplyCoalescer() {
+    }
+
+    static ApplyCoalescer get() {
+        return INSTANCE;
+    }
+
+    static String key(String cluster, String kind, String namespace, String name, String digest, String mode) {
+        return Joiner.on('\n').useForNull("").join(cluster, kind, namespace, name, digest, mode);
+    }
+
+    /**
+     * Join the flight of the given key, or start one.
+     *
+     * @param key the identity of the apply
+     * @return the flight, led by the caller if {@link Flight#isLeader()}
+     */
+    Flight join(String key) {
+        Flight created = new Flight(key, true);
+        Flight existing = flights.putIfAbsent(key, created);
+        if (existing == null) {
+            return created;
+        }
+        coalesced.incrementAndGet();
+        return new Flight(existing, false);
+    }
+
+    /**
+     * Get the number of applies that joined the flight of another one.
+     */
+    long getCoalesced() {
+        return coalesced.get();
+    }
+
+    int getInFlight() {
+        return flights.size();
+    }
+
+    /**
+     * An apply shared by the concurrent callers.
+     */
+    final class Flight {
+        private final String key;
+        private final SettableFuture<Outcome> result;
+        private final boolean leader;
+        private HasMetadata original;
+
+        Flight(String key, boolean leader) {
+            this.key = key;
+            this.result = SettableFuture.create();
+            this.leader = leader;
+        }
+
+        Flight(Flight led, boolean leader) {
+            this.key = led.key;
+            this.result = led.result;
+            this.leader = leader;
+        }
+
+        boolean isLeader() {
+            return leader;
+        }
+
+        /**
+         * Publish the result of the leader to the waiting callers, and end the flight.
+         *
+         * @param original the state of the resource before the apply, or {@code null} if the leader created it
+         * @param applied  the resource returned by the API server
+         */
+        void complete(HasMetadata original, HasMetadata applied) {
+            flights.remove(key);
+            result.set(new Outcome(original, applied));
+        }
+
+        /**
+         * Tell the waiting callers that the leader failed, and end the flight.
+         */
+        void fail() {
+            flights.remove(key);
+            result.set(null);
+        }
+
+        /**
+         * Wait for the leader to complete.
+         *
+         * @return a copy of the resource applied by the leader, or {@code null} if the leader failed
+         * @throws InterruptedException if interrupted while waiting
+         */
+        @SuppressWarnings("unchecked")
+        <T extends HasMetadata> T await() throws InterruptedException {
+            Outcome outcome;
+            try {
+                outcome = result.get();
+            } catch (ExecutionException e) {
+                return null;
+            }
+            if (outcome == null || outcome.applied == null) {
+                return null;
+            }
+            original = copy(outcome.original);
+            return (T) copy(outcome.applied);
+        }
+
+        /**
+         * Get a copy of the state of the resource found by the leader before its apply, after {@link #await()}
+         * returned its result.
+         *
+         * @return the original resource, or {@code null} if the leader created it
+         */
+        @SuppressWarnings("unchecked")
+        <T extends HasMetadata> T getOriginal() {
+            return (T) original;
+        }
+    }
+
+    private static HasMetadata copy(HasMetadata resource) {
+        if (resource == null) {
+            return null;
+        }
+        return Serialization.jsonMapper().convertValue(resource, resource.getClass());
+    }
+
+    /**
+     * The result of the apply of the leader.
+     */
+    private static final class Outcome {
+        private final HasMetadata original;
+        private final HasMetadata applied;
+
+        Outcome(HasMetadata original, HasMetadata applied) {
+            this.original = original;
+            this.applied = applied;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import hudson.util.AtomicFileWriter;
+import jenkins.model.Jenkins;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent record of the resources applied by the deployments, stored on the Jenkins controller under
+ * {@code JENKINS_HOME/kubernetes-cd/ledger}.
+ * <p>
+ * The ledger keeps one file per cluster endpoint, with the entries keyed by the namespace, kind and name of the
+ * resources. Each entry holds the {@link ContentDigest} and the resource version of the last successful apply, and
+ * the job that applied it. An index file maps the jobs to the clusters they deployed to, so that the entries of a job
+ * are kept for each cluster it deploys to.
+ * <p>
+ * The files are rewritten as a whole on every update, which also compacts them. The entries that have not been
+ * applied or confirmed for {@link #MAX_AGE_DAYS} days are evicted, and each cluster keeps at most
+ * {@link #MAX_ENTRIES_PER_CLUSTER} entries, the least recently applied ones being evicted first.
+ */
+public final class ApplyLedger {
+    private static final Logger LOGGER = Logger.getLogger(ApplyLedger.class.getName());
+
+    static final int MAX_ENTRIES_PER_CLUSTER =
+            Integer.getInteger(ApplyLedger.class.getName() + ".maxEntriesPerCluster", 20000);
+    static final int MAX_AGE_DAYS = Integer.getInteger(ApplyLedger.class.getName() + ".maxAgeDays", 30);
+
+    private static final String DIRECTORY = "kubernetes-cd" + File.separator + "ledger";
+    private static final String JOBS_FILE = "jobs.json";
+    private static final int CLUSTER_FILE_NAME_LENGTH = 16;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static ApplyLedger instance;
+
+    private final File root;
+    private final long maxAgeMillis;
+    private final int maxEntries;
+
+    ApplyLedger(File root, long maxAgeMillis, int maxEntries) {
+        this.root = root;
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    public static synchronized ApplyLedger get() {
+        if (instance == null) {
+            instance = new ApplyLedger(new File(Jenkins.getInstance().getRootDir(), DIRECTORY),
+                    TimeUnit.DAYS.toMillis(MAX_AGE_DAYS), MAX_ENTRIES_PER_CLUSTER);
+        }
+        return instance;
+    }
+
+    /**
+     * Load the entries last applied by the job, in each of the clusters it deployed to.
+     *
+     * @param job the full name of the job
+     * @return the session to be passed to the deployment
+     */
+    public synchronized ApplyLedgerSession open(String job) {
+        Set<String> endpoints = readJobs().get(job);
+        Map<String, Map<String, Entry>> entriesByEndpoint = new HashMap<>();
+        if (endpoints != null) {
+            for (String endpoint : endpoints) {
+                Map<String, Entry> entries = new HashMap<>();
+                for (Map.Entry<String, Entry> entry : readCluster(endpoint).entrySet()) {
+                    if (job.equals(entry.getValue().getJob())) {
+                        entries.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                if (!entries.isEmpty()) {
+                    entriesByEndpoint.put(endpoint, entries);
+                }
+            }
+        }
+        return new ApplyLedgerSession(job, entriesByEndpoint);
+    }
+
+    /**
+     * Merge the entries recorded in a successful deployment into the ledger.
+     *
+     * @param session the session returned by the deployment
+     * @throws IOException if the ledger cannot be written
+     */
+    public synchronized void record(ApplyLedgerSession session) throws IOException {
+        String endpoint = session.getEndpoint();
+        if (endpoint == null || session.getRecorded().isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+
+        Map<String, Entry> entries = readCluster(endpoint);
+        entries.putAll(session.getRecorded());
+        evict(entries, now);
+        writeCluster(endpoint, entries);
+
+        // drop the cluster from the jobs that have no entry left in it after eviction
+        Set<String> owners = new HashSet<>();
+        for (Entry entry : entries.values()) {
+            owners.add(entry.getJob());
+        }
+        Map<String, Set<String>> jobs = readJobs();
+        Iterator<Map.Entry<String, Set<String>>> iter = jobs.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<String, Set<String>> job = iter.next();
+            if (!owners.contains(job.getKey())) {
+                job.getValue().remove(endpoint);
+            }
+            if (job.getValue().isEmpty()) {
+                iter.remove();
+            }
+        }
+        if (owners.contains(session.getJob())) {
+            Set<String> endpoints = jobs.get(session.getJob());
+            if (endpoints == null) {
+                endpoints = new TreeSet<>();
+                jobs.put(session.getJob(), endpoints);
+            }
+            endpoints.add(endpoint);
+        }
+        writeJobs(jobs);
+    }
+
+    private void evict(Map<String, Entry> entries, long now) {
+        Iterator<Entry> iter = entries.values().iterator();
+        while (iter.hasNext()) {
+            if (now - iter.next().getLastApplied() > maxAgeMillis) {
+                iter.remove();
+            }
+        }
+        if (entries.size() > maxEntries) {
+            List<Map.Entry<String, Entry>> sorted = new ArrayList<>(entries.entrySet());
+            Collections.sort(sorted, new Comparator<Map.Entry<String, Entry>>() {
+                @Override
+                public int compare(Map.Entry<String, Entry> a, Map.Entry<String, Entry> b) {
+                    return Long.compare(a.getValue().getLastApplied(), b.getValue().getLastApplied());
+                }
+            });
+            for (int i = 0; i < sorted.size() - maxEntries; ++i) {
+                entries.remove(sorted.get(i).getKey());
+            }
+        }
+    }
+
+    private File clusterFile(String endpoint) {
+        return new File(root, DigestUtils.sha256Hex(endpoint).substring(0, CLUSTER_FILE_NAME_LENGTH) + ".json");
+    }
+
+    private Map<String, Entry> readCluster(String endpoint) {
+        Map<String, Entry> entries = new HashMap<>();
+        JsonNode node = read(clusterFile(endpoint));
+        if (node == null || !endpoint.equals(node.path("endpoint").asText())) {
+            return entries;
+        }
+        Iterator<Map.Entry<String, JsonNode>> fields = node.path("entries").fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            entries.put(field.getKey(), new Entry(
+                    value.path("digest").asText(),
+                    value.path("resourceVersion").asText(),
+                    value.path("job").asText(),
+                    value.path("lastApplied").asLong()));
+        }
+        return entries;
+    }
+
+    private void writeCluster(String endpoint, Map<String, Entry> entries) throws IOException {
+        ObjectNode node = MAPPER.createObjectNode();
+        node.put("endpoint", endpoint);
+        ObjectNode entriesNode = node.putObject("entries");
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            ObjectNode value = entriesNode.putObject(entry.getKey());
+            value.put("digest", entry.getValue().getDigest());
+            value.put("resourceVersion", entry.getValue().getResourceVersion());
+            value.put("job", entry.getValue().getJob());
+            value.put("lastApplied", entry.getValue().getLastApplied());
+        }
+        write(clusterFile(endpoint), node);
+    }
+
+    private Map<String, Set<String>> readJobs() {
+        Map<String, Set<String>> jobs = new HashMap<>();
+        JsonNode node = read(new File(root, JOBS_FILE));
+        if (node != null) {
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                Set<String> endpoints = new TreeSet<>();
+                if (field.getValue().isArray()) {
+                    for (JsonNode endpoint : field.getValue()) {
+                        endpoints.add(endpoint.asText());
+                    }
+                } else {
+                    // the index written by the earlier versions maps each job to a single cluster
+                    endpoints.add(field.getValue().asText());
+                }
+                jobs.put(field.getKey(), endpoints);
+            }
+        }
+        return jobs;
+    }
+
+    private void writeJobs(Map<String, Set<String>> jobs) throws IOException {
+        ObjectNode node = MAPPER.createObjectNode();
+        for (Map.Entry<String, Set<String>> job : jobs.entrySet()) {
+            ArrayNode endpoints = node.putArray(job.getKey());
+            for (String endpoint : job.getValue()) {
+                endpoints.add(endpoint);
+            }
+        }
+        write(new File(root, JOBS_FILE), node);
+    }
+
+    private static JsonNode read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return MAPPER.readTree(file);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Discarding the unreadable apply ledger file " + file, e);
+            return null;
+        }
+    }
+
+    private static void write(File file, JsonNode node) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory " + parent);
+        }
+        AtomicFileWriter writer = new AtomicFileWriter(file);
+        try {
+            writer.write(MAPPER.writeValueAsString(node));
+            writer.commit();
+        } finally {
+            writer.abort();
+        }
+    }
+
+    /**
+     * The state of a resource after it was last applied.
+     */
+    public static final class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final String digest;
+        private final String resourceVersion;
+        private final String job;
+        private final long lastApplied;
+
+        Entry(String digest, String resourceVersion, String job, long lastApplied) {
+            this.digest = digest;
+            this.resourceVersion = resourceVersion;
+            this.job = job;
+            this.lastApplied = lastApplied;
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+
+        public String getResourceVersion() {
+            return resourceVersion;
+        }
+
+        public String getJob() {
+            return job;
+        }
+
+        public long getLastApplied() {
+            return lastApplied;
+        }
+    }
+}
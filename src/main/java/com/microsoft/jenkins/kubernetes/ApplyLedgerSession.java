@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link ApplyLedger} entries of one deployment, which are sent to the agent with the deployment task and
+ * returned with the entries recorded during the deployment.
+ * <p>
+ * The session holds the entries of the job for every cluster it deployed to, and uses those of the cluster it is
+ * bound to, so that a job deploying to several clusters keeps a separate record for each of them.
+ * <p>
+ * A resource is up to date if the ledger recorded the same digest as its current configuration, and its live
+ * resource version, checked with a metadata-only list request, is still the one recorded after it was applied.
+ */
+public final class ApplyLedgerSession implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String job;
+    private String endpoint;
+    private final Map<String, Map<String, ApplyLedger.Entry>> previousByEndpoint;
+    private Map<String, ApplyLedger.Entry> previous = Collections.emptyMap();
+    private final Map<String, ApplyLedger.Entry> recorded = new ConcurrentHashMap<>();
+    private transient Map<String, String> liveVersions;
+
+    /**
+     * @param job      the full name of the job
+     * @param previous the entries last applied by the job, by the cluster endpoints and the ledger keys
+     */
+    public ApplyLedgerSession(String job, Map<String, Map<String, ApplyLedger.Entry>> previous) {
+        this.job = job;
+        this.previousByEndpoint = new HashMap<>(previous);
+    }
+
+    public String getJob() {
+        return job;
+    }
+
+    /**
+     * Get the endpoint of the cluster the deployment was applied to, or {@code null} if it is not bound yet.
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Get the endpoints of the clusters the job has entries for.
+     */
+    public Set<String> getEndpoints() {
+        return Collections.unmodifiableSet(previousByEndpoint.keySet());
+    }
+
+    /**
+     * Get the entries recorded during the deployment, by the ledger keys.
+     */
+    public Map<String, ApplyLedger.Entry> getRecorded() {
+        return Collections.unmodifiableMap(recorded);
+    }
+
+    static String key(String kind, String namespace, String name) {
+        return kind + "/" + (namespace == null ? "" : namespace) + "/" + name;
+    }
+
+    /**
+     * Bind the session to the cluster the deployment is applied to, so that only the entries recorded for the job
+     * in that cluster are used.
+     */
+    void bind(String masterUrl) {
+        endpoint = masterUrl;
+        Map<String, ApplyLedger.Entry> entries = previousByEndpoint.get(masterUrl);
+        previous = entries == null ? Collections.<String, ApplyLedger.Entry>emptyMap() : entries;
+        liveVersions = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Check whether the resource was applied with the same configuration, so that its live resource version is
+     * worth checking.
+     */
+    boolean isCandidate(String key, String digest) {
+        ApplyLedger.Entry entry = previous.get(key);
+        return entry != null && entry.getDigest().equals(digest);
+    }
+
+    void putLiveVersions(String kind, String namespace, Map<String, String> versions) {
+        for (Map.Entry<String, String> version : versions.entrySet()) {
+            liveVersions.put(key(kind, namespace, version.getKey()), version.getValue());
+        }
+    }
+
+    boolean isUpToDate(String key, String digest) {
+        if (!isCandidate(key, digest) || liveVersions == null) {
+            return false;
+        }
+        String liveVersion = liveVersions.get(key);
+        return liveVersion != null && liveVersion.equals(previous.get(key).getResourceVersion());
+    }
+
+    /**
+     * Get the live resource version listed for the resource, or {@code null} if its group was not checked.
+     */
+    String getLiveVersion(String key) {
+        return liveVersions == null ? null : liveVersions.get(key);
+    }
+
+    void record(String key, String digest, String resourceVersion) {
+        if (digest != null && resourceVersion != null) {
+            recorded.put(key, new ApplyLedger.Entry(digest, resourceVersion, job, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Keep the previous entry of a resource that is up to date, so that it is not evicted.
+     */
+    void keep(String key) {
+        ApplyLedger.Entry entry = previous.get(key);
+        if (entry != null) {
+            record(key, entry.getDigest(), entry.getResourceVersion());
+        }
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.google.common.collect.ImmutableMap;
+import com.microsoft.jenkins.kubernetes.util.Constants;
+import io.fabric8.kubernetes.api.model.ConfigMapEnvSource;
+import io.fabric8.kubernetes.api.model.ConfigMapKeySelector;
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.CrossVersionObjectReference;
+import io.fabric8.kubernetes.api.model.EnvFromSource;
+import io.fabric8.kubernetes.api.model.EnvVar;
+import io.fabric8.kubernetes.api.model.EnvVarSource;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.HorizontalPodAutoscaler;
+import io.fabric8.kubernetes.api.model.LocalObjectReference;
+import io.fabric8.kubernetes.api.model.Namespace;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodSpec;
+import io.fabric8.kubernetes.api.model.PodTemplateSpec;
+import io.fabric8.kubernetes.api.model.ReplicationController;
+import io.fabric8.kubernetes.api.model.SecretEnvSource;
+import io.fabric8.kubernetes.api.model.SecretKeySelector;
+import io.fabric8.kubernetes.api.model.Volume;
+import io.fabric8.kubernetes.api.model.VolumeProjection;
+import io.fabric8.kubernetes.api.model.apps.DaemonSet;
+import io.fabric8.kubernetes.api.model.apps.Deployment;
+import io.fabric8.kubernetes.api.model.apps.ReplicaSet;
+import io.fabric8.kubernetes.api.model.apps.StatefulSet;
+import io.fabric8.kubernetes.api.model.batch.CronJob;
+import io.fabric8.kubernetes.api.model.batch.Job;
+import io.fabric8.kubernetes.api.model.extensions.HTTPIngressPath;
+import io.fabric8.kubernetes.api.model.extensions.Ingress;
+import io.fabric8.kubernetes.api.model.extensions.IngressBackend;
+import io.fabric8.kubernetes.api.model.extensions.IngressRule;
+import io.fabric8.kubernetes.api.model.extensions.IngressTLS;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plans the order to apply the loaded resources.
+ * <p>
+ * A dependency graph is built over the resources with the following kind ordering within each namespace:
+ * <pre>
+ * Namespace &rarr; ServiceAccount / ConfigMap / Secret &rarr; Service
+ *     &rarr; Deployment / StatefulSet / DaemonSet / Job &rarr; HorizontalPodAutoscaler / Ingress
+ * </pre>
+ * Every namespaced resource also depends on the {@link Namespace} it lives in, and on the resources it references,
+ * e.g., the ConfigMaps and Secrets mounted as volumes or imported through {@code envFrom}.
+ * <p>
+ * The graph is then split into levels, where all the dependencies of a resource are in the previous levels. The
+ * resources in the same level do not depend on each other and can be applied concurrently.
+ */
+final class ApplyPlanner {
+    private static final int TIER_NAMESPACE = 0;
+    private static final int TIER_CONFIGURATION = 1;
+    private static final int TIER_SERVICE = 2;
+    private static final int TIER_WORKLOAD = 3;
+    private static final int TIER_ROUTING = 4;
+
+    private static final Map<String, Integer> KIND_TIERS = ImmutableMap.<String, Integer>builder()
+            .put("Namespace", TIER_NAMESPACE)
+            .put("ServiceAccount", TIER_CONFIGURATION)
+            .put("ConfigMap", TIER_CONFIGURATION)
+            .put("Secret", TIER_CONFIGURATION)
+            .put("PersistentVolumeClaim", TIER_CONFIGURATION)
+            .put("Service", TIER_SERVICE)
+            .put("Deployment", TIER_WORKLOAD)
+            .put("StatefulSet", TIER_WORKLOAD)
+            .put("DaemonSet", TIER_WORKLOAD)
+            .put("ReplicaSet", TIER_WORKLOAD)
+            .put("ReplicationController", TIER_WORKLOAD)
+            .put("Job", TIER_WORKLOAD)
+            .put("CronJob", TIER_WORKLOAD)
+            .put("Pod", TIER_WORKLOAD)
+            .put("HorizontalPodAutoscaler", TIER_ROUTING)
+            .put("Ingress", TIER_ROUTING)
+            .build();
+
+    private ApplyPlanner() {
+        // hide constructor
+    }
+
+    /**
+     * Split the resources into levels that can be applied one after another.
+     *
+     * @param resources the resources to be applied, in the order they are loaded
+     * @return the levels of the resources. The resources within each level keeps the loading order.
+     */
+    static List<List<HasMetadata>> plan(List<HasMetadata> resources) {
+        int size = resources.size();
+        Map<String, Integer> indexByKey = new HashMap<>();
+        // namespace -> tier -> indices of the resources
+        Map<String, Map<Integer, List<Integer>>> tiersByNamespace = new HashMap<>();
+        for (int i = 0; i < size; ++i) {
+            HasMetadata resource = resources.get(i);
+            indexByKey.put(key(kindOf(resource), namespaceOf(resource), nameOf(resource)), i);
+            if (!(resource instanceof Namespace)) {
+                Map<Integer, List<Integer>> tiers = tiersByNamespace.get(namespaceOf(resource));
+                if (tiers == null) {
+                    tiers = new HashMap<>();
+                    tiersByNamespace.put(namespaceOf(resource), tiers);
+                }
+                int tier = tierOf(resource);
+                List<Integer> indices = tiers.get(tier);
+                if (indices == null) {
+                    indices = new ArrayList<>();
+                    tiers.put(tier, indices);
+                }
+                indices.add(i);
+            }
+        }
+
+        List<Set<Integer>> dependencies = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+            HasMetadata resource = resources.get(i);
+            Set<Integer> deps = new LinkedHashSet<>();
+            if (!(resource instanceof Namespace)) {
+                String namespace = namespaceOf(resource);
+                addDependency(deps, indexByKey, key("Namespace", null, namespace));
+
+                // Depend on the closest lower tier present in the namespace. The tiers below it are covered
+                // transitively.
+                Map<Integer, List<Integer>> tiers = tiersByNamespace.get(namespace);
+                for (int tier = tierOf(resource) - 1; tier > TIER_NAMESPACE; --tier) {
+                    List<Integer> indices = tiers.get(tier);
+                    if (indices != null) {
+                        deps.addAll(indices);
+                        break;
+                    }
+                }
+
+                for (String reference : referencesOf(resource)) {
+                    addDependency(deps, indexByKey, reference);
+                }
+            }
+            deps.remove(i);
+            dependencies.add(deps);
+        }
+
+        return levels(resources, dependencies);
+    }
+
+    /**
+     * Layer the graph with Kahn's algorithm. Resources caught in a dependency cycle, which should not happen with
+     * valid configurations, are put into the last level.
+     */
+    private static List<List<HasMetadata>> levels(List<HasMetadata> resources, List<Set<Integer>> dependencies) {
+        int size = resources.size();
+        boolean[] placed = new boolean[size];
+        int remaining = size;
+        List<List<HasMetadata>> levels = new ArrayList<>();
+        while (remaining > 0) {
+            List<Integer> current = new ArrayList<>();
+            for (int i = 0; i < size; ++i) {
+                if (placed[i]) {
+                    continue;
+                }
+                boolean ready = true;
+                for (int dep : dependencies.get(i)) {
+                    if (!placed[dep]) {
+                        ready = false;
+                        break;
+                    }
+                }
+                if (ready) {
+                    current.add(i);
+                }
+            }
+            if (current.isEmpty()) {
+                // cycle detected, put all the remaining resources into the last level
+                for (int i = 0; i < size; ++i) {
+                    if (!placed[i]) {
+                        current.add(i);
+                    }
+                }
+            }
+
+            List<HasMetadata> levelResources = new ArrayList<>(current.size());
+            for (int i : current) {
+                placed[i] = true;
+                levelResources.add(resources.get(i));
+            }
+            remaining -= current.size();
+            levels.add(levelResources);
+        }
+        return levels;
+    }
+
+    private static void addDependency(Set<Integer> deps, Map<String, Integer> indexByKey, String key) {
+        Integer index = indexByKey.get(key);
+        if (index != null) {
+            deps.add(index);
+        }
+    }
+
+    /**
+     * Find the resources referenced by the given resource, in the form of the keys built by
+     * {@link #key(String, String, String)}.
+     */
+    private static List<String> referencesOf(HasMetadata resource) {
+        String namespace = namespaceOf(resource);
+        List<String> references = new ArrayList<>();
+        PodSpec podSpec = podSpecOf(resource);
+        if (podSpec != null) {
+            addPodSpecReferences(references, namespace, podSpec);
+        } else if (resource instanceof Ingress) {
+            Ingress ingress = (Ingress) resource;
+            if (ingress.getSpec() != null) {
+                addBackendReference(references, namespace, ingress.getSpec().getBackend());
+                if (ingress.getSpec().getRules() != null) {
+                    for (IngressRule rule : ingress.getSpec().getRules()) {
+                        if (rule.getHttp() != null && rule.getHttp().getPaths() != null) {
+                            for (HTTPIngressPath path : rule.getHttp().getPaths()) {
+                                addBackendReference(references, namespace, path.getBackend());
+                            }
+                        }
+                    }
+                }
+                if (ingress.getSpec().getTls() != null) {
+                    for (IngressTLS tls : ingress.getSpec().getTls()) {
+                        addReference(references, "Secret", namespace, tls.getSecretName());
+                    }
+                }
+            }
+        } else if (resource instanceof HorizontalPodAutoscaler) {
+            HorizontalPodAutoscaler hpa = (HorizontalPodAutoscaler) resource;
+            if (hpa.getSpec() != null) {
+                CrossVersionObjectReference target = hpa.getSpec().getScaleTargetRef();
+                if (target != null) {
+                    addReference(references, target.getKind(), namespace, target.getName());
+                }
+            }
+        }
+        return references;
+    }
+
+    private static void addPodSpecReferences(List<String> references, String namespace, PodSpec podSpec) {
+        addReference(references, "ServiceAccount", namespace, podSpec.getServiceAccountName());
+        if (podSpec.getImagePullSecrets() != null) {
+            for (LocalObjectReference secret : podSpec.getImagePullSecrets()) {
+                addReference(references, "Secret", namespace, secret.getName());
+            }
+        }
+        if (podSpec.getVolumes() != null) {
+            for (Volume volume : podSpec.getVolumes()) {
+                if (volume.getConfigMap() != null) {
+                    addReference(references, "ConfigMap", namespace, volume.getConfigMap().getName());
+                }
+                if (volume.getSecret() != null) {
+                    addReference(references, "Secret", namespace, volume.getSecret().getSecretName());
+                }
+                if (volume.getPersistentVolumeClaim() != null) {
+                    addReference(references, "PersistentVolumeClaim", namespace,
+                            volume.getPersistentVolumeClaim().getClaimName());
+                }
+                if (volume.getProjected() != null && volume.getProjected().getSources() != null) {
+                    for (VolumeProjection projection : volume.getProjected().getSources()) {
+                        if (projection.getConfigMap() != null) {
+                            addReference(references, "ConfigMap", namespace, projection.getConfigMap().getName());
+                        }
+                        if (projection.getSecret() != null) {
+                            addReference(references, "Secret", namespace, projection.getSecret().getName());
+                        }
+                    }
+                }
+            }
+        }
+        List<Container> containers = new ArrayList<>();
+        if (podSpec.getInitContainers() != null) {
+            containers.addAll(podSpec.getInitContainers());
+        }
+        if (podSpec.getContainers() != null) {
+            containers.addAll(podSpec.getContainers());
+        }
+        for (Container container : containers) {
+            if (container.getEnvFrom() != null) {
+                for (EnvFromSource envFrom : container.getEnvFrom()) {
+                    ConfigMapEnvSource configMapRef = envFrom.getConfigMapRef();
+                    if (configMapRef != null) {
+                        addReference(references, "ConfigMap", namespace, configMapRef.getName());
+                    }
+                    SecretEnvSource secretRef = envFrom.getSecretRef();
+                    if (secretRef != null) {
+                        addReference(references, "Secret", namespace, secretRef.getName());
+                    }
+                }
+            }
+            if (container.getEnv() != null) {
+                for (EnvVar env : container.getEnv()) {
+                    EnvVarSource valueFrom = env.getValueFrom();
+                    if (valueFrom == null) {
+                        continue;
+                    }
+                    ConfigMapKeySelector configMapKeyRef = valueFrom.getConfigMapKeyRef();
+                    if (configMapKeyRef != null) {
+                        addReference(references, "ConfigMap", namespace, configMapKeyRef.getName());
+                    }
+                    SecretKeySelector secretKeyRef = valueFrom.getSecretKeyRef();
+                    if (secretKeyRef != null) {
+                        addReference(references, "Secret", namespace, secretKeyRef.getName());
+                    }
+                }
+            }
+        }
+    }
+
+    private static void addBackendReference(List<String> references, String namespace, IngressBackend backend) {
+        if (backend != null) {
+            addReference(references, "Service", namespace, backend.getServiceName());
+        }
+    }
+
+    private static void addReference(List<String> references, String kind, String namespace, String name) {
+        if (kind != null && name != null) {
+            references.add(key(kind, namespace, name));
+        }
+    }
+
+    private static PodSpec podSpecOf(HasMetadata resource) {
+        PodTemplateSpec template = null;
+        if (resource instanceof Pod) {
+            return ((Pod) resource).getSpec();
+        } else if (resource instanceof Deployment && ((Deployment) resource).getSpec() != null) {
+            template = ((Deployment) resource).getSpec().getTemplate();
+        } else if (resource instanceof StatefulSet && ((StatefulSet) resource).getSpec() != null) {
+            template = ((StatefulSet) resource).getSpec().getTemplate();
+        } else if (resource instanceof DaemonSet && ((DaemonSet) resource).getSpec() != null) {
+            template = ((DaemonSet) resource).getSpec().getTemplate();
+        } else if (resource instanceof ReplicaSet && ((ReplicaSet) resource).getSpec() != null) {
+            template = ((ReplicaSet) resource).getSpec().getTemplate();
+        } else if (resource instanceof ReplicationController
+                && ((ReplicationController) resource).getSpec() != null) {
+            template = ((ReplicationController) resource).getSpec().getTemplate();
+        } else if (resource instanceof Job && ((Job) resource).getSpec() != null) {
+            template = ((Job) resource).getSpec().getTemplate();
+        } else if (resource instanceof CronJob && ((CronJob) resource).getSpec() != null
+                && ((CronJob) resource).getSpec().getJobTemplate() != null
+                && ((CronJob) resource).getSpec().getJobTemplate().getSpec() != null) {
+            template = ((CronJob) resource).getSpec().getJobTemplate().getSpec().getTemplate();
+        }
+        return template == null ? null : template.getSpec();
+    }
+
+    private static int tierOf(HasMetadata resource) {
+        Integer tier = KIND_TIERS.get(kindOf(resource));
+        // Resources of the other kinds are usually the supporting ones, e.g., RBAC rules and storage claims.
+        return tier == null ? TIER_CONFIGURATION : tier;
+    }
+
+    static String kindOf(HasMetadata resource) {
+        String kind = resource.getKind();
+        if (kind == null) {
+            kind = resource.getClass().getSimpleName();
+        }
+        return kind;
+    }
+
+    static String namespaceOf(HasMetadata resource) {
+        if (resource instanceof Namespace) {
+            return null;
+        }
+        String namespace = null;
+        if (resource.getMetadata() != null) {
+            namespace = resource.getMetadata().getNamespace();
+        }
+        return namespace == null ? Constants.DEFAULT_KUBERNETES_NAMESPACE : namespace;
+    }
+
+    private static String nameOf(HasMetadata resource) {
+        return resource.getMetadata() == null ? null : resource.getMetadata().getName();
+    }
+
+    private static String key(String kind, String namespace, String name) {
+        return kind + "/" + (namespace == null ? "" : namespace) + "/" + name;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+/**
+ * How the resources loaded from the configuration are sent to the cluster.
+ */
+public enum ApplyStrategy {
+    /**
+     * Fetch the live resource, then update it if it exists, or create it otherwise.
+     */
+    UPDATE("Fetch the live resource, then update or create it"),
+
+    /**
+     * Create the resource without fetching it first, and fall back to {@link #UPDATE} if it already exists.
+     * Suitable for the deployments to new environments, where most of the resources do not exist yet.
+     */
+    CREATE_FIRST("Create the resource, then update it if it already exists"),
+
+    /**
+     * Use {@link #CREATE_FIRST} for the resources in the Namespaces created in the same deployment, and
+     * {@link #UPDATE} for the others.
+     */
+    AUTO("Create first in the Namespaces created by the deployment, otherwise fetch first"),
+
+    /**
+     * Send the desired manifest with one server-side apply request, and let the API server merge it.
+     * Requires Kubernetes 1.16 or later.
+     */
+    SERVER_SIDE_APPLY("Server-side apply (Kubernetes 1.16+)");
+
+    public static final ApplyStrategy DEFAULT = UPDATE;
+
+    private final String title;
+
+    ApplyStrategy(String title) {
+        this.title = title;
+    }
+
+    public String title() {
+        return title;
+    }
+
+    public static ApplyStrategy fromString(String value) {
+        for (ApplyStrategy strategy : values()) {
+            if (strategy.name().equalsIgnoreCase(value)) {
+                return strategy;
+            }
+        }
+        return DEFAULT;
+    }
+}
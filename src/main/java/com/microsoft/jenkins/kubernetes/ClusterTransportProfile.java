@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.FormValidation;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+import javax.annotation.Nonnull;
+import java.io.Serializable;
+
+/**
+ * The {@link TransportProfile} used for the deployments to an API server, configured in the global configuration.
+ */
+public class ClusterTransportProfile extends AbstractDescribableImpl<ClusterTransportProfile>
+        implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String serverUrl;
+    private final TransportProfile transportProfile;
+
+    @DataBoundConstructor
+    public ClusterTransportProfile(String serverUrl, TransportProfile transportProfile) {
+        this.serverUrl = StringUtils.trimToEmpty(serverUrl);
+        this.transportProfile = transportProfile;
+    }
+
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    public TransportProfile getTransportProfile() {
+        return transportProfile;
+    }
+
+    /**
+     * Check whether the profile applies to the given API server URL, ignoring the case and the trailing slash.
+     */
+    public boolean matches(String url) {
+        return StringUtils.isNotEmpty(serverUrl)
+                && StringUtils.removeEnd(serverUrl, "/").equalsIgnoreCase(StringUtils.removeEnd(url, "/"));
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends Descriptor<ClusterTransportProfile> {
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return Messages.ClusterTransportProfile_displayName();
+        }
+
+        public FormValidation doCheckServerUrl(@QueryParameter String value) {
+            if (StringUtils.isBlank(value)) {
+                return FormValidation.error(Messages.ClusterTransportProfile_serverUrlRequired());
+            }
+            return FormValidation.ok();
+        }
+    }
+}
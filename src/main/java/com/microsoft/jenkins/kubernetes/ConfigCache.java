@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of the client {@link Config}s parsed from the kubeconfig contents, keyed by the SHA-256 digest of the
+ * contents, so that the repeated deployments with the same kubeconfig do not parse it again.
+ * <p>
+ * The cache holds at most {@link #MAX_SIZE} entries, each evicted after {@link #EXPIRE_AFTER_ACCESS_MINUTES} minutes
+ * without access. The cached configs are never handed out: the callers get a copy, so that the credentials held by
+ * an evicted entry can be cleared without affecting the clients built from it.
+ */
+final class ConfigCache {
+    static final int MAX_SIZE = Integer.getInteger(ConfigCache.class.getName() + ".maxSize", 64);
+    static final long EXPIRE_AFTER_ACCESS_MINUTES =
+            Long.getLong(ConfigCache.class.getName() + ".expireAfterAccessMinutes", 30);
+
+    private static final ConfigCache INSTANCE =
+            new ConfigCache(MAX_SIZE, TimeUnit.MINUTES.toMillis(EXPIRE_AFTER_ACCESS_MINUTES));
+
+    private final Cache<String, Config> cache;
+
+    ConfigCache(int maxSize, long expireAfterAccessMillis) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(expireAfterAccessMillis, TimeUnit.MILLISECONDS)
+                .removalListener(new RemovalListener<String, Config>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, Config> notification) {
+                        clearCredentials(notification.getValue());
+                    }
+                })
+                .build();
+    }
+
+    static ConfigCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the config parsed from the kubeconfig contents.
+     *
+     * @param kubeconfig the kubeconfig contents
+     * @return a copy of the cached config, which may be changed by the caller
+     */
+    Config fromKubeconfig(final String kubeconfig) {
+        Config config;
+        try {
+            config = cache.get(DigestUtils.sha256Hex(kubeconfig), new Callable<Config>() {
+                @Override
+                public Config call() {
+                    return KubeconfigParser.parse(kubeconfig);
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            // the parser failed, rethrow its exception
+            Throwables.throwIfUnchecked(e.getCause());
+            throw e;
+        }
+        return new ConfigBuilder(config).build();
+    }
+
+    long size() {
+        return cache.size();
+    }
+
+    void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Drop the references to the credentials of an evicted config, so that they are not kept in memory longer than
+     * the clients using them.
+     */
+    private static void clearCredentials(Config config) {
+        if (config == null) {
+            return;
+        }
+        config.setClientKeyData(null);
+        config.setClientKeyPassphrase(null);
+        config.setClientCertData(null);
+        config.setPassword(null);
+        config.setOauthToken(null);
+    }
+}
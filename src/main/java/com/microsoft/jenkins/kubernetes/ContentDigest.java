@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableSet;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stable digest of the desired state of a resource, which is stamped on the applied resource as the annotation
+ * {@value #ANNOTATION}.
+ * <p>
+ * If the live resource carries the same digest as the resource loaded from the configuration, the configuration
+ * has not changed since it was last applied, and the resource can be skipped without a deep comparison.
+ * <p>
+ * The digest is computed from the normalized manifest: the object fields are sorted, the empty objects and arrays
+ * are removed, and the fields populated by the server as well as the digest annotation itself are excluded.
+ * <p>
+ * The annotation can be read by anyone who may read the resource, so the {@code data} and {@code stringData} of the
+ * Secrets are excluded from the stamped digest, as the low-entropy secrets could be recovered from their digest by
+ * brute force. The data of the Secrets is compared with the live one instead, see
+ * {@link ResourceComparator#isSecretDataUnchanged(HasMetadata, HasMetadata)}. {@link #ofContent(HasMetadata)}
+ * includes the data, for the identities that are only held in memory.
+ */
+final class ContentDigest {
+    static final String ANNOTATION = "kubernetes-cd.jenkins.io/applied-digest";
+
+    private static final Set<String> IGNORED_FIELDS = ImmutableSet.of("status");
+    private static final Set<String> SECRET_DATA_FIELDS = ImmutableSet.of("data", "stringData");
+
+    private ContentDigest() {
+        // hide constructor
+    }
+
+    /**
+     * Compute the digest of the resource to be stamped, without the data of the Secrets.
+     *
+     * @param resource the resource loaded from the configuration
+     * @return the hex encoded SHA-256 digest of the normalized manifest
+     */
+    static String of(HasMetadata resource) {
+        return of(resource, false);
+    }
+
+    /**
+     * Compute the digest of the whole resource, including the data of the Secrets. The digest must not be stamped
+     * or persisted.
+     *
+     * @param resource the resource loaded from the configuration
+     * @return the hex encoded SHA-256 digest of the normalized manifest
+     */
+    static String ofContent(HasMetadata resource) {
+        return of(resource, true);
+    }
+
+    private static String of(HasMetadata resource, boolean includeSecretData) {
+        ObjectNode node = Serialization.jsonMapper().valueToTree(resource);
+        node.remove(IGNORED_FIELDS);
+        String kind = ApplyPlanner.kindOf(resource);
+        if (!includeSecretData && "Secret".equals(kind)) {
+            node.remove(SECRET_DATA_FIELDS);
+        }
+        node.put("kind", kind);
+        JsonNode metadata = node.get("metadata");
+        if (metadata instanceof ObjectNode) {
+            ((ObjectNode) metadata).remove(ResourceComparator.SERVER_METADATA_FIELDS);
+            JsonNode annotations = metadata.get("annotations");
+            if (annotations instanceof ObjectNode) {
+                ((ObjectNode) annotations).remove(ANNOTATION);
+            }
+        }
+        try {
+            return DigestUtils.sha256Hex(Serialization.jsonMapper().writeValueAsBytes(normalize(node)));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get the digest stamped on the resource.
+     *
+     * @param resource the resource
+     * @return the digest, or {@code null} if the resource is not stamped
+     */
+    static String get(HasMetadata resource) {
+        ObjectMeta metadata = resource == null ? null : resource.getMetadata();
+        if (metadata == null || metadata.getAnnotations() == null) {
+            return null;
+        }
+        return metadata.getAnnotations().get(ANNOTATION);
+    }
+
+    /**
+     * Stamp the digest on the resource to be applied.
+     *
+     * @param resource the resource to be applied
+     * @param digest   the digest of the resource
+     */
+    static void stamp(HasMetadata resource, String digest) {
+        ObjectMeta metadata = resource.getMetadata();
+        Map<String, String> annotations = metadata.getAnnotations();
+        if (annotations == null) {
+            annotations = new LinkedHashMap<>();
+            metadata.setAnnotations(annotations);
+        }
+        annotations.put(ANNOTATION, digest);
+    }
+
+    /**
+     * Build a copy of the node with sorted object fields and without empty containers, which are equivalent to the
+     * missing ones for the API server.
+     */
+    private static JsonNode normalize(JsonNode node) {
+        if (node.isObject()) {
+            List<String> names = new ArrayList<>();
+            Iterator<String> iter = node.fieldNames();
+            while (iter.hasNext()) {
+                names.add(iter.next());
+            }
+            Collections.sort(names);
+            ObjectNode sorted = JsonNodeFactory.instance.objectNode();
+            for (String name : names) {
+                JsonNode child = normalize(node.get(name));
+                if (!isEmpty(child)) {
+                    sorted.set(name, child);
+                }
+            }
+            return sorted;
+        }
+        if (node.isArray()) {
+            ArrayNode array = JsonNodeFactory.instance.arrayNode();
+            for (JsonNode element : node) {
+                array.add(normalize(element));
+            }
+            return array;
+        }
+        return node;
+    }
+
+    private static boolean isEmpty(JsonNode node) {
+        return node.isNull() || (node.isContainerNode() && node.size() == 0);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import io.fabric8.kubernetes.api.model.AuthInfo;
+import io.fabric8.kubernetes.api.model.AuthProviderConfig;
+import io.fabric8.kubernetes.api.model.Cluster;
+import io.fabric8.kubernetes.api.model.Context;
+import io.fabric8.kubernetes.api.model.NamedAuthInfo;
+import io.fabric8.kubernetes.api.model.NamedCluster;
+import io.fabric8.kubernetes.api.model.NamedContext;
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.internal.KubeConfigUtils;
+import okhttp3.TlsVersion;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build the client {@link Config} from the kubeconfig contents.
+ * <p>
+ * Unlike {@link Config#fromKubeconfig(String)}, the parser does not fall back to the kubeconfig file, service account
+ * and namespace file of the running node, so it does not need to switch off the auto configuration with the JVM-wide
+ * system properties. It holds no state and can be called from multiple threads at the same time.
+ * <p>
+ * The {@link Config} constructor, which is also the starting point of {@code new ConfigBuilder()}, configures itself
+ * from the system properties, the environment variables, the kubeconfig file and the service account of the running
+ * node. The configs are therefore copied from {@link #DEFAULTS}, on which every such field is set back to the
+ * default of the client once per JVM, so that nothing is inherited from the node.
+ * <p>
+ * The current context of the kubeconfig selects the cluster, user and namespace, in the same way as
+ * {@link Config#fromKubeconfig(String)}.
+ */
+final class KubeconfigParser {
+    private static final String ACCESS_TOKEN = "access-token";
+    private static final String ID_TOKEN = "id-token";
+
+    // the defaults of the client, see io.fabric8.kubernetes.client.Config
+    private static final String DEFAULT_MASTER_URL = "https://kubernetes.default.svc";
+    private static final String DEFAULT_API_VERSION = "v1";
+    private static final String DEFAULT_CLIENT_KEY_ALGO = "RSA";
+    private static final String DEFAULT_CLIENT_KEY_PASSPHRASE = "changeit";
+    private static final int DEFAULT_CONNECTION_TIMEOUT = 10 * 1000;
+    private static final int DEFAULT_REQUEST_TIMEOUT = 10 * 1000;
+    private static final int DEFAULT_WATCH_RECONNECT_INTERVAL = 1000;
+    private static final int DEFAULT_WATCH_RECONNECT_LIMIT = -1;
+    private static final long DEFAULT_ROLLING_TIMEOUT = 15 * 60 * 1000L;
+    private static final long DEFAULT_SCALE_TIMEOUT = 10 * 60 * 1000L;
+    private static final int DEFAULT_LOGGING_INTERVAL = 20 * 1000;
+    private static final long DEFAULT_WEBSOCKET_TIMEOUT = 5 * 1000L;
+    private static final long DEFAULT_WEBSOCKET_PING_INTERVAL = 1000L;
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 64;
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST = 5;
+
+    private static final Config DEFAULTS = newDefaults();
+
+    private KubeconfigParser() {
+        // hide constructor
+    }
+
+    /**
+     * Parse the kubeconfig contents.
+     *
+     * @param kubeconfig the kubeconfig contents
+     * @return the config that can be used to build the client
+     * @throws KubernetesClientException if the kubeconfig cannot be parsed
+     */
+    static Config parse(String kubeconfig) {
+        io.fabric8.kubernetes.api.model.Config kubeConfig;
+        try {
+            kubeConfig = KubeConfigUtils.parseConfigFromString(kubeconfig);
+        } catch (IOException e) {
+            throw KubernetesClientException.launderThrowable(e);
+        }
+
+        Context context = findContext(kubeConfig);
+        Cluster cluster = context == null ? null : findCluster(kubeConfig.getClusters(), context.getCluster());
+        AuthInfo user = context == null ? null : findUser(kubeConfig.getUsers(), context.getUser());
+
+        // the copy constructor does not auto-configure, unlike new ConfigBuilder()
+        ConfigBuilder builder = new ConfigBuilder(DEFAULTS)
+                .withNamespace(context == null ? null : context.getNamespace());
+        if (cluster != null) {
+            builder.withMasterUrl(cluster.getServer())
+                    .withTrustCerts(Boolean.TRUE.equals(cluster.getInsecureSkipTlsVerify()))
+                    .withCaCertFile(cluster.getCertificateAuthority())
+                    .withCaCertData(cluster.getCertificateAuthorityData());
+        }
+        if (user != null) {
+            builder.withClientCertFile(user.getClientCertificate())
+                    .withClientCertData(user.getClientCertificateData())
+                    .withClientKeyFile(user.getClientKey())
+                    .withClientKeyData(user.getClientKeyData())
+                    .withUsername(user.getUsername())
+                    .withPassword(user.getPassword())
+                    .withOauthToken(getToken(user));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Create the config with every field that the {@link Config} constructor may pick up from the running node set
+     * back to the default of the client.
+     * <p>
+     * The impersonated groups and extras are only sent along with the impersonated user name, which is cleared.
+     *
+     * @return the config that inherits nothing from the running node
+     */
+    static Config newDefaults() {
+        Config config = new Config();
+        config.setMasterUrl(DEFAULT_MASTER_URL);
+        config.setApiVersion(DEFAULT_API_VERSION);
+        config.setNamespace(null);
+        config.setTrustCerts(false);
+        config.setDisableHostnameVerification(false);
+        config.setCaCertFile(null);
+        config.setCaCertData(null);
+        config.setClientCertFile(null);
+        config.setClientCertData(null);
+        config.setClientKeyFile(null);
+        config.setClientKeyData(null);
+        config.setClientKeyAlgo(DEFAULT_CLIENT_KEY_ALGO);
+        config.setClientKeyPassphrase(DEFAULT_CLIENT_KEY_PASSPHRASE);
+        config.setUsername(null);
+        config.setPassword(null);
+        config.setOauthToken(null);
+        config.setImpersonateUsername(null);
+        config.setHttpProxy(null);
+        config.setHttpsProxy(null);
+        config.setProxyUsername(null);
+        config.setProxyPassword(null);
+        config.setNoProxy(new String[0]);
+        config.setTlsVersions(new TlsVersion[]{TlsVersion.TLS_1_2});
+        config.setConnectionTimeout(DEFAULT_CONNECTION_TIMEOUT);
+        config.setRequestTimeout(DEFAULT_REQUEST_TIMEOUT);
+        config.setWatchReconnectInterval(DEFAULT_WATCH_RECONNECT_INTERVAL);
+        config.setWatchReconnectLimit(DEFAULT_WATCH_RECONNECT_LIMIT);
+        config.setRollingTimeout(DEFAULT_ROLLING_TIMEOUT);
+        config.setScaleTimeout(DEFAULT_SCALE_TIMEOUT);
+        config.setLoggingInterval(DEFAULT_LOGGING_INTERVAL);
+        config.setWebsocketTimeout(DEFAULT_WEBSOCKET_TIMEOUT);
+        config.setWebsocketPingInterval(DEFAULT_WEBSOCKET_PING_INTERVAL);
+        config.setMaxConcurrentRequests(DEFAULT_MAX_CONCURRENT_REQUESTS);
+        config.setMaxConcurrentRequestsPerHost(DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST);
+        return config;
+    }
+
+    private static Context findContext(io.fabric8.kubernetes.api.model.Config kubeConfig) {
+        String name = kubeConfig.getCurrentContext();
+        if (StringUtils.isEmpty(name) || kubeConfig.getContexts() == null) {
+            return null;
+        }
+        for (NamedContext context : kubeConfig.getContexts()) {
+            if (name.equals(context.getName())) {
+                return context.getContext();
+            }
+        }
+        return null;
+    }
+
+    private static Cluster findCluster(List<NamedCluster> clusters, String name) {
+        if (name == null || clusters == null) {
+            return null;
+        }
+        for (NamedCluster cluster : clusters) {
+            if (name.equals(cluster.getName())) {
+                return cluster.getCluster();
+            }
+        }
+        return null;
+    }
+
+    private static AuthInfo findUser(List<NamedAuthInfo> users, String name) {
+        if (name == null || users == null) {
+            return null;
+        }
+        for (NamedAuthInfo user : users) {
+            if (name.equals(user.getName())) {
+                return user.getUser();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the bearer token of the user, or the token cached by its auth provider if there is no static token.
+     */
+    private static String getToken(AuthInfo user) {
+        if (StringUtils.isNotEmpty(user.getToken())) {
+            return user.getToken();
+        }
+        AuthProviderConfig authProvider = user.getAuthProvider();
+        Map<String, String> config = authProvider == null ? null : authProvider.getConfig();
+        if (config == null) {
+            return null;
+        }
+        if (StringUtils.isNotEmpty(config.get(ACCESS_TOKEN))) {
+            return config.get(ACCESS_TOKEN);
+        }
+        return config.get(ID_TOKEN);
+    }
+}
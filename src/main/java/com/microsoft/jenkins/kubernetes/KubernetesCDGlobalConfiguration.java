@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import hudson.Extension;
+import jenkins.model.GlobalConfiguration;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.StaplerRequest;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The global configuration of the plugin: the default {@link TransportProfile}, and the profiles of the API servers.
+ */
+@Extension
+public class KubernetesCDGlobalConfiguration extends GlobalConfiguration {
+    private TransportProfile transportProfile;
+    private List<ClusterTransportProfile> clusterTransportProfiles;
+
+    public KubernetesCDGlobalConfiguration() {
+        load();
+    }
+
+    /**
+     * Get the global configuration, or {@code null} if Jenkins is not running, e.g., on an agent.
+     */
+    public static KubernetesCDGlobalConfiguration get() {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return null;
+        }
+        return GlobalConfiguration.all().get(KubernetesCDGlobalConfiguration.class);
+    }
+
+    @Nonnull
+    @Override
+    public String getDisplayName() {
+        return Messages.KubernetesCDGlobalConfiguration_displayName();
+    }
+
+    public TransportProfile getTransportProfile() {
+        return transportProfile;
+    }
+
+    @DataBoundSetter
+    public void setTransportProfile(TransportProfile transportProfile) {
+        this.transportProfile = transportProfile;
+    }
+
+    @Nonnull
+    public List<ClusterTransportProfile> getClusterTransportProfiles() {
+        if (clusterTransportProfiles == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(clusterTransportProfiles);
+    }
+
+    @DataBoundSetter
+    public void setClusterTransportProfiles(List<ClusterTransportProfile> clusterTransportProfiles) {
+        if (clusterTransportProfiles == null || clusterTransportProfiles.isEmpty()) {
+            this.clusterTransportProfiles = null;
+        } else {
+            this.clusterTransportProfiles = new ArrayList<>(clusterTransportProfiles);
+        }
+    }
+
+    @Override
+    public boolean configure(StaplerRequest req, JSONObject json) throws FormException {
+        // the optional and repeatable properties are missing from the form data when they are removed
+        transportProfile = null;
+        clusterTransportProfiles = null;
+        req.bindJSON(this, json);
+        save();
+        return true;
+    }
+}
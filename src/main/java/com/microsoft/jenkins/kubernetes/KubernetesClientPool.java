@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.google.common.base.Joiner;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.utils.HttpClientUtils;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pool of the {@link KubernetesClient}s in the JVM running the deployments, keyed by the digest of the effective
+ * client {@link Config}.
+ * <p>
+ * The deployments with the same kubeconfig share one client, and thus its HTTP connection pool and dispatcher
+ * threads, so that the repeated deployments reuse the warm connections instead of negotiating new TLS sessions.
+ * The clients are reference-counted by the {@link Lease}s, and a client that is not leased for
+ * {@link #IDLE_TIMEOUT_MINUTES} minutes is closed.
+ */
+public final class KubernetesClientPool {
+    static final long IDLE_TIMEOUT_MINUTES =
+            Long.getLong(KubernetesClientPool.class.getName() + ".idleTimeoutMinutes", 5);
+
+    private static final long EVICTION_INTERVAL_SECONDS = 30;
+
+    private static final KubernetesClientPool INSTANCE =
+            new KubernetesClientPool(TimeUnit.MINUTES.toMillis(IDLE_TIMEOUT_MINUTES));
+
+    private final long idleTimeoutMillis;
+    private final Map<String, PooledClient> clients = new HashMap<>();
+    private long hits;
+    private long misses;
+    private long evictions;
+    private ScheduledExecutorService evictionExecutor;
+
+    KubernetesClientPool(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public static KubernetesClientPool get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Lease a client for the given configuration, reusing the pooled one if there is any.
+     *
+     * @param config the client configuration
+     * @return the lease, which must be closed when the client is no longer used
+     */
+    public Lease acquire(Config config) {
+        return acquire(config, null);
+    }
+
+    /**
+     * Lease a client for the given configuration and transport settings, reusing the pooled one if there is any.
+     *
+     * @param config  the client configuration
+     * @param profile the transport settings, {@code null} for the client defaults
+     * @return the lease, which must be closed when the client is no longer used
+     */
+    public synchronized Lease acquire(Config config, TransportProfile profile) {
+        Config effective = config;
+        String key;
+        if (profile == null) {
+            key = digest(config);
+        } else {
+            effective = new ConfigBuilder(config).build();
+            profile.configure(effective);
+            key = digest(effective) + '\n' + profile.digest();
+        }
+        PooledClient pooled = clients.get(key);
+        if (pooled == null) {
+            ++misses;
+            pooled = new PooledClient(createClient(effective, profile));
+            clients.put(key, pooled);
+        } else {
+            ++hits;
+        }
+        pooled.refCount++;
+        scheduleEviction();
+        return new Lease(pooled);
+    }
+
+    /**
+     * Close the clients that have not been leased for the idle timeout.
+     */
+    synchronized void evictIdle() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledClient> iter = clients.values().iterator();
+        while (iter.hasNext()) {
+            PooledClient pooled = iter.next();
+            if (pooled.refCount == 0 && now - pooled.idleSince >= idleTimeoutMillis) {
+                pooled.client.close();
+                iter.remove();
+                ++evictions;
+            }
+        }
+    }
+
+    /**
+     * Get a snapshot of the pool statistics.
+     */
+    public synchronized Stats getStats() {
+        int leased = 0;
+        int connections = 0;
+        int idleConnections = 0;
+        for (PooledClient pooled : clients.values()) {
+            if (pooled.refCount > 0) {
+                ++leased;
+            }
+            ConnectionPool connectionPool = pooled.client.adapt(OkHttpClient.class).connectionPool();
+            connections += connectionPool.connectionCount();
+            idleConnections += connectionPool.idleConnectionCount();
+        }
+        return new Stats(hits, misses, evictions, clients.size(), leased, connections, idleConnections);
+    }
+
+    private static KubernetesClient createClient(Config config, TransportProfile profile) {
+        OkHttpClient http = HttpClientUtils.createHttpClient(config);
+        if (profile != null) {
+            http = profile.customize(http, config);
+        }
+        double qps = profile == null ? ApiServerRateLimiter.DEFAULT_QPS : profile.getEffectiveQps();
+        int burst = profile == null ? ApiServerRateLimiter.DEFAULT_BURST : profile.getEffectiveBurst();
+        if (qps > 0) {
+            http = http.newBuilder()
+                    .addInterceptor(ApiServerRateLimiter.get().interceptor(config.getMasterUrl(), qps, burst))
+                    .build();
+        }
+        http = ApiServerCircuitBreaker.get().decorate(http, config.getMasterUrl());
+        return new DefaultKubernetesClient(http, config);
+    }
+
+    private synchronized void release(PooledClient pooled) {
+        if (--pooled.refCount == 0) {
+            pooled.idleSince = System.currentTimeMillis();
+        }
+    }
+
+    private void scheduleEviction() {
+        if (evictionExecutor != null) {
+            return;
+        }
+        evictionExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("kubernetes-cd-client-pool-eviction")
+                .setDaemon(true)
+                .build());
+        evictionExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                evictIdle();
+            }
+        }, EVICTION_INTERVAL_SECONDS, EVICTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Compute the digest of the configuration fields that affect the connections and the identity of the client.
+     */
+    static String digest(Config config) {
+        return DigestUtils.sha256Hex(Joiner.on('\n').useForNull("").join(Arrays.asList(
+                config.getMasterUrl(),
+                config.getApiVersion(),
+                config.getNamespace(),
+                config.isTrustCerts(),
+                config.getCaCertData(),
+                config.getCaCertFile(),
+                config.getClientCertData(),
+                config.getClientCertFile(),
+                config.getClientKeyData(),
+                config.getClientKeyFile(),
+                config.getClientKeyAlgo(),
+                config.getClientKeyPassphrase(),
+                config.getUsername(),
+                config.getPassword(),
+                config.getOauthToken(),
+                config.getImpersonateUsername(),
+                config.getHttpProxy(),
+                config.getHttpsProxy(),
+                config.getNoProxy() == null ? null : Arrays.toString(config.getNoProxy()),
+                config.getConnectionTimeout(),
+                config.getRequestTimeout(),
+                config.getWebsocketPingInterval(),
+                config.getMaxConcurrentRequests(),
+                config.getMaxConcurrentRequestsPerHost())));
+    }
+
+    private static final class PooledClient {
+        private final KubernetesClient client;
+
+        // guarded by the pool
+        private int refCount;
+        private long idleSince;
+
+        PooledClient(KubernetesClient client) {
+            this.client = client;
+        }
+    }
+
+    /**
+     * The use of a pooled client. The client is shared and must not be closed directly.
+     */
+    public final class Lease implements Closeable {
+        private final PooledClient pooled;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        Lease(PooledClient pooled) {
+            this.pooled = pooled;
+        }
+
+        public KubernetesClient getClient() {
+            return pooled.client;
+        }
+
+        /**
+         * Return the client to the pool. Calling this method more than once has no effect.
+         */
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release(pooled);
+            }
+        }
+    }
+
+    /**
+     * The statistics of the pool.
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int liveClients;
+        private final int leasedClients;
+        private final int openConnections;
+        private final int idleConnections;
+
+        Stats(long hits, long misses, long evictions, int liveClients, int leasedClients,
+              int openConnections, int idleConnections) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.liveClients = liveClients;
+            this.leasedClients = leasedClients;
+            this.openConnections = openConnections;
+            this.idleConnections = idleConnections;
+        }
+
+        /**
+         * Get the number of leases served by a pooled client.
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * Get the number of leases that created a new client.
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getLiveClients() {
+            return liveClients;
+        }
+
+        public int getLeasedClients() {
+            return leasedClients;
+        }
+
+        public int getOpenConnections() {
+            return openConnections;
+        }
+
+        public int getIdleConnections() {
+            return idleConnections;
+        }
+    }
+}
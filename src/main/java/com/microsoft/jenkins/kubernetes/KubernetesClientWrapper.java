@@ -7,10 +7,16 @@
 package com.microsoft.jenkins.kubernetes;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.microsoft.jenkins.kubernetes.credentials.ResolvedDockerRegistryEndpoint;
 import com.microsoft.jenkins.kubernetes.util.CommonUtils;
 import com.microsoft.jenkins.kubernetes.util.Constants;
 import com.microsoft.jenkins.kubernetes.util.DockerConfigBuilder;
+import com.microsoft.jenkins.kubernetes.util.MacroSubstitutingReader;
+import com.microsoft.jenkins.kubernetes.util.RetryPolicy;
+import com.microsoft.jenkins.kubernetes.util.YamlDocumentReader;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.util.VariableResolver;
@@ -34,34 +40,94 @@ import io.fabric8.kubernetes.api.model.apps.ReplicaSet;
 import io.fabric8.kubernetes.api.model.apps.StatefulSet;
 import io.fabric8.kubernetes.client.Config;
 import io.fabric8.kubernetes.client.ConfigBuilder;
-import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
-import io.fabric8.kubernetes.client.utils.Utils;
+import io.fabric8.kubernetes.client.KubernetesClientException;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
-public class KubernetesClientWrapper {
-    private final KubernetesClient client;
+public class KubernetesClientWrapper implements Closeable {
+    private static final int PREFETCH_MIN_GROUP_SIZE = 2;
+    private static final long SHARED_CACHE_SYNC_TIMEOUT_MILLIS = 10000;
+    /**
+     * The minimum number of resources read ahead in the streaming mode, so that the ledger check and the prefetch
+     * can still list a group of resources with one call.
+     */
+    private static final int STREAM_BATCH_SIZE = 32;
+    private static final Pattern NAMESPACE_DOCUMENT =
+            Pattern.compile("^kind:[ \\t]*([\"']?)Namespace\\1[ \\t]*(#.*)?$", Pattern.MULTILINE);
+
+    private final Config config;
+    private volatile KubernetesClient client;
+    private KubernetesClientPool.Lease clientLease;
+    private TransportProfile transportProfile;
+    private final ApiServerRateLimiter.WaitAccount rateLimitAccount = new ApiServerRateLimiter.WaitAccount();
+    private RetryPolicy retryPolicy = RetryPolicy.NONE;
+    private final AtomicInteger retries = new AtomicInteger();
+    private final AtomicLong retryBackoffMillis = new AtomicLong();
+    private final AtomicInteger coalescedApplies = new AtomicInteger();
+    private volatile String clusterKey;
     private PrintStream logger = System.out;
     private VariableResolver<String> variableResolver;
     private ResourceUpdateMonitor resourceUpdateMonitor = ResourceUpdateMonitor.NOOP;
+    private int parallelism = 1;
+    private boolean failFast = true;
+    private boolean prefetch;
+    private boolean skipUnchanged;
+    private ApplyStrategy applyStrategy = ApplyStrategy.DEFAULT;
+    private Map<String, String> prefetchLabels = Collections.emptyMap();
+    private ResourceIndex resourceIndex;
+    private ApplyLedgerSession applyLedger;
+    private boolean sharedCache;
+    private boolean streamDocuments;
+    private SharedInformerCache.Lease sharedCacheLease;
+    private ApiResources apiResources;
+    private ServerSideApplier serverSideApplier;
+    private final Set<String> createdNamespaces = ConcurrentHashMap.newKeySet();
 
     @VisibleForTesting
     KubernetesClientWrapper(KubernetesClient client) {
+        this.config = null;
         this.client = client;
     }
 
@@ -75,26 +141,79 @@ public class KubernetesClientWrapper {
             }
         }
 
-        Config config = configFromKubeconfig(kubeconfig);
-        client = new DefaultKubernetesClient(config);
+        config = ConfigCache.get().fromKubeconfig(kubeconfig);
     }
 
     public KubernetesClientWrapper(String server,
                                    String certificateAuthorityData,
                                    String clientCertificateData,
                                    String clientKeyData) {
-        Config config = new ConfigBuilder()
+        config = new ConfigBuilder()
                 .withMasterUrl(server)
                 .withCaCertData(certificateAuthorityData)
                 .withClientCertData(clientCertificateData)
                 .withClientKeyData(clientKeyData)
                 .withWebsocketPingInterval(0)
                 .build();
-        client = new DefaultKubernetesClient(config);
     }
 
+    /**
+     * Get the client used by this wrapper. The client may be shared through the {@link KubernetesClientPool}, so it
+     * must not be closed directly.
+     * <p>
+     * The client is leased from the pool on the first call, with the {@link TransportProfile} set at that time.
+     */
     public KubernetesClient getClient() {
-        return client;
+        KubernetesClient result = client;
+        if (result == null) {
+            synchronized (this) {
+                result = client;
+                if (result == null) {
+                    clientLease = KubernetesClientPool.get().acquire(config, transportProfile);
+                    result = clientLease.getClient();
+                    client = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the API server URL the wrapper connects to, without building the client.
+     */
+    public String getServerUrl() {
+        KubernetesClient current = client;
+        if (current != null) {
+            URL masterUrl = current.getMasterUrl();
+            return masterUrl == null ? null : masterUrl.toString();
+        }
+        return config.getMasterUrl();
+    }
+
+    /**
+     * Return the client to the {@link KubernetesClientPool}.
+     */
+    @Override
+    public synchronized void close() {
+        if (clientLease != null) {
+            clientLease.close();
+        }
+    }
+
+    public TransportProfile getTransportProfile() {
+        return transportProfile;
+    }
+
+    /**
+     * Set the HTTP transport settings of the client. The profile must be set before the client is used.
+     *
+     * @param profile the transport profile, {@code null} for the client defaults
+     * @return this wrapper
+     */
+    public synchronized KubernetesClientWrapper withTransportProfile(TransportProfile profile) {
+        checkState(client == null, Messages.KubernetesClientWrapper_clientAlreadyBuilt());
+        this.transportProfile = profile;
+        return this;
     }
 
     public PrintStream getLogger() {
@@ -126,81 +245,780 @@ public class KubernetesClientWrapper {
     }
 
 
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Set the number of workers used to apply the resources concurrently. Values less than or equal to 1 keep the
+     * serial behavior.
+     *
+     * @param workers the number of resources that can be applied at the same time
+     * @return this wrapper
+     */
+    public KubernetesClientWrapper withParallelism(int workers) {
+        this.parallelism = workers;
+        return this;
+    }
+
+    public boolean isFailFast() {
+        return failFast;
+    }
+
+    /**
+     * Set whether the parallel apply should stop on the first failure, or apply all the remaining resources and
+     * report all the failures at the end.
+     *
+     * @param stopOnFirstFailure {@code true} to cancel the pending resources on the first failure
+     * @return this wrapper
+     */
+    public KubernetesClientWrapper withFailFast(boolean stopOnFirstFailure) {
+        this.failFast = stopOnFirstFailure;
+        return this;
+    }
+
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    /**
+     * Set whether the live state of the resources should be fetched with one list call per (kind, namespace)
+     * group, instead of one GET request per resource. The live state is not prefetched if the documents are
+     * streamed, see {@link #withStreamDocuments(boolean)}.
+     *
+     * @param enabled whether to prefetch the live state
+     * @return this wrapper
+     */
+    public KubernetesClientWrapper withPrefetch(boolean enabled) {
+        this.prefetch = enabled;
+        return this;
+    }
+
+    /**
+     * Limit the prefetch list calls with a label selector, in the form of {@code key1=value1,key2=value2}.
+     * <p>
+     * The resources that do not match the selector are fetched individually.
+     *
+     * @param selector the label selector, blank to list all the resources
+     * @return this wrapper
+     */
+    public KubernetesClientWrapper withPrefetchLabelSelector(String selector) {
+        this.prefetchLabels = CommonUtils.parseLabelSelector(selector);
+        return this;
+    }
+
+    public boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    /**
+     * Set whether the resources that are semantically identical to their live state should be skipped, instead of
+     * being applied again.
+     *
+     * @param skip whether to skip the unchanged resources
+     * @return this wrapper
+     * @see ResourceComparator
+     */
+    public KubernetesClientWrapper withSkipUnchanged(boolean skip) {
+        this.skipUnchanged = skip;
+        return this;
+    }
+
+    public ApplyLedgerSession getApplyLedger() {
+        return applyLedger;
+    }
+
+    /**
+     * Set the ledger of the resources applied by the previous deployments. The resources whose configuration and
+     * live resource version are the same as recorded in the ledger are skipped, and the applied resources are
+     * recorded in the session.
+     *
+     * @param session the ledger session, {@code null} to disable the ledger
+     * @return this wrapper
+     */
+    public KubernetesClientWrapper withApplyLedger(ApplyLedgerSession session) {
+        this.applyLedger = session;
+        return this;
+    }
+
+    public boolean isSharedCache() {
+        return sharedCache;
+    }
+
+    /**
+     * Set whether the current state of the resources should be read from the {@link SharedInformerCache}, which
+     * watches the cluster and is shared with the other deployments running in the same JVM.
+     * <p>
+     * The resources missing from the cache, or older than the resource version seen by the deployment, are fetched
+     * from the cluster.
+     *
+     * @param enabled whether to use the shared cache
+     * @return this wrapper
+     */
+    public KubernetesClientWrapper withSharedCache(boolean enabled) {
+        this.sharedCache = enabled;
+        return this;
+    }
+
+    public boolean isStreamDocuments() {
+        return streamDocuments;
+    }
+
+    /**
+     * Set whether the configuration files should be streamed: the YAML documents are parsed one at a time and
+     * applied in batches, so that the memory used does not grow with the number of documents in the files.
+     * <p>
+     * The files are read twice: the first pass applies the Namespace documents, and the second one the others. The
+     * batches are applied in the order of the files, and the resources in each batch in the order of
+     * {@link ApplyPlanner}. The resources are not prefetched, as the index would hold the listed resources of all the
+     * batches.
+     *
+     * @param enabled whether to stream the configuration files
+     * @return this wrapper
+     */
+    public KubernetesClientWrapper withStreamDocuments(boolean enabled) {
+        this.streamDocuments = enabled;
+        return this;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Set how the resources are applied again when the API server fails with a transient error.
+     *
+     * @param policy the retry policy, {@code null} to never retry
+     * @return this wrapper
+     */
+    public KubernetesClientWrapper withRetryPolicy(RetryPolicy policy) {
+        this.retryPolicy = policy == null ? RetryPolicy.NONE : policy;
+        return this;
+    }
+
+    public ApplyStrategy getApplyStrategy() {
+        return applyStrategy;
+    }
+
+    /**
+     * Set how the resources are sent to the cluster.
+     * <p>
+     * With {@link ApplyStrategy#SERVER_SIDE_APPLY}, each resource is applied with a single request and the API server
+     * computes the changes. The resource kinds without a dedicated updater are applied as well, instead of being
+     * skipped.
+     *
+     * @param strategy the apply strategy
+     * @return this wrapper
+     */
+    public KubernetesClientWrapper withApplyStrategy(ApplyStrategy strategy) {
+        checkNotNull(strategy);
+        this.applyStrategy = strategy;
+        return this;
+    }
+
     /**
      * Apply Kubernetes configurations through the given Kubernetes client.
+     * <p>
+     * If parallelism is enabled, all the configuration files will be loaded first, and the resources are ordered
+     * by their dependencies with {@link ApplyPlanner}. The Namespaces are applied before the resources in them, and
+     * each level of the resources that do not depend on each other are applied concurrently with a bounded worker
+     * pool.
      *
      * @param configFiles The configuration files to be deployed
      * @throws IOException          exception on IO
      * @throws InterruptedException interruption happened during blocking IO operations
      */
     public void apply(FilePath[] configFiles) throws IOException, InterruptedException {
+        ApiServerCircuitBreaker.get().checkAvailable(getServerUrl());
+        if (prefetch && streamDocuments) {
+            log(Messages.KubernetesClientWrapper_prefetchDisabledWhenStreaming());
+        }
+        resourceIndex = prefetch && !streamDocuments ? new ResourceIndex() : null;
+        if (applyLedger != null) {
+            applyLedger.bind(getClient().getMasterUrl().toString());
+        }
+        sharedCacheLease = sharedCache ? SharedInformerCache.get().acquire(getClient()) : null;
+        ApiServerRateLimiter.WaitAccount previousAccount = rateLimitAccount.attach();
+        try {
+            if (streamDocuments) {
+                applyStreaming(configFiles);
+            } else if (parallelism > 1) {
+                applyInParallel(configFiles);
+            } else {
+                applyInSerial(configFiles);
+            }
+        } finally {
+            ApiServerRateLimiter.WaitAccount.detach(previousAccount);
+            if (coalescedApplies.get() > 0) {
+                log(Messages.KubernetesClientWrapper_coalescedStats(coalescedApplies.get()));
+            }
+            if (retries.get() > 0) {
+                log(Messages.KubernetesClientWrapper_retryStats(retries.get(), retryBackoffMillis.get()));
+            }
+            if (rateLimitAccount.getThrottledRequests() > 0) {
+                log(Messages.KubernetesClientWrapper_rateLimitWait(rateLimitAccount.getWaitedMillis(),
+                        rateLimitAccount.getThrottledRequests(), rateLimitAccount.getRequests()));
+            }
+            if (resourceIndex != null) {
+                log(Messages.KubernetesClientWrapper_prefetchHitRate(
+                        resourceIndex.getHits(), resourceIndex.getMisses(), resourceIndex.getHitRate()));
+                resourceIndex = null;
+            }
+            if (sharedCacheLease != null) {
+                log(Messages.KubernetesClientWrapper_sharedCacheHitRate(
+                        sharedCacheLease.getHits(), sharedCacheLease.getMisses(), sharedCacheLease.getHitRate()));
+                sharedCacheLease.close();
+                sharedCacheLease = null;
+            }
+        }
+    }
+
+    private void applyInSerial(FilePath[] configFiles) throws IOException, InterruptedException {
+        for (List<HasMetadata> resources : loadResources(configFiles)) {
+
+            // Process the Namespace in the list first, as it may be a dependency of other resources.
+            applyNamespaces(resources);
+
+            List<ResourceUpdater<?>> updaters = new ArrayList<>(resources.size());
+            for (HasMetadata resource : resources) {
+                updaters.add(createUpdater(resource));
+            }
+            prefetch(updaters);
+            checkLedger(updaters);
+            watchShared(updaters);
+
+            for (int i = 0; i < resources.size(); ++i) {
+                ResourceUpdater<?> updater = updaters.get(i);
+                if (updater == null) {
+                    log(Messages.KubernetesClientWrapper_skipped(resources.get(i)));
+                } else {
+                    updater.createOrApply();
+                }
+            }
+        }
+    }
+
+    private void applyInParallel(FilePath[] configFiles) throws IOException, InterruptedException {
+        List<HasMetadata> resources = new ArrayList<>();
+        for (List<HasMetadata> loaded : loadResources(configFiles)) {
+            resources.addAll(loaded);
+        }
+
+        List<ResourceUpdater<?>> loaded = new ArrayList<>();
+        for (HasMetadata resource : resources) {
+            ResourceUpdater<?> updater = createUpdater(resource);
+            if (updater == null) {
+                log(Messages.KubernetesClientWrapper_skipped(resource));
+            } else {
+                loaded.add(updater);
+            }
+        }
+
+        prefetch(loaded);
+        checkLedger(loaded);
+        watchShared(loaded);
+        throwApplyErrors(applyInLevels(loaded), loaded.size());
+    }
+
+    /**
+     * Order the resources by their dependencies with {@link ApplyPlanner}, and apply each level of the resources that
+     * do not depend on each other concurrently.
+     *
+     * @param updaters the updaters of the resources to be applied
+     * @return the errors occurred when applying the resources. If fail-fast is enabled, the levels after the first
+     * error are not applied.
+     * @throws InterruptedException if the current thread is interrupted while waiting for the workers
+     */
+    private List<Exception> applyInLevels(List<ResourceUpdater<?>> updaters) throws InterruptedException {
+        Map<HasMetadata, ResourceUpdater<?>> byResource = new IdentityHashMap<>();
+        List<HasMetadata> resources = new ArrayList<>(updaters.size());
+        for (ResourceUpdater<?> updater : updaters) {
+            byResource.put(updater.get(), updater);
+            resources.add(updater.get());
+        }
+
+        List<List<HasMetadata>> levels = ApplyPlanner.plan(resources);
+        log(Messages.KubernetesClientWrapper_applyPlan(resources.size(), levels.size()));
+        List<Exception> errors = new ArrayList<>();
+        for (List<HasMetadata> level : levels) {
+            List<ResourceUpdater<?>> levelUpdaters = new ArrayList<>(level.size());
+            for (HasMetadata resource : level) {
+                levelUpdaters.add(byResource.get(resource));
+            }
+            errors.addAll(applyConcurrently(levelUpdaters));
+            if (failFast && !errors.isEmpty()) {
+                break;
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Apply the configuration files document by document, with the memory bounded by the size of a batch of
+     * documents rather than the size of the files.
+     * <p>
+     * The Namespace documents of all the files are applied first, found by a first pass over the files that only
+     * parses the documents of kind {@code Namespace}. The second pass parses the other documents one at a time, and
+     * applies them in batches of {@link #STREAM_BATCH_SIZE} resources, or the parallelism if greater, the next batch
+     * being read only when the previous one has been applied. With a parallelism greater than 1, each batch is
+     * ordered by {@link ApplyPlanner} and applied level by level.
+     *
+     * @param configFiles the configuration files
+     * @throws IOException          if a file cannot be loaded or a resource cannot be applied
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    private void applyStreaming(FilePath[] configFiles) throws IOException, InterruptedException {
+        List<Set<Integer>> namespaceDocuments = new ArrayList<>(configFiles.length);
         for (FilePath path : configFiles) {
-            log(Messages.KubernetesClientWrapper_loadingConfiguration(path));
+            Set<Integer> applied = new HashSet<>();
+            try (YamlDocumentReader documents = openDocuments(path)) {
+                String document;
+                for (int index = 0; (document = documents.next()) != null; ++index) {
+                    if (NAMESPACE_DOCUMENT.matcher(document).find()) {
+                        applyNamespaces(parseDocument(document));
+                        applied.add(index);
+                    }
+                }
+            }
+            namespaceDocuments.add(applied);
+        }
 
-            List<HasMetadata> resources = client.load(CommonUtils.replaceMacro(path.read(), variableResolver)).get();
-            if (resources.isEmpty()) {
+        int batchSize = Math.max(parallelism, STREAM_BATCH_SIZE);
+        List<ResourceUpdater<?>> batch = new ArrayList<>(batchSize);
+        List<Exception> errors = new ArrayList<>();
+        int total = 0;
+        for (int i = 0; i < configFiles.length; ++i) {
+            FilePath path = configFiles[i];
+            log(Messages.KubernetesClientWrapper_loadingConfiguration(path));
+            int loaded = 0;
+            try (YamlDocumentReader documents = openDocuments(path)) {
+                String document;
+                for (int index = 0; (document = documents.next()) != null; ++index) {
+                    if (namespaceDocuments.get(i).contains(index)) {
+                        ++loaded;
+                        continue;
+                    }
+                    List<HasMetadata> resources = parseDocument(document);
+                    loaded += resources.size();
+                    applyNamespaces(resources);
+                    for (HasMetadata resource : resources) {
+                        ++total;
+                        ResourceUpdater<?> updater = createUpdater(resource);
+                        if (updater == null) {
+                            log(Messages.KubernetesClientWrapper_skipped(resource));
+                        } else {
+                            batch.add(updater);
+                        }
+                    }
+                    if (batch.size() >= batchSize) {
+                        errors.addAll(applyBatch(batch));
+                        batch.clear();
+                        if (failFast && !errors.isEmpty()) {
+                            throwApplyErrors(errors, total);
+                        }
+                    }
+                }
+            }
+            if (loaded == 0) {
                 log(Messages.KubernetesClientWrapper_noResourceLoadedFrom(path));
+            }
+        }
+        errors.addAll(applyBatch(batch));
+        throwApplyErrors(errors, total);
+    }
+
+    private YamlDocumentReader openDocuments(FilePath path) throws IOException, InterruptedException {
+        Reader reader = new InputStreamReader(path.read(), StandardCharsets.UTF_8);
+        if (variableResolver != null) {
+            reader = new MacroSubstitutingReader(reader, variableResolver);
+        }
+        return new YamlDocumentReader(reader);
+    }
+
+    private List<HasMetadata> parseDocument(String document) throws IOException {
+        try (InputStream in = new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8))) {
+            return getClient().load(in).get();
+        }
+    }
+
+    /**
+     * Apply a batch of the streamed resources.
+     *
+     * @param updaters the updaters of the resources in the batch
+     * @return the errors occurred when applying the resources in parallel. In serial, the first error is thrown.
+     */
+    private List<Exception> applyBatch(List<ResourceUpdater<?>> updaters) throws IOException, InterruptedException {
+        if (updaters.isEmpty()) {
+            return Collections.emptyList();
+        }
+        checkLedger(updaters);
+        watchShared(updaters);
+        if (parallelism > 1) {
+            return applyInLevels(updaters);
+        }
+        for (ResourceUpdater<?> updater : updaters) {
+            updater.createOrApply();
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Load the resources from the configuration files.
+     * <p>
+     * The files are read, substituted and parsed in parallel on a fork-join pool sized to the available processors
+     * of the JVM running the deployment. The errors of all the files are collected and reported together, before any
+     * resource is applied.
+     *
+     * @param configFiles the configuration files
+     * @return the resources loaded from each file, in the order of the files
+     * @throws IOException          if any of the files cannot be loaded
+     * @throws InterruptedException if the current thread is interrupted while waiting for the files to be loaded
+     */
+    private List<List<HasMetadata>> loadResources(FilePath[] configFiles) throws IOException, InterruptedException {
+        for (FilePath path : configFiles) {
+            log(Messages.KubernetesClientWrapper_loadingConfiguration(path));
+        }
+
+        List<List<HasMetadata>> loaded = new ArrayList<>(configFiles.length);
+        List<Exception> errors = new ArrayList<>();
+        int loadParallelism = Math.min(Runtime.getRuntime().availableProcessors(), configFiles.length);
+        if (loadParallelism <= 1) {
+            for (FilePath path : configFiles) {
+                try {
+                    loaded.add(loadResources(path));
+                } catch (IOException | RuntimeException e) {
+                    log(Messages.KubernetesClientWrapper_failedToLoadFile(path, e.getMessage()));
+                    errors.add(e);
+                }
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(loadParallelism, LoaderThreadFactory.INSTANCE, null, false);
+            try {
+                // the failures are kept as is, as the pool would rethrow a copy of them in the waiting thread
+                final Exception[] failures = new Exception[configFiles.length];
+                List<ForkJoinTask<List<HasMetadata>>> tasks = new ArrayList<>(configFiles.length);
+                for (int i = 0; i < configFiles.length; ++i) {
+                    final int index = i;
+                    final FilePath path = configFiles[i];
+                    tasks.add(pool.submit(new Callable<List<HasMetadata>>() {
+                        @Override
+                        public List<HasMetadata> call() {
+                            try {
+                                return loadResources(path);
+                            } catch (Exception e) {
+                                failures[index] = e;
+                                return null;
+                            }
+                        }
+                    }));
+                }
+                for (int i = 0; i < configFiles.length; ++i) {
+                    List<HasMetadata> resources;
+                    try {
+                        resources = tasks.get(i).get();
+                    } catch (ExecutionException e) {
+                        throw new IOException(e.getCause());
+                    }
+                    if (failures[i] == null) {
+                        loaded.add(resources);
+                    } else {
+                        Exception error = failures[i];
+                        log(Messages.KubernetesClientWrapper_failedToLoadFile(configFiles[i], error.getMessage()));
+                        errors.add(error);
+                    }
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        throwLoadErrors(errors, configFiles.length);
+
+        for (int i = 0; i < configFiles.length; ++i) {
+            if (loaded.get(i).isEmpty()) {
+                log(Messages.KubernetesClientWrapper_noResourceLoadedFrom(configFiles[i]));
+            }
+        }
+        return loaded;
+    }
+
+    private List<HasMetadata> loadResources(FilePath path) throws IOException, InterruptedException {
+        try (InputStream in = path.read()) {
+            return ManifestCache.get().load(in, variableResolver, getClient());
+        }
+    }
+
+    private void throwLoadErrors(List<Exception> errors, int total) throws IOException, InterruptedException {
+        if (errors.size() == 1) {
+            Exception error = errors.get(0);
+            Throwables.propagateIfPossible(error, IOException.class, InterruptedException.class);
+            throw new IOException(error);
+        } else if (!errors.isEmpty()) {
+            IOException exception =
+                    new IOException(Messages.KubernetesClientWrapper_failedToLoad(errors.size(), total));
+            for (Exception error : errors) {
+                exception.addSuppressed(error);
+            }
+            throw exception;
+        }
+    }
+
+    /**
+     * Populate the {@link ResourceIndex} with one list call per (kind, namespace) group of the given resources.
+     * <p>
+     * Groups with a single resource are skipped, as the list call costs no less than the GET request in that case.
+     * If a list call fails, the resources in the group fall back to the GET requests.
+     *
+     * @param updaters the updaters of the resources to be applied, may contain {@code null} for the unsupported
+     *                 resources
+     */
+    private void prefetch(List<ResourceUpdater<?>> updaters) {
+        if (resourceIndex == null) {
+            return;
+        }
+        Map<String, ResourceUpdater<?>> groups = new LinkedHashMap<>();
+        Map<String, Integer> groupSizes = new HashMap<>();
+        for (ResourceUpdater<?> updater : updaters) {
+            if (updater == null) {
                 continue;
             }
+            String group = ApplyPlanner.kindOf(updater.get()) + "/" + updater.getIndexNamespace();
+            if (!groups.containsKey(group)) {
+                groups.put(group, updater);
+                groupSizes.put(group, 0);
+            }
+            groupSizes.put(group, groupSizes.get(group) + 1);
+        }
 
-            // Process the Namespace in the list first, as it may be a dependency of other resources.
-            Iterator<HasMetadata> iter = resources.iterator();
-            while (iter.hasNext()) {
-                HasMetadata resource = iter.next();
-                if (resource instanceof Namespace) {
-                    Namespace namespace = (Namespace) resource;
-                    new NamespaceUpdater(namespace).createOrApply();
-                    iter.remove();
+        for (Map.Entry<String, ResourceUpdater<?>> entry : groups.entrySet()) {
+            if (groupSizes.get(entry.getKey()) < PREFETCH_MIN_GROUP_SIZE) {
+                continue;
+            }
+            ResourceUpdater<?> updater = entry.getValue();
+            String kind = ApplyPlanner.kindOf(updater.get());
+            String namespace = updater.getIndexNamespace();
+            try {
+                List<? extends HasMetadata> items = updater.listResources(prefetchLabels);
+                resourceIndex.putAll(kind, namespace, items, prefetchLabels.isEmpty());
+                log(Messages.KubernetesClientWrapper_prefetched(items.size(), kind, namespace));
+            } catch (KubernetesClientException e) {
+                log(Messages.KubernetesClientWrapper_prefetchFailed(kind, namespace, e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Check whether the resources recorded in the {@link ApplyLedgerSession} with the same digest have drifted in
+     * the cluster, with one metadata-only list request per (kind, namespace) group.
+     * <p>
+     * If a list request fails, the resources in the group are applied as usual.
+     *
+     * @param updaters the updaters of the resources to be applied, may contain {@code null} for the unsupported
+     *                 resources
+     */
+    private void checkLedger(List<ResourceUpdater<?>> updaters) {
+        if (applyLedger == null) {
+            return;
+        }
+        Map<String, ResourceUpdater<?>> groups = new LinkedHashMap<>();
+        for (ResourceUpdater<?> updater : updaters) {
+            if (updater != null && updater.isLedgerTracked()
+                    && applyLedger.isCandidate(updater.getLedgerKey(), updater.getDigest())) {
+                String group = ApplyPlanner.kindOf(updater.get()) + "/" + updater.getIndexNamespace();
+                if (!groups.containsKey(group)) {
+                    groups.put(group, updater);
                 }
             }
+        }
 
-            for (HasMetadata resource : resources) {
-                if (resource instanceof Deployment) {
-                    Deployment deployment = (Deployment) resource;
-                    new DeploymentUpdater(deployment).createOrApply();
-                } else if (resource instanceof Service) {
-                    Service service = (Service) resource;
-                    new ServiceUpdater(service).createOrApply();
-                } else if (resource instanceof Ingress) {
-                    Ingress ingress = (Ingress) resource;
-                    new IngressUpdater(ingress).createOrApply();
-                } else if (resource instanceof ReplicationController) {
-                    ReplicationController replicationController = (ReplicationController) resource;
-                    new ReplicationControllerUpdater(replicationController).createOrApply();
-                } else if (resource instanceof ReplicaSet) {
-                    ReplicaSet rs = (ReplicaSet) resource;
-                    new ReplicaSetUpdater(rs).createOrApply();
-                } else if (resource instanceof DaemonSet) {
-                    DaemonSet daemonSet = (DaemonSet) resource;
-                    new DaemonSetUpdater(daemonSet).createOrApply();
-                } else if (resource instanceof Job) {
-                    Job job = (Job) resource;
-                    new JobUpdater(job).createOrApply();
-                } else if (resource instanceof CronJob) {
-                    CronJob cronJob = (CronJob) resource;
-                    new CronJobUpdater(cronJob).createOrApply();
-                } else if (resource instanceof Pod) {
-                    Pod pod = (Pod) resource;
-                    new PodUpdater(pod).createOrApply();
-                } else if (resource instanceof Secret) {
-                    Secret secret = (Secret) resource;
-                    new SecretUpdater(secret).createOrApply();
-                } else if (resource instanceof HorizontalPodAutoscaler) {
-                    HorizontalPodAutoscaler hpa = (HorizontalPodAutoscaler) resource;
-                    new HorizontalPodAutoscalerUpdater(hpa).createOrApply();
-                } else if (resource instanceof ConfigMap) {
-                    ConfigMap configMap = (ConfigMap) resource;
-                    new ConfigMapUpdater(configMap).createOrApply();
-                } else if (resource instanceof StatefulSet) {
-                    StatefulSet statefulSet = (StatefulSet) resource;
-                    new StatefulSetUpdater(statefulSet).createOrApply();
-                } else {
-                    log(Messages.KubernetesClientWrapper_skipped(resource));
+        for (ResourceUpdater<?> updater : groups.values()) {
+            String kind = ApplyPlanner.kindOf(updater.get());
+            String namespace = updater.getIndexNamespace();
+            try {
+                Map<String, String> versions =
+                        getApiResources().listResourceVersions(kind, updater.get().getApiVersion(), namespace);
+                applyLedger.putLiveVersions(kind, namespace, versions);
+            } catch (IOException | KubernetesClientException e) {
+                log(Messages.KubernetesClientWrapper_ledgerCheckFailed(kind, namespace, e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Register the (kind, namespace) groups of the resources with the {@link SharedInformerCache}, wait a bounded
+     * time for the new informers to complete their initial list, and confirm the cached resource versions with one
+     * metadata-only list request per group.
+     * <p>
+     * The groups already in the prefetched index are read from the index instead.
+     *
+     * @param updaters the updaters of the resources to be applied, may contain {@code null} for the unsupported
+     *                 resources
+     */
+    private void watchShared(List<ResourceUpdater<?>> updaters) throws InterruptedException {
+        if (sharedCacheLease == null || resourceIndex != null) {
+            return;
+        }
+        for (ResourceUpdater<?> updater : updaters) {
+            if (updater == null || updater instanceof GenericResourceUpdater) {
+                continue;
+            }
+            HasMetadata resource = updater.get();
+            sharedCacheLease.watch(ApplyPlanner.kindOf(resource), resource.getApiVersion(),
+                    updater.getIndexNamespace(), resource.getClass());
+        }
+        sharedCacheLease.awaitSynced(SHARED_CACHE_SYNC_TIMEOUT_MILLIS);
+        int unconfirmed = sharedCacheLease.confirmVersions();
+        if (unconfirmed > 0) {
+            log(Messages.KubernetesClientWrapper_sharedCacheUnconfirmed(unconfirmed));
+        }
+    }
+
+    /**
+     * Apply and remove all the Namespaces from the given resource list.
+     *
+     * @param resources the loaded resources, which will not contain any Namespace when the method returns
+     * @throws IOException exception on IO
+     */
+    private void applyNamespaces(List<HasMetadata> resources) throws IOException {
+        Iterator<HasMetadata> iter = resources.iterator();
+        while (iter.hasNext()) {
+            HasMetadata resource = iter.next();
+            if (resource instanceof Namespace) {
+                Namespace namespace = (Namespace) resource;
+                new NamespaceUpdater(namespace).createOrApply();
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Apply the resources with a bounded worker pool.
+     * <p>
+     * The log of each resource is buffered and flushed in the order the resources are loaded, so the build log
+     * is the same regardless of the completion order.
+     *
+     * @param updaters the updaters for the resources to be applied, which do not depend on each other
+     * @return the errors occurred when applying the resources. If fail-fast is enabled, it contains only the first
+     * error and the pending resources are cancelled.
+     * @throws InterruptedException if the current thread is interrupted while waiting for the workers
+     */
+    private List<Exception> applyConcurrently(List<ResourceUpdater<?>> updaters) throws InterruptedException {
+        List<Exception> errors = new ArrayList<>();
+        if (updaters.isEmpty()) {
+            return errors;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(parallelism, updaters.size()),
+                new ThreadFactoryBuilder().setNameFormat("kubernetes-cd-apply-%d").setDaemon(true).build());
+        try {
+            CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+            for (final ResourceUpdater<?> updater : updaters) {
+                updater.bufferLog();
+                completionService.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        ApiServerRateLimiter.WaitAccount previous = rateLimitAccount.attach();
+                        try {
+                            updater.createOrApply();
+                        } finally {
+                            ApiServerRateLimiter.WaitAccount.detach(previous);
+                        }
+                        return null;
+                    }
+                });
+            }
+
+            for (int i = 0; i < updaters.size(); ++i) {
+                try {
+                    completionService.take().get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    errors.add(cause instanceof Exception ? (Exception) cause : e);
+                    if (failFast) {
+                        break;
+                    }
                 }
             }
+        } finally {
+            executor.shutdownNow();
+            for (ResourceUpdater<?> updater : updaters) {
+                updater.flushLog();
+            }
+        }
+        return errors;
+    }
+
+    private void throwApplyErrors(List<Exception> errors, int total) throws IOException {
+        if (errors.size() == 1) {
+            Exception error = errors.get(0);
+            Throwables.propagateIfPossible(error, IOException.class);
+            throw new IOException(error);
+        } else if (!errors.isEmpty()) {
+            IOException exception =
+                    new IOException(Messages.KubernetesClientWrapper_failedToApply(errors.size(), total));
+            for (Exception error : errors) {
+                log(error.getMessage());
+                exception.addSuppressed(error);
+            }
+            throw exception;
         }
     }
 
+    /**
+     * Create the updater for the given resource.
+     *
+     * @param resource the resource loaded from the configuration
+     * @return the updater for the resource, or {@code null} if the resource type is not supported
+     */
+    private ResourceUpdater<?> createUpdater(HasMetadata resource) {
+        if (resource instanceof Deployment) {
+            return new DeploymentUpdater((Deployment) resource);
+        } else if (resource instanceof Service) {
+            return new ServiceUpdater((Service) resource);
+        } else if (resource instanceof Ingress) {
+            return new IngressUpdater((Ingress) resource);
+        } else if (resource instanceof ReplicationController) {
+            return new ReplicationControllerUpdater((ReplicationController) resource);
+        } else if (resource instanceof ReplicaSet) {
+            return new ReplicaSetUpdater((ReplicaSet) resource);
+        } else if (resource instanceof DaemonSet) {
+            return new DaemonSetUpdater((DaemonSet) resource);
+        } else if (resource instanceof Job) {
+            return new JobUpdater((Job) resource);
+        } else if (resource instanceof CronJob) {
+            return new CronJobUpdater((CronJob) resource);
+        } else if (resource instanceof Pod) {
+            return new PodUpdater((Pod) resource);
+        } else if (resource instanceof Secret) {
+            return new SecretUpdater((Secret) resource);
+        } else if (resource instanceof HorizontalPodAutoscaler) {
+            return new HorizontalPodAutoscalerUpdater((HorizontalPodAutoscaler) resource);
+        } else if (resource instanceof ConfigMap) {
+            return new ConfigMapUpdater((ConfigMap) resource);
+        } else if (resource instanceof StatefulSet) {
+            return new StatefulSetUpdater((StatefulSet) resource);
+        } else if (resource instanceof Namespace) {
+            return new NamespaceUpdater((Namespace) resource);
+        } else if (applyStrategy == ApplyStrategy.SERVER_SIDE_APPLY) {
+            return new GenericResourceUpdater(resource);
+        }
+        return null;
+    }
+
+    private synchronized ApiResources getApiResources() {
+        if (apiResources == null) {
+            apiResources = new ApiResources(getClient());
+        }
+        return apiResources;
+    }
+
+    private synchronized ServerSideApplier getServerSideApplier() {
+        if (serverSideApplier == null) {
+            serverSideApplier = new ServerSideApplier(getApiResources());
+        }
+        return serverSideApplier;
+    }
+
     /**
      * Construct the dockercfg with all the provided credentials, and create a new Secret resource for the Kubernetes
      * cluster.
@@ -241,37 +1059,14 @@ public class KubernetesClientWrapper {
     /**
      * Build config from the kubeconfig contents.
      * <p>
-     * This requires to update the system property. In order to avoid changing the system property at the same time
-     * from multiple running jobs, the method is marked as synchronized.
+     * The kubeconfig is parsed with {@link KubeconfigParser}, which does not touch the system properties, so the
+     * method can be called by multiple running jobs at the same time.
      *
      * @param kubeconfig the kubeconfig contents
      * @return the config that can be used to build {@link KubernetesClient}
      */
-    public static synchronized Config configFromKubeconfig(String kubeconfig) {
-        String originalTryKubeconfig =
-                Utils.getSystemPropertyOrEnvVar(Config.KUBERNETES_AUTH_TRYKUBECONFIG_SYSTEM_PROPERTY);
-        String originalTryServiceAccount =
-                Utils.getSystemPropertyOrEnvVar(Config.KUBERNETES_AUTH_TRYSERVICEACCOUNT_SYSTEM_PROPERTY);
-        String originalTryNamespacePath =
-                Utils.getSystemPropertyOrEnvVar(Config.KUBERNETES_TRYNAMESPACE_PATH_SYSTEM_PROPERTY);
-        try {
-            System.setProperty(Config.KUBERNETES_AUTH_TRYKUBECONFIG_SYSTEM_PROPERTY, "false");
-            System.setProperty(Config.KUBERNETES_AUTH_TRYSERVICEACCOUNT_SYSTEM_PROPERTY, "false");
-            System.setProperty(Config.KUBERNETES_TRYNAMESPACE_PATH_SYSTEM_PROPERTY, "false");
-            return Config.fromKubeconfig(kubeconfig);
-        } finally {
-            restoreProperty(Config.KUBERNETES_AUTH_TRYKUBECONFIG_SYSTEM_PROPERTY, originalTryKubeconfig);
-            restoreProperty(Config.KUBERNETES_AUTH_TRYSERVICEACCOUNT_SYSTEM_PROPERTY, originalTryServiceAccount);
-            restoreProperty(Config.KUBERNETES_TRYNAMESPACE_PATH_SYSTEM_PROPERTY, originalTryNamespacePath);
-        }
-    }
-
-    private static void restoreProperty(String name, String value) {
-        if (value == null) {
-            System.clearProperty(name);
-        } else {
-            System.setProperty(name, value);
-        }
+    public static Config configFromKubeconfig(String kubeconfig) {
+        return KubeconfigParser.parse(kubeconfig);
     }
 
     public static String prepareSecretName(String nameCfg, String defaultName, EnvVars envVars) {
@@ -319,6 +1114,10 @@ public class KubernetesClientWrapper {
 
     private abstract class ResourceUpdater<T extends HasMetadata> {
         private final T resource;
+        private String digest;
+        private T applied;
+        private T appliedOriginal;
+        private List<String> logBuffer;
 
         ResourceUpdater(T resource) {
             checkNotNull(resource);
@@ -336,11 +1135,34 @@ public class KubernetesClientWrapper {
             if (ns == null) {
                 ns = Constants.DEFAULT_KUBERNETES_NAMESPACE;
             }
-            return ns;
+            return ns;
+        }
+
+        final T get() {
+            return resource;
+        }
+
+        /**
+         * Get the {@link ContentDigest} of the resource loaded from the configuration, before it is changed for the
+         * apply.
+         */
+        final synchronized String getDigest() {
+            if (digest == null) {
+                digest = ContentDigest.of(resource);
+            }
+            return digest;
         }
 
-        final T get() {
-            return resource;
+        /**
+         * Check whether the resource is tracked by the {@link ApplyLedgerSession}. The digest of a Secret does not
+         * cover its data, so the Secrets are always compared with their live state instead.
+         */
+        final boolean isLedgerTracked() {
+            return !(resource instanceof Secret);
+        }
+
+        final String getLedgerKey() {
+            return ApplyLedgerSession.key(ApplyPlanner.kindOf(resource), getIndexNamespace(), getName());
         }
 
         final String getName() {
@@ -360,32 +1182,334 @@ public class KubernetesClientWrapper {
          * Explicitly apply the configuration if a resource with the same name exists in the namespace in the cluster,
          * or create one if not.
          * <p>
-         * If we cannot load resource during application (possibly because the resource gets deleted after we first
-         * checked), or some one created the resource after we checked and before we created, the method fails with
-         * exception.
+         * If the resource gets deleted after we first checked, or some one created the resource after we checked and
+         * before we created, or the API server fails with a transient error, the apply is retried according to the
+         * {@link RetryPolicy}, with the current state read again from the cluster. The method fails with exception
+         * when the retries are exhausted.
+         * <p>
+         * If an identical apply of the resource, with the same desired state, is already running for the same
+         * cluster in the JVM, its result is shared instead, see {@link ApplyCoalescer}. The
+         * {@link ResourceUpdateMonitor} is then given the original state from the prefetched index, or the one found
+         * by the apply that is shared if the resource is not indexed.
+         * <p>
+         * If the resource is expected to be absent according to the {@link ApplyStrategy}, it is created without
+         * being fetched first, and fetched only if the creation fails with HTTP 409 Conflict.
          *
          * @throws IOException if we cannot find the resource in the cluster when we apply the configuration
          */
         final void createOrApply() throws IOException {
-            T original = getCurrentResource();
+            if (isUpToDateInLedger()) {
+                return;
+            }
+            ApplyCoalescer.Flight flight = ApplyCoalescer.get().join(getCoalescingKey());
+            if (!flight.isLeader()) {
+                T shared;
+                try {
+                    shared = flight.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException(e.getMessage());
+                }
+                if (shared != null) {
+                    coalescedApplies.incrementAndGet();
+                    log(Messages.KubernetesClientWrapper_coalesced(ApplyPlanner.kindOf(get()), getName()));
+                    Optional<T> indexed = lookupIndex();
+                    onUpdated(indexed != null ? indexed.orNull() : flight.<T>getOriginal(), shared);
+                    return;
+                }
+                // the leader failed, which may be specific to its build, try again
+                applyWithRetries();
+                return;
+            }
+            boolean completed = false;
+            try {
+                applyWithRetries();
+                flight.complete(appliedOriginal, applied);
+                completed = true;
+            } finally {
+                if (!completed) {
+                    flight.fail();
+                }
+            }
+        }
+
+        /**
+         * Get the identity of the apply for the {@link ApplyCoalescer}: the cluster, the resource and its desired
+         * state, and the options that change what is sent to the cluster.
+         */
+        private String getCoalescingKey() {
+            String mode = (applyStrategy == ApplyStrategy.SERVER_SIDE_APPLY ? "ssa" : "update")
+                    + (skipUnchanged ? ",stamped" : "");
+            return ApplyCoalescer.key(getClusterKey(), ApplyPlanner.kindOf(get()), getIndexNamespace(), getName(),
+                    ContentDigest.ofContent(get()), mode);
+        }
+
+        private void applyWithRetries() throws IOException {
+            for (int retry = 0; ; ++retry) {
+                try {
+                    if (applyStrategy == ApplyStrategy.SERVER_SIDE_APPLY) {
+                        serverSideApply(retry > 0);
+                    } else {
+                        createOrApply(retry > 0);
+                    }
+                    return;
+                } catch (KubernetesClientException | ResourceDeletedException e) {
+                    boolean retryable = e instanceof ResourceDeletedException
+                            ? retry < retryPolicy.getMaxRetries()
+                            : retryPolicy.shouldRetry(retry + 1, e);
+                    if (!retryable) {
+                        throw e;
+                    }
+                    backOff(retry + 1, e);
+                }
+            }
+        }
+
+        /**
+         * Wait before the retry of a failed attempt, and count it in the statistics of the deployment.
+         */
+        private void backOff(int retry, Exception error) throws IOException {
+            long delay = error instanceof ResourceDeletedException ? 0 : retryPolicy.getDelayMillis(retry, error);
+            log(Messages.KubernetesClientWrapper_retrying(ApplyPlanner.kindOf(get()), getName(),
+                    error.getMessage(), delay, retry, retryPolicy.getMaxRetries()));
+            retries.incrementAndGet();
+            retryBackoffMillis.addAndGet(delay);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(error.getMessage());
+            }
+        }
+
+        /**
+         * Apply the resource once.
+         *
+         * @param refetch whether to read the current state from the cluster, ignoring the prefetched and cached
+         *                states, e.g., when the previous attempt failed with a conflict
+         */
+        private void createOrApply(boolean refetch) throws IOException {
             T current = get();
+            String digest = skipUnchanged ? getDigest() : null;
+            Optional<T> indexed = refetch ? null : lookupIndex();
+            T original;
+            if (refetch) {
+                original = getCurrentResource();
+            } else if (indexed != null) {
+                original = indexed.orNull();
+            } else if (isCreateFirst()) {
+                stamp(digest);
+                T created = createIfAbsent(current);
+                if (created != null) {
+                    logCreated(created);
+                    onUpdated(null, created);
+                    return;
+                }
+                original = fetchCurrentResource();
+            } else {
+                original = fetchCurrentResource();
+            }
+
             T updated;
-            if (original != null) {
-                updated = applyResource(original, current);
+            if (isUnchanged(original, current, digest)) {
+                updated = original;
+                logUnchanged(updated);
+            } else if (original != null) {
+                stamp(digest);
+                try {
+                    updated = applyResource(original, current);
+                } catch (KubernetesClientException e) {
+                    if (e.getCode() != HttpURLConnection.HTTP_NOT_FOUND) {
+                        throw e;
+                    }
+                    updated = null;
+                }
                 if (updated == null) {
-                    throw new IOException(Messages.KubernetesClientWrapper_resourceNotFound(
+                    // deleted after it was fetched, the retry creates it again
+                    throw new ResourceDeletedException(Messages.KubernetesClientWrapper_resourceNotFound(
                             getKind(), current.getMetadata().getName()));
                 }
                 logApplied(updated);
             } else {
+                stamp(digest);
                 updated = createResource(get());
                 logCreated(updated);
             }
+            onUpdated(original, updated);
+        }
+
+        /**
+         * Apply the resource with a single server-side apply request, without fetching the current state first.
+         * <p>
+         * The unchanged resources are still skipped if their live state is already in the prefetched index. The live
+         * state known from the prefetched index or the {@link SharedInformerCache} is passed to the
+         * {@link ResourceUpdateMonitor} as the original resource.
+         *
+         * @param retry whether the previous attempt failed, in which case the prefetched state is not used
+         */
+        private void serverSideApply(boolean retry) throws IOException {
+            T current = get();
+            String digest = skipUnchanged ? getDigest() : null;
+            T original = null;
+            if (!retry) {
+                Optional<T> indexed = lookupIndex();
+                if (indexed != null) {
+                    original = indexed.orNull();
+                    if (isUnchanged(original, current, digest)) {
+                        logUnchanged(original);
+                        onUpdated(original, original);
+                        return;
+                    }
+                } else if (sharedCacheLease != null) {
+                    original = sharedCacheLease.get(ApplyPlanner.kindOf(current), getIndexNamespace(), getName());
+                }
+            }
+            stamp(digest);
+
+            ServerSideApplier.Applied<T> applied = getServerSideApplier().apply(current);
+            T updated = applied.getResource();
+            if (applied.isCreated()) {
+                logCreated(updated);
+                original = null;
+            } else {
+                logApplied(updated);
+            }
+            onUpdated(original, updated);
+        }
+
+        /**
+         * Check whether the resource is up to date according to the {@link ApplyLedgerSession}, in which case it is
+         * skipped without any request.
+         */
+        private boolean isUpToDateInLedger() {
+            if (applyLedger == null || !isLedgerTracked() || !applyLedger.isUpToDate(getLedgerKey(), getDigest())) {
+                return false;
+            }
+            applyLedger.keep(getLedgerKey());
+            log(Messages.KubernetesClientWrapper_unchangedSinceLastApply(ApplyPlanner.kindOf(get()), getName()));
+            return true;
+        }
+
+        /**
+         * Record the latest state of the resource after it is applied, or found unchanged.
+         */
+        private void onUpdated(T original, T updated) {
+            applied = updated;
+            appliedOriginal = original;
+            if (resourceIndex != null) {
+                resourceIndex.update(ApplyPlanner.kindOf(get()), getIndexNamespace(), updated);
+            }
+            if (applyLedger != null && isLedgerTracked() && updated != null && updated.getMetadata() != null) {
+                applyLedger.record(getLedgerKey(), getDigest(), updated.getMetadata().getResourceVersion());
+            }
+            if (sharedCacheLease != null) {
+                sharedCacheLease.offer(ApplyPlanner.kindOf(get()), getIndexNamespace(), updated);
+            }
             notifyUpdate(original, updated);
         }
 
+        /**
+         * Get the current state of the resource from the {@link SharedInformerCache}, or from the cluster if the
+         * cache does not hold it, or its resource version in the cache cannot be confirmed to be the live one.
+         */
+        private T fetchCurrentResource() {
+            if (sharedCacheLease != null) {
+                T cached = sharedCacheLease.get(ApplyPlanner.kindOf(get()), getIndexNamespace(), getName());
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            return getCurrentResource();
+        }
+
+        /**
+         * Check whether the live resource is up to date. If the live resource is stamped with a
+         * {@link ContentDigest}, it is up to date only if the digest matches, and for a Secret, its data is the same.
+         * The resources that are not stamped, e.g., created before or by others, are compared semantically.
+         *
+         * @param original the live resource, {@code null} if it does not exist
+         * @param current  the resource loaded from the configuration, not stamped yet
+         * @param digest   the digest of the current resource, {@code null} if unchanged resources are not skipped
+         */
+        private boolean isUnchanged(T original, T current, String digest) {
+            if (original == null || digest == null) {
+                return false;
+            }
+            String stamped = ContentDigest.get(original);
+            if (stamped == null) {
+                return ResourceComparator.isUnchanged(original, current);
+            }
+            return digest.equals(stamped)
+                    && (!(current instanceof Secret) || ResourceComparator.isSecretDataUnchanged(original, current));
+        }
+
+        private void stamp(String digest) {
+            if (digest != null) {
+                ContentDigest.stamp(get(), digest);
+            }
+        }
+
+        /**
+         * Find the current state of the resource from the prefetched index.
+         *
+         * @return {@code null} if the index is not available or does not know about the resource,
+         * {@link Optional#absent()} if the resource does not exist, or the current state of the resource
+         */
+        @SuppressWarnings("unchecked")
+        final Optional<T> lookupIndex() {
+            if (resourceIndex == null) {
+                return null;
+            }
+            return (Optional<T>) resourceIndex.lookup(ApplyPlanner.kindOf(get()), getIndexNamespace(), getName());
+        }
+
+        /**
+         * Check whether the resource should be created without fetching its current state first.
+         */
+        private boolean isCreateFirst() {
+            switch (applyStrategy) {
+                case CREATE_FIRST:
+                    return true;
+                case AUTO:
+                    String namespace = getIndexNamespace();
+                    return namespace != null && createdNamespaces.contains(namespace);
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Create the resource, or return {@code null} if it already exists in the cluster.
+         */
+        private T createIfAbsent(T current) {
+            try {
+                return createResource(current);
+            } catch (KubernetesClientException e) {
+                if (e.getCode() == HttpURLConnection.HTTP_CONFLICT) {
+                    log(Messages.KubernetesClientWrapper_alreadyExists(ApplyPlanner.kindOf(current), getName()));
+                    return null;
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Get the namespace used to group the resource in the {@link ResourceIndex}.
+         */
+        String getIndexNamespace() {
+            return getNamespace();
+        }
+
         abstract T getCurrentResource();
 
+        /**
+         * List the resources of the same kind in the namespace of this resource.
+         *
+         * @param labels the labels the listed resources should match, empty to list all
+         * @return the resources in the cluster
+         */
+        abstract List<T> listResources(Map<String, String> labels);
+
         abstract T applyResource(T original, T current);
 
         abstract T createResource(T current);
@@ -399,6 +1523,40 @@ public class KubernetesClientWrapper {
         void logCreated(T res) {
             log(Messages.KubernetesClientWrapper_created(res.getClass().getSimpleName(), res));
         }
+
+        void logUnchanged(T res) {
+            log(Messages.KubernetesClientWrapper_unchanged(res.getClass().getSimpleName(), res));
+        }
+
+        /**
+         * Hold the log messages in memory until {@link #flushLog()} is called, so that the updaters running
+         * concurrently do not interleave their output.
+         */
+        final void bufferLog() {
+            logBuffer = Collections.synchronizedList(new ArrayList<String>());
+        }
+
+        final void flushLog() {
+            if (logBuffer == null) {
+                return;
+            }
+            List<String> messages;
+            synchronized (logBuffer) {
+                messages = new ArrayList<>(logBuffer);
+                logBuffer.clear();
+            }
+            for (String message : messages) {
+                KubernetesClientWrapper.this.log(message);
+            }
+        }
+
+        final void log(String message) {
+            if (logBuffer != null) {
+                logBuffer.add(message);
+            } else {
+                KubernetesClientWrapper.this.log(message);
+            }
+        }
     }
 
     private class DeploymentUpdater extends ResourceUpdater<Deployment> {
@@ -408,7 +1566,7 @@ public class KubernetesClientWrapper {
 
         @Override
         Deployment getCurrentResource() {
-            return client
+            return getClient()
                     .apps()
                     .deployments()
                     .inNamespace(getNamespace())
@@ -416,9 +1574,20 @@ public class KubernetesClientWrapper {
                     .get();
         }
 
+        @Override
+        List<Deployment> listResources(Map<String, String> labels) {
+            return getClient()
+                    .apps()
+                    .deployments()
+                    .inNamespace(getNamespace())
+                    .withLabels(labels)
+                    .list()
+                    .getItems();
+        }
+
         @Override
         Deployment applyResource(Deployment original, Deployment current) {
-            return client
+            return getClient()
                     .apps()
                     .deployments()
                     .inNamespace(getNamespace())
@@ -431,7 +1600,7 @@ public class KubernetesClientWrapper {
 
         @Override
         Deployment createResource(Deployment current) {
-            return client
+            return getClient()
                     .apps()
                     .deployments()
                     .inNamespace(getNamespace())
@@ -451,13 +1620,23 @@ public class KubernetesClientWrapper {
 
         @Override
         Service getCurrentResource() {
-            return client
+            return getClient()
                     .services()
                     .inNamespace(getNamespace())
                     .withName(getName())
                     .get();
         }
 
+        @Override
+        List<Service> listResources(Map<String, String> labels) {
+            return getClient()
+                    .services()
+                    .inNamespace(getNamespace())
+                    .withLabels(labels)
+                    .list()
+                    .getItems();
+        }
+
         @Override
         Service applyResource(Service original, Service current) {
             List<ServicePort> originalPorts = original.getSpec().getPorts();
@@ -498,7 +1677,7 @@ public class KubernetesClientWrapper {
             // this should be no-op, keep it in case current.getSpec().getPorts() behavior changes in future
             current.getSpec().setPorts(currentPorts);
 
-            return client.services()
+            return getClient().services()
                     .inNamespace(getNamespace())
                     .withName(original.getMetadata().getName())
                     .edit()
@@ -509,7 +1688,7 @@ public class KubernetesClientWrapper {
 
         @Override
         Service createResource(Service current) {
-            return client
+            return getClient()
                     .services()
                     .inNamespace(getNamespace())
                     .create(current);
@@ -528,7 +1707,7 @@ public class KubernetesClientWrapper {
 
         @Override
         Ingress getCurrentResource() {
-            return client
+            return getClient()
                     .extensions()
                     .ingresses()
                     .inNamespace(getNamespace())
@@ -536,9 +1715,20 @@ public class KubernetesClientWrapper {
                     .get();
         }
 
+        @Override
+        List<Ingress> listResources(Map<String, String> labels) {
+            return getClient()
+                    .extensions()
+                    .ingresses()
+                    .inNamespace(getNamespace())
+                    .withLabels(labels)
+                    .list()
+                    .getItems();
+        }
+
         @Override
         Ingress applyResource(Ingress original, Ingress current) {
-            return client
+            return getClient()
                     .extensions()
                     .ingresses()
                     .inNamespace(getNamespace())
@@ -551,7 +1741,7 @@ public class KubernetesClientWrapper {
 
         @Override
         Ingress createResource(Ingress current) {
-            return client
+            return getClient()
                     .extensions()
                     .ingresses()
                     .inNamespace(getNamespace())
@@ -571,16 +1761,26 @@ public class KubernetesClientWrapper {
 
         @Override
         ReplicationController getCurrentResource() {
-            return client
+            return getClient()
                     .replicationControllers()
                     .inNamespace(getNamespace())
                     .withName(getName())
                     .get();
         }
 
+        @Override
+        List<ReplicationController> listResources(Map<String, String> labels) {
+            return getClient()
+                    .replicationControllers()
+                    .inNamespace(getNamespace())
+                    .withLabels(labels)
+                    .list()
+                    .getItems();
+        }
+
         @Override
         ReplicationController applyResource(ReplicationController original, ReplicationController current) {
-            return client
+            return getClient()
                     .replicationControllers()
                     .inNamespace(getNamespace())
                     .withName(current.getMetadata().getName())
@@ -592,7 +1792,7 @@ public class KubernetesClientWrapper {
 
         @Override
         ReplicationController createResource(ReplicationController current) {
-            return client
+            return getClient()
                     .replicationControllers()
                     .inNamespace(getNamespace())
                     .create(current);
@@ -611,7 +1811,7 @@ public class KubernetesClientWrapper {
 
         @Override
         ReplicaSet getCurrentResource() {
-            return client
+            return getClient()
                     .apps()
                     .replicaSets()
                     .inNamespace(getNamespace())
@@ -619,9 +1819,20 @@ public class KubernetesClientWrapper {
                     .get();
         }
 
+        @Override
+        List<ReplicaSet> listResources(Map<String, String> labels) {
+            return getClient()
+                    .apps()
+                    .replicaSets()
+                    .inNamespace(getNamespace())
+                    .withLabels(labels)
+                    .list()
+                    .getItems();
+        }
+
         @Override
         ReplicaSet applyResource(ReplicaSet original, ReplicaSet current) {
-            return client
+            return getClient()
                     .apps()
                     .replicaSets()
                     .inNamespace(getNamespace())
@@ -634,7 +1845,7 @@ public class KubernetesClientWrapper {
 
         @Override
         ReplicaSet createResource(ReplicaSet current) {
-            return client
+            return getClient()
                     .apps()
                     .replicaSets()
                     .inNamespace(getNamespace())
@@ -654,7 +1865,7 @@ public class KubernetesClientWrapper {
 
         @Override
         DaemonSet getCurrentResource() {
-            return client
+            return getClient()
                     .apps()
                     .daemonSets()
                     .inNamespace(getNamespace())
@@ -662,9 +1873,20 @@ public class KubernetesClientWrapper {
                     .get();
         }
 
+        @Override
+        List<DaemonSet> listResources(Map<String, String> labels) {
+            return getClient()
+                    .apps()
+                    .daemonSets()
+                    .inNamespace(getNamespace())
+                    .withLabels(labels)
+                    .list()
+                    .getItems();
+        }
+
         @Override
         DaemonSet applyResource(DaemonSet original, DaemonSet current) {
-            return client
+            return getClient()
                     .apps()
                     .daemonSets()
                     .inNamespace(getNamespace())
@@ -677,7 +1899,7 @@ public class KubernetesClientWrapper {
 
         @Override
         DaemonSet createResource(DaemonSet current) {
-            return client
+            return getClient()
                     .apps()
                     .daemonSets()
                     .inNamespace(getNamespace())
@@ -697,7 +1919,7 @@ public class KubernetesClientWrapper {
 
         @Override
         Job getCurrentResource() {
-            return client
+            return getClient()
                     .batch()
                     .jobs()
                     .inNamespace(getNamespace())
@@ -705,9 +1927,20 @@ public class KubernetesClientWrapper {
                     .get();
         }
 
+        @Override
+        List<Job> listResources(Map<String, String> labels) {
+            return getClient()
+                    .batch()
+                    .jobs()
+                    .inNamespace(getNamespace())
+                    .withLabels(labels)
+                    .list()
+                    .getItems();
+        }
+
         @Override
         Job applyResource(Job original, Job current) {
-            return client
+            return getClient()
                     .batch()
                     .jobs()
                     .inNamespace(getNamespace())
@@ -720,7 +1953,7 @@ public class KubernetesClientWrapper {
 
         @Override
         Job createResource(Job current) {
-            return client
+            return getClient()
                     .batch()
                     .jobs()
                     .inNamespace(getNamespace())
@@ -740,7 +1973,7 @@ public class KubernetesClientWrapper {
 
         @Override
         CronJob getCurrentResource() {
-            return client
+            return getClient()
                     .batch()
                     .cronjobs()
                     .inNamespace(getNamespace())
@@ -748,9 +1981,20 @@ public class KubernetesClientWrapper {
                     .get();
         }
 
+        @Override
+        List<CronJob> listResources(Map<String, String> labels) {
+            return getClient()
+                    .batch()
+                    .cronjobs()
+                    .inNamespace(getNamespace())
+                    .withLabels(labels)
+                    .list()
+                    .getItems();
+        }
+
         @Override
         CronJob applyResource(CronJob original, CronJob current) {
-            return client
+            return getClient()
                     .batch()
                     .cronjobs()
                     .inNamespace(getNamespace())
@@ -763,7 +2007,7 @@ public class KubernetesClientWrapper {
 
         @Override
         CronJob createResource(CronJob current) {
-            return client
+            return getClient()
                     .batch()
                     .cronjobs()
                     .inNamespace(getNamespace())
@@ -783,16 +2027,26 @@ public class KubernetesClientWrapper {
 
         @Override
         Pod getCurrentResource() {
-            return client
+            return getClient()
                     .pods()
                     .inNamespace(getNamespace())
                     .withName(getName())
                     .get();
         }
 
+        @Override
+        List<Pod> listResources(Map<String, String> labels) {
+            return getClient()
+                    .pods()
+                    .inNamespace(getNamespace())
+                    .withLabels(labels)
+                    .list()
+                    .getItems();
+        }
+
         @Override
         Pod applyResource(Pod original, Pod current) {
-            return client
+            return getClient()
                     .pods()
                     .inNamespace(getNamespace())
                     .withName(current.getMetadata().getName())
@@ -804,7 +2058,7 @@ public class KubernetesClientWrapper {
 
         @Override
         Pod createResource(Pod current) {
-            return client
+            return getClient()
                     .pods()
                     .inNamespace(getNamespace())
                     .create(current);
@@ -823,7 +2077,7 @@ public class KubernetesClientWrapper {
 
         @Override
         HorizontalPodAutoscaler getCurrentResource() {
-            return client
+            return getClient()
                     .autoscaling()
                     .horizontalPodAutoscalers()
                     .inNamespace(getNamespace())
@@ -831,9 +2085,20 @@ public class KubernetesClientWrapper {
                     .get();
         }
 
+        @Override
+        List<HorizontalPodAutoscaler> listResources(Map<String, String> labels) {
+            return getClient()
+                    .autoscaling()
+                    .horizontalPodAutoscalers()
+                    .inNamespace(getNamespace())
+                    .withLabels(labels)
+                    .list()
+                    .getItems();
+        }
+
         @Override
         HorizontalPodAutoscaler applyResource(HorizontalPodAutoscaler original, HorizontalPodAutoscaler current) {
-            return client
+            return getClient()
                     .autoscaling()
                     .horizontalPodAutoscalers()
                     .inNamespace(getNamespace())
@@ -846,7 +2111,7 @@ public class KubernetesClientWrapper {
 
         @Override
         HorizontalPodAutoscaler createResource(HorizontalPodAutoscaler current) {
-            return client
+            return getClient()
                     .autoscaling()
                     .horizontalPodAutoscalers()
                     .inNamespace(getNamespace())
@@ -866,16 +2131,26 @@ public class KubernetesClientWrapper {
 
         @Override
         ConfigMap getCurrentResource() {
-            return client
+            return getClient()
                     .configMaps()
                     .inNamespace(getNamespace())
                     .withName(getName())
                     .get();
         }
 
+        @Override
+        List<ConfigMap> listResources(Map<String, String> labels) {
+            return getClient()
+                    .configMaps()
+                    .inNamespace(getNamespace())
+                    .withLabels(labels)
+                    .list()
+                    .getItems();
+        }
+
         @Override
         ConfigMap applyResource(ConfigMap original, ConfigMap current) {
-            return client
+            return getClient()
                     .configMaps()
                     .inNamespace(getNamespace())
                     .withName(current.getMetadata().getName())
@@ -887,7 +2162,7 @@ public class KubernetesClientWrapper {
 
         @Override
         ConfigMap createResource(ConfigMap current) {
-            return client
+            return getClient()
                     .configMaps()
                     .inNamespace(getNamespace())
                     .create(current);
@@ -906,16 +2181,26 @@ public class KubernetesClientWrapper {
 
         @Override
         Secret getCurrentResource() {
-            return client
+            return getClient()
                     .secrets()
                     .inNamespace(getNamespace())
                     .withName(getName())
                     .get();
         }
 
+        @Override
+        List<Secret> listResources(Map<String, String> labels) {
+            return getClient()
+                    .secrets()
+                    .inNamespace(getNamespace())
+                    .withLabels(labels)
+                    .list()
+                    .getItems();
+        }
+
         @Override
         Secret applyResource(Secret original, Secret current) {
-            return client
+            return getClient()
                     .secrets()
                     .inNamespace(getNamespace())
                     .withName(current.getMetadata().getName())
@@ -929,7 +2214,7 @@ public class KubernetesClientWrapper {
 
         @Override
         Secret createResource(Secret current) {
-            return client
+            return getClient()
                     .secrets()
                     .inNamespace(getNamespace())
                     .create(current);
@@ -950,6 +2235,11 @@ public class KubernetesClientWrapper {
         void logCreated(Secret res) {
             log(Messages.KubernetesClientWrapper_created(getKind(), "name: " + getName()));
         }
+
+        @Override
+        void logUnchanged(Secret res) {
+            log(Messages.KubernetesClientWrapper_unchanged("Secret", "name: " + getName()));
+        }
     }
 
     private class NamespaceUpdater extends ResourceUpdater<Namespace> {
@@ -959,15 +2249,24 @@ public class KubernetesClientWrapper {
 
         @Override
         Namespace getCurrentResource() {
-            return client
+            return getClient()
                     .namespaces()
                     .withName(getName())
                     .get();
         }
 
+        @Override
+        List<Namespace> listResources(Map<String, String> labels) {
+            return getClient()
+                    .namespaces()
+                    .withLabels(labels)
+                    .list()
+                    .getItems();
+        }
+
         @Override
         Namespace applyResource(Namespace original, Namespace current) {
-            return client
+            return getClient()
                     .namespaces()
                     .withName(getName())
                     .edit()
@@ -978,15 +2277,22 @@ public class KubernetesClientWrapper {
 
         @Override
         Namespace createResource(Namespace current) {
-            return client
+            Namespace created = getClient()
                     .namespaces()
                     .create(current);
+            createdNamespaces.add(getName());
+            return created;
         }
 
         @Override
         void notifyUpdate(Namespace original, Namespace current) {
             resourceUpdateMonitor.onNamespaceUpdate(original, current);
         }
+
+        @Override
+        String getIndexNamespace() {
+            return null;
+        }
     }
 
     private class StatefulSetUpdater extends ResourceUpdater<StatefulSet> {
@@ -996,7 +2302,7 @@ public class KubernetesClientWrapper {
 
         @Override
         StatefulSet getCurrentResource() {
-            return client
+            return getClient()
                     .apps()
                     .statefulSets()
                     .inNamespace(getNamespace())
@@ -1004,9 +2310,20 @@ public class KubernetesClientWrapper {
                     .get();
         }
 
+        @Override
+        List<StatefulSet> listResources(Map<String, String> labels) {
+            return getClient()
+                    .apps()
+                    .statefulSets()
+                    .inNamespace(getNamespace())
+                    .withLabels(labels)
+                    .list()
+                    .getItems();
+        }
+
         @Override
         StatefulSet applyResource(StatefulSet original, StatefulSet current) {
-            return client
+            return getClient()
                     .apps()
                     .statefulSets()
                     .inNamespace(getNamespace())
@@ -1019,7 +2336,7 @@ public class KubernetesClientWrapper {
 
         @Override
         StatefulSet createResource(StatefulSet current) {
-            return client
+            return getClient()
                     .apps()
                     .statefulSets()
                     .inNamespace(getNamespace())
@@ -1031,4 +2348,103 @@ public class KubernetesClientWrapper {
             resourceUpdateMonitor.onStatefulSetUpdate(original, current);
         }
     }
+
+    /**
+     * Updater for the resource kinds without a dedicated updater, which are only applied with the server-side apply
+     * strategy. The kinds are resolved through the API discovery, see {@link ApiResources}.
+     */
+    private class GenericResourceUpdater extends ResourceUpdater<HasMetadata> {
+        GenericResourceUpdater(HasMetadata resource) {
+            super(resource);
+        }
+
+        @Override
+        HasMetadata getCurrentResource() {
+            try {
+                return getApiResources().get(get());
+            } catch (IOException e) {
+                throw new KubernetesClientException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        List<HasMetadata> listResources(Map<String, String> labels) {
+            try {
+                return getApiResources().list(get(), labels);
+            } catch (IOException e) {
+                throw new KubernetesClientException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        HasMetadata applyResource(HasMetadata original, HasMetadata current) {
+            try {
+                return getApiResources().replace(original, current);
+            } catch (IOException e) {
+                throw new KubernetesClientException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        HasMetadata createResource(HasMetadata current) {
+            try {
+                return getApiResources().create(current);
+            } catch (IOException e) {
+                throw new KubernetesClientException(e.getMessage(), e);
+            }
+        }
+
+        @Override
+        void notifyUpdate(HasMetadata original, HasMetadata current) {
+            // no monitor callback for the generic resources
+        }
+
+        @Override
+        String getIndexNamespace() {
+            return ApplyPlanner.namespaceOf(get());
+        }
+    }
+
+    /**
+     * Get the identity of the cluster and the credentials used by the client.
+     */
+    private String getClusterKey() {
+        String key = clusterKey;
+        if (key == null) {
+            Config configuration = getClient().getConfiguration();
+            key = configuration == null
+                    ? String.valueOf(getClient().getMasterUrl())
+                    : SharedInformerCache.clusterKey(configuration);
+            clusterKey = key;
+        }
+        return key;
+    }
+
+    /**
+     * Name the daemon workers of the pools that load the configuration files.
+     */
+    private static final class LoaderThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        private static final LoaderThreadFactory INSTANCE = new LoaderThreadFactory();
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("kubernetes-cd-load-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * The resource was deleted between the fetch of its current state and the apply.
+     */
+    private static final class ResourceDeletedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ResourceDeletedException(String message) {
+            super(message);
+        }
+    }
 }
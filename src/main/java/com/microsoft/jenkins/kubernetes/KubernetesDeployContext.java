@@ -26,7 +26,9 @@ import com.microsoft.jenkins.kubernetes.credentials.KubernetesCredentialsType;
 import com.microsoft.jenkins.kubernetes.credentials.ResolvedDockerRegistryEndpoint;
 import com.microsoft.jenkins.kubernetes.credentials.SSHCredentials;
 import com.microsoft.jenkins.kubernetes.credentials.TextCredentials;
+import com.microsoft.jenkins.kubernetes.util.CommonUtils;
 import com.microsoft.jenkins.kubernetes.util.Constants;
+import com.microsoft.jenkins.kubernetes.util.RetryPolicy;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
@@ -67,6 +69,18 @@ public class KubernetesDeployContext extends BaseCommandContext implements
     private String configs;
     private boolean enableConfigSubstitution;
 
+    private int parallelism;
+    private Boolean failFast;
+    private Integer maxRetries;
+    private boolean prefetchResources;
+    private String prefetchLabelSelector;
+    private boolean skipUnchanged;
+    private String applyStrategy;
+    private boolean useApplyLedger;
+    private boolean sharedCache;
+    private boolean streamDocuments;
+    private TransportProfile transportProfile;
+
     private String secretNamespace;
     private String secretName;
     private List<DockerRegistryEndpoint> dockerCredentials;
@@ -196,6 +210,131 @@ public class KubernetesDeployContext extends BaseCommandContext implements
         this.enableConfigSubstitution = enableConfigSubstitution;
     }
 
+    @Override
+    public int getParallelism() {
+        return parallelism > 0 ? parallelism : 1;
+    }
+
+    @DataBoundSetter
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism > 1 ? parallelism : 0;
+    }
+
+    @Override
+    public boolean isFailFast() {
+        return failFast == null || failFast;
+    }
+
+    @DataBoundSetter
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast ? null : Boolean.FALSE;
+    }
+
+    @Override
+    public int getMaxRetries() {
+        return maxRetries == null ? RetryPolicy.DEFAULT_MAX_RETRIES : maxRetries;
+    }
+
+    @DataBoundSetter
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries == RetryPolicy.DEFAULT_MAX_RETRIES) {
+            this.maxRetries = null;
+        } else {
+            this.maxRetries = Math.max(0, maxRetries);
+        }
+    }
+
+    @Override
+    public boolean isPrefetchResources() {
+        return prefetchResources;
+    }
+
+    @DataBoundSetter
+    public void setPrefetchResources(boolean prefetchResources) {
+        this.prefetchResources = prefetchResources;
+    }
+
+    @Override
+    public String getPrefetchLabelSelector() {
+        return prefetchLabelSelector;
+    }
+
+    @DataBoundSetter
+    public void setPrefetchLabelSelector(String prefetchLabelSelector) {
+        this.prefetchLabelSelector = StringUtils.trimToNull(prefetchLabelSelector);
+    }
+
+    @Override
+    public boolean isSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    @DataBoundSetter
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    public String getApplyStrategy() {
+        if (StringUtils.isEmpty(applyStrategy)) {
+            return ApplyStrategy.DEFAULT.name();
+        }
+        return applyStrategy;
+    }
+
+    @Override
+    public ApplyStrategy getApplyStrategyEnum() {
+        return ApplyStrategy.fromString(getApplyStrategy());
+    }
+
+    @DataBoundSetter
+    public void setApplyStrategy(String applyStrategy) {
+        if (ApplyStrategy.DEFAULT.name().equals(applyStrategy)) {
+            this.applyStrategy = null;
+        } else {
+            this.applyStrategy = StringUtils.trimToNull(applyStrategy);
+        }
+    }
+
+    @Override
+    public boolean isUseApplyLedger() {
+        return useApplyLedger;
+    }
+
+    @DataBoundSetter
+    public void setUseApplyLedger(boolean useApplyLedger) {
+        this.useApplyLedger = useApplyLedger;
+    }
+
+    @Override
+    public boolean isSharedCache() {
+        return sharedCache;
+    }
+
+    @DataBoundSetter
+    public void setSharedCache(boolean sharedCache) {
+        this.sharedCache = sharedCache;
+    }
+
+    @Override
+    public boolean isStreamDocuments() {
+        return streamDocuments;
+    }
+
+    @DataBoundSetter
+    public void setStreamDocuments(boolean streamDocuments) {
+        this.streamDocuments = streamDocuments;
+    }
+
+    @Override
+    public TransportProfile getTransportProfile() {
+        return transportProfile;
+    }
+
+    @DataBoundSetter
+    public void setTransportProfile(TransportProfile transportProfile) {
+        this.transportProfile = transportProfile;
+    }
+
     public List<DockerRegistryEndpoint> getDockerCredentials() {
         if (dockerCredentials == null) {
             return ImmutableList.of();
@@ -294,6 +433,14 @@ public class KubernetesDeployContext extends BaseCommandContext implements
             return model;
         }
 
+        public ListBoxModel doFillApplyStrategyItems() {
+            ListBoxModel model = new ListBoxModel();
+            for (ApplyStrategy strategy : ApplyStrategy.values()) {
+                model.add(strategy.title(), strategy.name());
+            }
+            return model;
+        }
+
         public ListBoxModel doFillKubeconfigIdItems(@AncestorInPath Item owner) {
             StandardListBoxModel model = new StandardListBoxModel();
             model.includeEmptyValue();
@@ -437,6 +584,41 @@ public class KubernetesDeployContext extends BaseCommandContext implements
             return true;
         }
 
+        public int getDefaultParallelism() {
+            return 1;
+        }
+
+        public boolean getDefaultFailFast() {
+            return true;
+        }
+
+        public int getDefaultMaxRetries() {
+            return RetryPolicy.DEFAULT_MAX_RETRIES;
+        }
+
+        public FormValidation doCheckParallelism(@QueryParameter String value) {
+            if (StringUtils.isBlank(value)) {
+                return FormValidation.ok();
+            }
+            try {
+                if (Integer.parseInt(value.trim()) >= 1) {
+                    return FormValidation.ok();
+                }
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+            return FormValidation.error(Messages.KubernetesDeployContext_invalidParallelism());
+        }
+
+        public FormValidation doCheckPrefetchLabelSelector(@QueryParameter String value) {
+            try {
+                CommonUtils.parseLabelSelector(value);
+                return FormValidation.ok();
+            } catch (IllegalArgumentException e) {
+                return FormValidation.error(e.getMessage());
+            }
+        }
+
         @Override
         public Set<? extends Class<?>> getRequiredContext() {
             return SimpleBuildStepExecution.REQUIRED_CONTEXT;
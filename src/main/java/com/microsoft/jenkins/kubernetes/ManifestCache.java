@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.microsoft.jenkins.kubernetes.util.CommonUtils;
+import com.microsoft.jenkins.kubernetes.util.Constants;
+import com.microsoft.jenkins.kubernetes.util.MacroTemplate;
+import com.microsoft.jenkins.kubernetes.util.MacroTemplateCache;
+import hudson.util.VariableResolver;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of the resources parsed from the configuration files, so that the files deployed by every build are
+ * not parsed again as long as they and the variables they reference have not changed.
+ * <p>
+ * The resources are keyed by the SHA-256 digest of the raw file contents, and the SHA-256 digest of the names and
+ * values of the variables referenced by the file, if the variables are substituted, so that the key does not hold
+ * the values in plain text. The files that contain Secrets are not cached. The resources are cached as their JSON
+ * serialization, and the callers get new resources deserialized from it, which they may change while applying them.
+ * <p>
+ * Only the files of at most {@link #MAX_MANIFEST_BYTES} bytes are cached. The cached JSON takes at most
+ * {@link #MAX_CACHED_BYTES} bytes, and the least recently used entries are evicted beyond that, or after
+ * {@link #EXPIRE_AFTER_ACCESS_MINUTES} minutes without access.
+ */
+final class ManifestCache {
+    static final int MAX_MANIFEST_BYTES =
+            Integer.getInteger(ManifestCache.class.getName() + ".maxManifestBytes", 1024 * 1024);
+    static final long MAX_CACHED_BYTES =
+            Long.getLong(ManifestCache.class.getName() + ".maxCachedBytes", 16L * 1024 * 1024);
+    static final long EXPIRE_AFTER_ACCESS_MINUTES =
+            Long.getLong(ManifestCache.class.getName() + ".expireAfterAccessMinutes", 30);
+
+    private static final ManifestCache INSTANCE = new ManifestCache(
+            MAX_MANIFEST_BYTES, MAX_CACHED_BYTES, TimeUnit.MINUTES.toMillis(EXPIRE_AFTER_ACCESS_MINUTES));
+
+    private static final Charset CHARSET = Charset.forName(Constants.DEFAULT_CHARSET);
+
+    private final int maxManifestBytes;
+    private final Cache<String, Entry> cache;
+
+    ManifestCache(int maxManifestBytes, long maxCachedBytes, long expireAfterAccessMillis) {
+        this.maxManifestBytes = maxManifestBytes;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxCachedBytes)
+                .weigher(new Weigher<String, Entry>() {
+                    @Override
+                    public int weigh(String key, Entry value) {
+                        return value.bytes;
+                    }
+                })
+                .expireAfterAccess(expireAfterAccessMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    static ManifestCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Load the resources from the configuration file contents, with the variables substituted.
+     *
+     * @param original         the file contents, which are left open
+     * @param variableResolver the variable resolver, or {@code null} if the variables should not be substituted
+     * @param client           the client used to parse the contents if not cached
+     * @return the resources loaded, which may be changed by the caller
+     * @throws IOException if the contents cannot be read
+     */
+    List<HasMetadata> load(InputStream original,
+                           VariableResolver<String> variableResolver,
+                           KubernetesClient client) throws IOException {
+        byte[] content = CommonUtils.readHead(original, maxManifestBytes);
+        if (content.length > maxManifestBytes) {
+            InputStream rest = new SequenceInputStream(new ByteArrayInputStream(content), original);
+            try (InputStream in = CommonUtils.replaceMacro(rest, variableResolver)) {
+                return client.load(in).get();
+            }
+        }
+
+        String digest = DigestUtils.sha256Hex(content);
+        String key = digest;
+        byte[] substituted = content;
+        if (variableResolver != null) {
+            MacroTemplate template = MacroTemplateCache.get().getTemplate(digest, content, CHARSET);
+            substituted = template.render(variableResolver).getBytes(CHARSET);
+            key = key(digest, template, variableResolver);
+        }
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null) {
+            return entry.getResources();
+        }
+
+        List<HasMetadata> resources = client.load(new ByteArrayInputStream(substituted)).get();
+        for (HasMetadata resource : resources) {
+            if (resource instanceof Secret) {
+                return resources;
+            }
+        }
+        cache.put(key, new Entry(resources));
+        return resources;
+    }
+
+    long size() {
+        return cache.size();
+    }
+
+    void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Build the cache key from the digest of the contents and the names and values of the variables referenced by
+     * them, sorted by name, each prefixed with its length so that different values cannot produce the same key.
+     * <p>
+     * The key of the substituted contents differs from the raw digest even if no variable is referenced, as the
+     * escaped {@code $$} are still replaced.
+     */
+    static String key(String digest, MacroTemplate template, VariableResolver<String> variableResolver) {
+        List<String> names = new ArrayList<>(template.getVariableNames());
+        Collections.sort(names);
+        StringBuilder sb = new StringBuilder();
+        for (String name : names) {
+            String value = variableResolver.resolve(name);
+            sb.append('\n').append(name.length()).append(':').append(name).append('=');
+            if (value == null) {
+                sb.append('-');
+            } else {
+                sb.append(value.length()).append(':').append(value);
+            }
+        }
+        return digest + '\n' + DigestUtils.sha256Hex(sb.toString());
+    }
+
+    private static final class Entry {
+        private final List<Class<? extends HasMetadata>> types;
+        private final List<byte[]> documents;
+        private final int bytes;
+
+        Entry(List<HasMetadata> resources) throws IOException {
+            types = new ArrayList<>(resources.size());
+            documents = new ArrayList<>(resources.size());
+            int total = 0;
+            for (HasMetadata resource : resources) {
+                byte[] document = Serialization.jsonMapper().writeValueAsBytes(resource);
+                types.add(resource.getClass());
+                documents.add(document);
+                total += document.length;
+            }
+            bytes = total;
+        }
+
+        List<HasMetadata> getResources() throws IOException {
+            List<HasMetadata> resources = new ArrayList<>(documents.size());
+            for (int i = 0; i < documents.size(); ++i) {
+                resources.add(Serialization.jsonMapper().readValue(documents.get(i), types.get(i)));
+            }
+            return resources;
+        }
+    }
+}
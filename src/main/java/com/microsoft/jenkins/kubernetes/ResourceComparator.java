@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableSet;
+import com.microsoft.jenkins.kubernetes.util.Constants;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import org.apache.commons.codec.binary.Base64;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Semantic comparison between the live state of a resource and the desired state loaded from the configuration.
+ * <p>
+ * The desired resource is considered unchanged if every field it specifies has the same value in the live resource.
+ * The fields that are only populated by the server, such as {@code status}, {@code metadata.resourceVersion},
+ * {@code metadata.uid}, {@code metadata.managedFields} and the defaulted fields in the {@code spec}, are ignored.
+ * <p>
+ * The maps that are replaced as a whole on apply are compared both ways at any depth, so that a key removed from
+ * the configuration is detected: the {@code nodeSelector}, and the {@code data} of a ConfigMap or a Secret. The labels
+ * and annotations are compared in the same way, except for the keys that are only in the live resource and are
+ * managed by Kubernetes, with a {@code kubernetes.io/} or {@code k8s.io/} prefix such as
+ * {@code deployment.kubernetes.io/revision}, as the controllers write them back after each apply. A missing map is
+ * the same as an empty one. The {@code limits} and {@code requests} of the container resources are compared exactly
+ * if they are specified, as the server defaults the missing requests to the limits.
+ */
+final class ResourceComparator {
+    private static final Set<String> IGNORED_FIELDS = ImmutableSet.of("apiVersion", "kind", "status");
+
+    static final Set<String> SERVER_METADATA_FIELDS = ImmutableSet.of(
+            "resourceVersion",
+            "uid",
+            "managedFields",
+            "creationTimestamp",
+            "deletionTimestamp",
+            "deletionGracePeriodSeconds",
+            "generation",
+            "selfLink");
+
+    /**
+     * The maps that are compared exactly, where a missing map is the same as an empty one.
+     */
+    private static final Set<String> EXACT_FIELDS = ImmutableSet.of(
+            "labels",
+            "annotations",
+            "nodeSelector",
+            "data",
+            "binaryData");
+
+    /**
+     * The maps whose keys managed by Kubernetes are ignored if they are only in the live resource.
+     */
+    private static final Set<String> METADATA_MAP_FIELDS = ImmutableSet.of("labels", "annotations");
+
+    private static final String[] MANAGED_KEY_DOMAINS = {"kubernetes.io", "k8s.io"};
+
+    /**
+     * The maps that are compared exactly if they are specified in the desired resource.
+     */
+    private static final Set<String> EXACT_IF_SPECIFIED_FIELDS = ImmutableSet.of("limits", "requests");
+
+    private ResourceComparator() {
+        // hide constructor
+    }
+
+    /**
+     * Check if applying the desired resource would not change the live resource.
+     *
+     * @param live    the resource in the cluster
+     * @param desired the resource loaded from the configuration
+     * @return {@code true} if all the fields specified in the desired resource match the live resource
+     */
+    static boolean isUnchanged(HasMetadata live, HasMetadata desired) {
+        if (live == null || desired == null) {
+            return false;
+        }
+        JsonNode liveNode = Serialization.jsonMapper().valueToTree(live);
+        JsonNode desiredNode = Serialization.jsonMapper().valueToTree(desired);
+        if (!(liveNode instanceof ObjectNode) || !(desiredNode instanceof ObjectNode)) {
+            return false;
+        }
+
+        ObjectNode desiredObject = (ObjectNode) desiredNode;
+        desiredObject.remove(IGNORED_FIELDS);
+        JsonNode metadata = desiredObject.get("metadata");
+        if (metadata instanceof ObjectNode) {
+            ((ObjectNode) metadata).remove(SERVER_METADATA_FIELDS);
+        }
+        if ("Secret".equals(ApplyPlanner.kindOf(desired))) {
+            mergeStringData(desiredObject);
+        }
+        return isSubset(desiredObject, liveNode);
+    }
+
+    /**
+     * Check if applying the desired Secret would not change the data of the live Secret.
+     *
+     * @param live    the Secret in the cluster
+     * @param desired the Secret loaded from the configuration
+     * @return {@code true} if the {@code data} of the live Secret is the same as the desired {@code data} and
+     * {@code stringData}
+     */
+    static boolean isSecretDataUnchanged(HasMetadata live, HasMetadata desired) {
+        if (live == null || desired == null) {
+            return false;
+        }
+        ObjectNode desiredNode = Serialization.jsonMapper().valueToTree(desired);
+        mergeStringData(desiredNode);
+        JsonNode liveNode = Serialization.jsonMapper().valueToTree(live);
+        return mapsEqual(desiredNode.get("data"), liveNode.get("data"));
+    }
+
+    private static boolean mapsEqual(JsonNode desired, JsonNode live) {
+        boolean desiredEmpty = isEmpty(desired);
+        boolean liveEmpty = isEmpty(live);
+        if (desiredEmpty || liveEmpty) {
+            return desiredEmpty == liveEmpty;
+        }
+        return desired.equals(live);
+    }
+
+    /**
+     * Compare the labels or annotations, ignoring the keys managed by Kubernetes that are only in the live resource.
+     */
+    private static boolean metadataMapsEqual(JsonNode desired, JsonNode live) {
+        if (isEmpty(live)) {
+            return isEmpty(desired);
+        }
+        Iterator<Map.Entry<String, JsonNode>> fields = live.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = desired == null ? null : desired.get(field.getKey());
+            if (value == null || value.isNull()) {
+                if (!isManagedKey(field.getKey())) {
+                    return false;
+                }
+            } else if (!value.equals(field.getValue())) {
+                return false;
+            }
+        }
+        if (isEmpty(desired)) {
+            return true;
+        }
+        Iterator<String> names = desired.fieldNames();
+        while (names.hasNext()) {
+            if (!live.has(names.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if the label or annotation key has a prefix in a domain reserved for Kubernetes, e.g.,
+     * {@code deployment.kubernetes.io/revision} or {@code kubernetes.io/metadata.name}.
+     */
+    static boolean isManagedKey(String key) {
+        int slash = key.indexOf('/');
+        if (slash < 0) {
+            return false;
+        }
+        String prefix = key.substring(0, slash);
+        for (String domain : MANAGED_KEY_DOMAINS) {
+            if (prefix.equals(domain) || prefix.endsWith("." + domain)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isEmpty(JsonNode node) {
+        return node == null || node.isNull() || node.size() == 0;
+    }
+
+    /**
+     * The API server merges the {@code stringData} of a Secret into {@code data} and never returns the former.
+     */
+    private static void mergeStringData(ObjectNode secret) {
+        JsonNode stringData = secret.remove("stringData");
+        if (stringData == null || stringData.size() == 0) {
+            return;
+        }
+        ObjectNode data = secret.with("data");
+        Iterator<Map.Entry<String, JsonNode>> fields = stringData.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            try {
+                data.put(field.getKey(), Base64.encodeBase64String(
+                        field.getValue().asText().getBytes(Constants.DEFAULT_CHARSET)));
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static boolean isSubset(JsonNode desired, JsonNode live) {
+        if (desired == null || desired.isNull()) {
+            return true;
+        }
+        if (desired.isContainerNode() && desired.size() == 0) {
+            // empty objects or arrays are equivalent to the missing ones
+            return live == null || live.isNull() || live.size() == 0;
+        }
+        if (live == null || live.isNull()) {
+            return false;
+        }
+        if (desired.isObject()) {
+            if (!live.isObject()) {
+                return false;
+            }
+            Iterator<Map.Entry<String, JsonNode>> fields = desired.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                String name = field.getKey();
+                boolean matches;
+                if (METADATA_MAP_FIELDS.contains(name)) {
+                    matches = metadataMapsEqual(field.getValue(), live.get(name));
+                } else if (EXACT_FIELDS.contains(name) || EXACT_IF_SPECIFIED_FIELDS.contains(name)) {
+                    matches = mapsEqual(field.getValue(), live.get(name));
+                } else {
+                    matches = isSubset(field.getValue(), live.get(name));
+                }
+                if (!matches) {
+                    return false;
+                }
+            }
+            // the maps missing from the desired resource are removed on apply
+            for (String name : EXACT_FIELDS) {
+                if (desired.has(name)) {
+                    continue;
+                }
+                boolean empty = METADATA_MAP_FIELDS.contains(name)
+                        ? metadataMapsEqual(null, live.get(name))
+                        : isEmpty(live.get(name));
+                if (!empty) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (desired.isArray()) {
+            if (!live.isArray() || live.size() != desired.size()) {
+                return false;
+            }
+            for (int i = 0; i < desired.size(); ++i) {
+                if (!isSubset(desired.get(i), live.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (desired.isNumber() && live.isNumber()) {
+            return desired.decimalValue().compareTo(live.decimalValue()) == 0;
+        }
+        return desired.asText().equals(live.asText());
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.google.common.base.Optional;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory index of the live cluster resources, populated by one list call per (kind, namespace) group.
+ * <p>
+ * The updaters consult the index before they issue the per-resource GET request. If a group was listed without
+ * any selector, the index is authoritative for that group, i.e., a resource that is not in the index does not
+ * exist in the cluster. Otherwise a miss falls back to the GET request.
+ */
+final class ResourceIndex {
+    private final Map<String, HasMetadata> resources = new ConcurrentHashMap<>();
+    private final Set<String> authoritativeGroups = ConcurrentHashMap.newKeySet();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Add the resources listed from the cluster.
+     *
+     * @param kind          the kind of the group. The kind is passed explicitly as the items in the list response
+     *                      usually do not have kind set.
+     * @param namespace     the namespace of the group, {@code null} for cluster-scoped resources
+     * @param items         the listed resources
+     * @param authoritative whether the list contains all the resources in the group
+     */
+    void putAll(String kind, String namespace, List<? extends HasMetadata> items, boolean authoritative) {
+        for (HasMetadata item : items) {
+            if (item.getMetadata() != null && item.getMetadata().getName() != null) {
+                resources.put(key(kind, namespace, item.getMetadata().getName()), item);
+            }
+        }
+        if (authoritative) {
+            authoritativeGroups.add(group(kind, namespace));
+        }
+    }
+
+    /**
+     * Record the latest state of a resource after it is created or applied, so that a later lookup for the same
+     * resource in the same deployment does not see the stale state.
+     */
+    void update(String kind, String namespace, HasMetadata resource) {
+        if (resource != null && resource.getMetadata() != null && resource.getMetadata().getName() != null) {
+            resources.put(key(kind, namespace, resource.getMetadata().getName()), resource);
+        }
+    }
+
+    /**
+     * Look up a resource in the index.
+     *
+     * @return {@code null} if the index cannot tell whether the resource exists, {@link Optional#absent()} if the
+     * resource is known to be absent in the cluster, or the resource found in the index.
+     */
+    Optional<HasMetadata> lookup(String kind, String namespace, String name) {
+        HasMetadata resource = resources.get(key(kind, namespace, name));
+        if (resource != null) {
+            hits.incrementAndGet();
+            return Optional.of(resource);
+        }
+        if (authoritativeGroups.contains(group(kind, namespace))) {
+            hits.incrementAndGet();
+            return Optional.absent();
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the hit rate of the lookups.
+     *
+     * @return the hit rate in percentage
+     */
+    int getHitRate() {
+        final int percent = 100;
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (int) (hits.get() * percent / total);
+    }
+
+    private static String group(String kind, String namespace) {
+        return kind + "/" + (namespace == null ? "" : namespace);
+    }
+
+    private static String key(String kind, String namespace, String name) {
+        return group(kind, namespace) + "/" + name;
+    }
+}
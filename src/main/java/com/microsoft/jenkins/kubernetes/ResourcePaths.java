@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.google.common.collect.ImmutableMap;
+import okhttp3.HttpUrl;
+
+import java.util.Map;
+
+/**
+ * REST paths of the Kubernetes resources, for the requests that are not covered by the typed client DSL.
+ */
+final class ResourcePaths {
+    /**
+     * The resource types of the kinds with a dedicated updater, so that they can be addressed without a discovery
+     * request.
+     */
+    private static final Map<String, ResourceType> KNOWN_TYPES = ImmutableMap.<String, ResourceType>builder()
+            .put("Deployment", new ResourceType("apps/v1", "deployments", true))
+            .put("Service", new ResourceType("v1", "services", true))
+            .put("Ingress", new ResourceType("extensions/v1beta1", "ingresses", true))
+            .put("ReplicationController", new ResourceType("v1", "replicationcontrollers", true))
+            .put("ReplicaSet", new ResourceType("apps/v1", "replicasets", true))
+            .put("DaemonSet", new ResourceType("apps/v1", "daemonsets", true))
+            .put("Job", new ResourceType("batch/v1", "jobs", true))
+            .put("CronJob", new ResourceType("batch/v1beta1", "cronjobs", true))
+            .put("Pod", new ResourceType("v1", "pods", true))
+            .put("HorizontalPodAutoscaler", new ResourceType("autoscaling/v1", "horizontalpodautoscalers", true))
+            .put("ConfigMap", new ResourceType("v1", "configmaps", true))
+            .put("Secret", new ResourceType("v1", "secrets", true))
+            .put("Namespace", new ResourceType("v1", "namespaces", false))
+            .put("StatefulSet", new ResourceType("apps/v1", "statefulsets", true))
+            .build();
+
+    private ResourcePaths() {
+        // hide constructor
+    }
+
+    /**
+     * Get the resource type of a kind that is known without discovery.
+     *
+     * @param kind the resource kind
+     * @return the resource type, or {@code null} if the kind needs to be discovered from the API server
+     */
+    static ResourceType knownType(String kind) {
+        return KNOWN_TYPES.get(kind);
+    }
+
+    /**
+     * Build the URL of the API group version, e.g., {@code /api/v1} or {@code /apis/apps/v1}.
+     *
+     * @param masterUrl  the URL of the API server
+     * @param apiVersion the API version of the resource, in the form of {@code group/version} or {@code version}
+     *                   for the core group
+     * @return the URL builder, to which more path segments can be added
+     */
+    static HttpUrl.Builder groupVersion(String masterUrl, String apiVersion) {
+        HttpUrl base = HttpUrl.parse(masterUrl);
+        if (base == null) {
+            throw new IllegalArgumentException(masterUrl);
+        }
+        HttpUrl.Builder builder = base.newBuilder();
+        if (apiVersion.indexOf('/') < 0) {
+            builder.addPathSegment("api");
+        } else {
+            builder.addPathSegment("apis");
+        }
+        return builder.addPathSegments(apiVersion);
+    }
+
+    /**
+     * Build the URL of a resource collection, or a named resource if the name is given.
+     *
+     * @param masterUrl  the URL of the API server
+     * @param apiVersion the API version of the resource
+     * @param type       the resource type
+     * @param namespace  the namespace, ignored for the cluster-scoped resources
+     * @param name       the resource name, {@code null} for the collection
+     * @return the URL builder, to which query parameters can be added
+     */
+    static HttpUrl.Builder resource(String masterUrl, String apiVersion, ResourceType type,
+                                    String namespace, String name) {
+        HttpUrl.Builder builder = groupVersion(masterUrl, apiVersion);
+        if (type.isNamespaced()) {
+            builder.addPathSegment("namespaces").addPathSegment(namespace);
+        }
+        builder.addPathSegment(type.getPlural());
+        if (name != null) {
+            builder.addPathSegment(name);
+        }
+        return builder;
+    }
+
+    /**
+     * The REST resource of a kind in an API group.
+     */
+    static final class ResourceType {
+        private final String defaultApiVersion;
+        private final String plural;
+        private final boolean namespaced;
+
+        ResourceType(String defaultApiVersion, String plural, boolean namespaced) {
+            this.defaultApiVersion = defaultApiVersion;
+            this.plural = plural;
+            this.namespaced = namespaced;
+        }
+
+        /**
+         * Get the API version used when the resource does not specify one, e.g., the resources created with the
+         * model builders.
+         */
+        String getDefaultApiVersion() {
+            return defaultApiVersion;
+        }
+
+        String getPlural() {
+            return plural;
+        }
+
+        boolean isNamespaced() {
+            return namespaced;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Iterator;
+
+/**
+ * Apply the resources with the server-side apply PATCH request.
+ * <p>
+ * The desired manifest is sent once with the content type {@code application/apply-patch+yaml}. The API server
+ * creates the resource if it does not exist, or merges the fields owned by the {@value #FIELD_MANAGER} field
+ * manager otherwise. Conflicts with other field managers are forced, in the same way the existing update strategy
+ * overwrites the live resource.
+ * <p>
+ * The kinds without a dedicated updater are resolved through {@link ApiResources}.
+ */
+final class ServerSideApplier {
+    static final String FIELD_MANAGER = "kubernetes-cd";
+
+    private static final MediaType APPLY_PATCH = MediaType.parse("application/apply-patch+yaml");
+
+    private final ApiResources api;
+
+    ServerSideApplier(ApiResources api) {
+        this.api = api;
+    }
+
+    /**
+     * Apply the resource.
+     *
+     * @param resource the desired state of the resource
+     * @param <T>      the resource type
+     * @return the resource returned by the API server
+     * @throws IOException               if the request cannot be sent or the kind cannot be resolved
+     * @throws KubernetesClientException if the API server rejects the request
+     */
+    @SuppressWarnings("unchecked")
+    <T extends HasMetadata> Applied<T> apply(T resource) throws IOException {
+        String kind = ApplyPlanner.kindOf(resource);
+        ResourcePaths.ResourceType type = api.resolve(kind, resource.getApiVersion());
+        String apiVersion = StringUtils.defaultIfEmpty(resource.getApiVersion(), type.getDefaultApiVersion());
+        String namespace = ApplyPlanner.namespaceOf(resource);
+        String name = resource.getMetadata().getName();
+
+        ObjectNode manifest = Serialization.jsonMapper().valueToTree(resource);
+        manifest.put("apiVersion", apiVersion);
+        manifest.put("kind", kind);
+        removeEmptyArrays(manifest);
+
+        HttpUrl url = ResourcePaths.resource(api.getMasterUrl(), apiVersion, type, namespace, name)
+                .addQueryParameter("fieldManager", FIELD_MANAGER)
+                .addQueryParameter("force", "true")
+                .build();
+        Request request = new Request.Builder()
+                .url(url)
+                .patch(RequestBody.create(APPLY_PATCH, Serialization.jsonMapper().writeValueAsString(manifest)))
+                .build();
+        try (Response response = api.getHttpClient().newCall(request).execute()) {
+            String body = ApiResources.readBody(response);
+            if (!response.isSuccessful()) {
+                throw ApiResources.requestFailed(response.code(), body);
+            }
+            T applied = (T) Serialization.jsonMapper().readValue(body, resource.getClass());
+            return new Applied<>(applied, response.code() == HttpURLConnection.HTTP_CREATED);
+        }
+    }
+
+    /**
+     * The model classes emit the list fields that are not set in the configuration as empty arrays. Remove them so
+     * that the field manager does not claim the ownership of the fields it never specified.
+     */
+    private static void removeEmptyArrays(JsonNode node) {
+        Iterator<JsonNode> children = node.iterator();
+        while (children.hasNext()) {
+            JsonNode child = children.next();
+            if (child.isArray() && child.size() == 0 && node.isObject()) {
+                children.remove();
+            } else if (child.isContainerNode()) {
+                removeEmptyArrays(child);
+            }
+        }
+    }
+
+    /**
+     * The result of a server-side apply request.
+     *
+     * @param <T> the resource type
+     */
+    static final class Applied<T extends HasMetadata> {
+        private final T resource;
+        private final boolean created;
+
+        Applied(T resource, boolean created) {
+            this.resource = resource;
+            this.created = created;
+        }
+
+        T getResource() {
+            return resource;
+        }
+
+        /**
+         * Whether the resource did not exist and was created by the request.
+         */
+        boolean isCreated() {
+            return created;
+        }
+    }
+}
@@ -0,0 +1,514 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Joiner;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.utils.Serialization;
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.BufferedSource;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watch-based cache of the cluster state, shared by the deployments running in the same JVM.
+ * <p>
+ * The cache keeps one informer per (cluster, namespace, kind), which lists the resources once and then keeps them
+ * up to date with a watch request. The clusters are identified by the API server URL and the credentials, so that a
+ * deployment never reads resources through the cache that its own credentials may not read.
+ * <p>
+ * An informer may lag behind the cluster, so a cached resource is only used if its resource version is confirmed by
+ * the metadata-only list request of the deployment, see {@link Lease#confirmVersions()}. Otherwise the resource should
+ * be fetched from the cluster.
+ * <p>
+ * The cache holds the full resources of the watched namespaces on the heap, for as long as they are watched. Secrets
+ * are never watched, so that their data is not kept in the memory of the JVM beyond the deployments that apply them.
+ * <p>
+ * The informers are reference-counted by the {@link Lease}s of the running deployments. An informer that is not
+ * used by any deployment for {@link #IDLE_TIMEOUT_MINUTES} minutes is stopped, and the client of a cluster is returned
+ * to the {@link KubernetesClientPool} when it has no informer left.
+ */
+final class SharedInformerCache {
+    private static final Logger LOGGER = Logger.getLogger(SharedInformerCache.class.getName());
+
+    static final long IDLE_TIMEOUT_MINUTES =
+            Long.getLong(SharedInformerCache.class.getName() + ".idleTimeoutMinutes", 10);
+
+    private static final long EVICTION_INTERVAL_SECONDS = 60;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30000;
+    private static final int WATCH_TIMEOUT_SECONDS = 300;
+
+    private static final String SECRET_KIND = "Secret";
+
+    private static final SharedInformerCache INSTANCE = new SharedInformerCache(
+            TimeUnit.MINUTES.toMillis(IDLE_TIMEOUT_MINUTES));
+
+    private final long idleTimeoutMillis;
+    private final Map<String, Cluster> clusters = new HashMap<>();
+    private final ExecutorService informerExecutor = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("kubernetes-cd-informer-%d").setDaemon(true).build());
+    private ScheduledExecutorService evictionExecutor;
+
+    SharedInformerCache(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    static SharedInformerCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Acquire a lease on the cache of the cluster the client connects to.
+     *
+     * @param client the client of the deployment
+     * @return the lease, which must be closed when the deployment finishes
+     */
+    synchronized Lease acquire(KubernetesClient client) {
+        Config config = client.getConfiguration();
+        String key = clusterKey(config);
+        Cluster cluster = clusters.get(key);
+        if (cluster == null) {
+            cluster = new Cluster(config);
+            clusters.put(key, cluster);
+        }
+        if (evictionExecutor == null) {
+            evictionExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("kubernetes-cd-informer-eviction")
+                    .setDaemon(true)
+                    .build());
+            evictionExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    evictIdle();
+                }
+            }, EVICTION_INTERVAL_SECONDS, EVICTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+        return new Lease(cluster);
+    }
+
+    /**
+     * Stop the informers that have not been used by any deployment for the idle timeout, and close the clients of
+     * the clusters without any informer.
+     */
+    synchronized void evictIdle() {
+        long now = System.currentTimeMillis();
+        Iterator<Cluster> clusterIter = clusters.values().iterator();
+        while (clusterIter.hasNext()) {
+            Cluster cluster = clusterIter.next();
+            Iterator<Informer> informerIter = cluster.informers.values().iterator();
+            while (informerIter.hasNext()) {
+                Informer informer = informerIter.next();
+                if (informer.refCount == 0 && now - informer.idleSince >= idleTimeoutMillis) {
+                    informer.stop();
+                    informerIter.remove();
+                }
+            }
+            if (cluster.informers.isEmpty() && cluster.leases == 0) {
+                cluster.clientLease.close();
+                clusterIter.remove();
+            }
+        }
+    }
+
+    private synchronized Informer retain(Cluster cluster, String kind, String apiVersion, String namespace,
+                                         Class<? extends HasMetadata> type) {
+        String key = Joiner.on('/').useForNull("").join(kind, apiVersion, namespace);
+        Informer informer = cluster.informers.get(key);
+        if (informer == null) {
+            informer = new Informer(cluster, kind, apiVersion, namespace, type);
+            cluster.informers.put(key, informer);
+            informerExecutor.execute(informer);
+        }
+        informer.refCount++;
+        return informer;
+    }
+
+    private synchronized void release(Cluster cluster, List<Informer> informers) {
+        long now = System.currentTimeMillis();
+        for (Informer informer : informers) {
+            if (--informer.refCount == 0) {
+                informer.idleSince = now;
+            }
+        }
+        cluster.leases--;
+    }
+
+    /**
+     * Identify the cluster by the API server URL and the credentials used to connect to it.
+     */
+    static String clusterKey(Config config) {
+        return DigestUtils.sha256Hex(Joiner.on('\n').useForNull("").join(
+                config.getMasterUrl(),
+                config.getUsername(),
+                config.getPassword(),
+                config.getOauthToken(),
+                config.getClientCertData(),
+                config.getClientCertFile(),
+                config.getClientKeyData(),
+                config.getClientKeyFile()));
+    }
+
+    private static final class Cluster {
+        private final KubernetesClientPool.Lease clientLease;
+        private final ApiResources api;
+        private final OkHttpClient watchClient;
+        private final Map<String, Informer> informers = new HashMap<>();
+        private int leases;
+
+        Cluster(Config config) {
+            this.clientLease = KubernetesClientPool.get().acquire(config);
+            KubernetesClient client = clientLease.getClient();
+            this.api = new ApiResources(client);
+            // the watch requests are held open until the server side timeout
+            this.watchClient = client.adapt(OkHttpClient.class).newBuilder()
+                    .readTimeout(0, TimeUnit.MILLISECONDS)
+                    .build();
+        }
+    }
+
+    /**
+     * The use of the cache by one deployment.
+     */
+    final class Lease implements AutoCloseable {
+        private final Cluster cluster;
+        private final Map<String, Informer> informers = new ConcurrentHashMap<>();
+        private final Map<String, String> confirmedVersions = new ConcurrentHashMap<>();
+        private final Set<String> confirmedInformers = ConcurrentHashMap.newKeySet();
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+
+        Lease(Cluster cluster) {
+            this.cluster = cluster;
+            cluster.leases++;
+        }
+
+        /**
+         * Start watching the resources of a kind in a namespace, or join the informer that is already watching them.
+         * Secrets are not watched.
+         *
+         * @param kind       the resource kind
+         * @param apiVersion the API version, {@code null} to use the default one of the kind
+         * @param namespace  the namespace, {@code null} for the cluster-scoped resources
+         * @param type       the model class of the resources
+         */
+        void watch(String kind, String apiVersion, String namespace, Class<? extends HasMetadata> type) {
+            if (SECRET_KIND.equals(kind)) {
+                return;
+            }
+            String key = Joiner.on('/').useForNull("").join(kind, namespace);
+            if (!informers.containsKey(key)) {
+                informers.put(key, retain(cluster, kind, apiVersion, namespace, type));
+            }
+        }
+
+        /**
+         * Wait for the informers to complete their initial list.
+         *
+         * @param timeoutMillis the maximum time to wait
+         * @throws InterruptedException if the current thread is interrupted
+         */
+        void awaitSynced(long timeoutMillis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            for (Informer informer : informers.values()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || !informer.firstSync.await(remaining, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Confirm the resource versions of the cached resources, with one metadata-only list request per informer
+         * not confirmed yet by this lease. The resources of the informers whose list request fails are not
+         * confirmed, and are fetched from the cluster.
+         *
+         * @return the number of informers whose resource versions could not be listed
+         */
+        int confirmVersions() {
+            int failures = 0;
+            for (Map.Entry<String, Informer> entry : informers.entrySet()) {
+                if (confirmedInformers.contains(entry.getKey())) {
+                    continue;
+                }
+                Informer informer = entry.getValue();
+                try {
+                    Map<String, String> versions =
+                            cluster.api.listResourceVersions(informer.kind, informer.apiVersion, informer.namespace);
+                    for (Map.Entry<String, String> version : versions.entrySet()) {
+                        confirmedVersions.put(itemKey(informer.kind, informer.namespace, version.getKey()),
+                                version.getValue());
+                    }
+                    confirmedInformers.add(entry.getKey());
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(Level.FINE, "Cannot list the resource versions of " + informer.kind
+                            + " in " + informer.namespace, e);
+                    failures++;
+                }
+            }
+            return failures;
+        }
+
+        /**
+         * Get a copy of the cached resource.
+         *
+         * @return the resource, or {@code null} if the resource is not in the cache, the informer is not connected,
+         * or the cached resource version is not confirmed, in which case the resource should be fetched from the
+         * cluster
+         */
+        @SuppressWarnings("unchecked")
+        <T extends HasMetadata> T get(String kind, String namespace, String name) {
+            Informer informer = informers.get(Joiner.on('/').useForNull("").join(kind, namespace));
+            HasMetadata resource = informer == null || !informer.synced ? null : informer.items.get(name);
+            String confirmed = confirmedVersions.get(itemKey(kind, namespace, name));
+            if (resource == null || confirmed == null
+                    || !confirmed.equals(resource.getMetadata().getResourceVersion())) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return (T) Serialization.jsonMapper().convertValue(resource, resource.getClass());
+        }
+
+        /**
+         * Record the resource returned by a write request of the deployment, so that the following deployments do
+         * not read the stale state before the watch event arrives.
+         */
+        void offer(String kind, String namespace, HasMetadata resource) {
+            Informer informer = informers.get(Joiner.on('/').useForNull("").join(kind, namespace));
+            if (informer != null && resource != null && resource.getMetadata() != null) {
+                informer.offer(resource);
+                // returned by the write request, so it is the live version
+                String version = resource.getMetadata().getResourceVersion();
+                if (version != null) {
+                    confirmedVersions.put(itemKey(kind, namespace, resource.getMetadata().getName()), version);
+                }
+            }
+        }
+
+        long getHits() {
+            return hits.get();
+        }
+
+        long getMisses() {
+            return misses.get();
+        }
+
+        int getHitRate() {
+            final int percent = 100;
+            long total = hits.get() + misses.get();
+            return total == 0 ? 0 : (int) (hits.get() * percent / total);
+        }
+
+        @Override
+        public void close() {
+            release(cluster, new ArrayList<>(informers.values()));
+            informers.clear();
+            confirmedVersions.clear();
+            confirmedInformers.clear();
+        }
+    }
+
+    private static String itemKey(String kind, String namespace, String name) {
+        return Joiner.on('/').useForNull("").join(kind, namespace, name);
+    }
+
+    /**
+     * List and watch the resources of a kind in a namespace.
+     */
+    private static final class Informer implements Runnable {
+        private final Cluster cluster;
+        private final String kind;
+        private final String apiVersion;
+        private final String namespace;
+        private final Class<? extends HasMetadata> type;
+        private final Map<String, HasMetadata> items = new ConcurrentHashMap<>();
+        private final CountDownLatch firstSync = new CountDownLatch(1);
+        private volatile boolean synced;
+        private volatile boolean stopped;
+        private volatile Call call;
+
+        // guarded by the cache
+        private int refCount;
+        private long idleSince;
+
+        Informer(Cluster cluster, String kind, String apiVersion, String namespace,
+                 Class<? extends HasMetadata> type) {
+            this.cluster = cluster;
+            this.kind = kind;
+            this.apiVersion = apiVersion;
+            this.namespace = namespace;
+            this.type = type;
+        }
+
+        @Override
+        public void run() {
+            long delay = RETRY_DELAY_MILLIS;
+            while (!stopped) {
+                try {
+                    String resourceVersion = list();
+                    synced = true;
+                    firstSync.countDown();
+                    delay = RETRY_DELAY_MILLIS;
+                    watch(resourceVersion);
+                } catch (Exception e) {
+                    LOGGER.log(Level.FINE, "Informer for " + kind + " in " + namespace + " failed", e);
+                }
+                synced = false;
+                if (!stopped) {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    delay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+                }
+            }
+        }
+
+        void stop() {
+            stopped = true;
+            synced = false;
+            Call current = call;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        void offer(HasMetadata resource) {
+            String name = resource.getMetadata().getName();
+            HasMetadata cached = items.get(name);
+            if (cached == null || isNewer(resource, cached)) {
+                items.put(name, resource);
+            }
+        }
+
+        private HttpUrl.Builder url() throws IOException {
+            ResourcePaths.ResourceType resourceType = cluster.api.resolve(kind, apiVersion);
+            String version = StringUtils.defaultIfEmpty(apiVersion, resourceType.getDefaultApiVersion());
+            return ResourcePaths.resource(cluster.api.getMasterUrl(), version, resourceType, namespace, null);
+        }
+
+        private String list() throws IOException {
+            Request request = new Request.Builder().url(url().build()).get().build();
+            Call listCall = cluster.api.getHttpClient().newCall(request);
+            call = listCall;
+            try (Response response = listCall.execute()) {
+                String body = ApiResources.readBody(response);
+                if (!response.isSuccessful()) {
+                    throw ApiResources.requestFailed(response.code(), body);
+                }
+                JsonNode list = Serialization.jsonMapper().readTree(body);
+                Map<String, HasMetadata> listed = new HashMap<>();
+                for (JsonNode item : list.path("items")) {
+                    HasMetadata resource = Serialization.jsonMapper().treeToValue(item, type);
+                    listed.put(resource.getMetadata().getName(), resource);
+                }
+                items.keySet().retainAll(listed.keySet());
+                items.putAll(listed);
+                return list.path("metadata").path("resourceVersion").asText();
+            }
+        }
+
+        /**
+         * Watch the changes from the given resource version, until the watch cannot be resumed.
+         */
+        private void watch(String fromVersion) throws IOException {
+            String resourceVersion = fromVersion;
+            while (!stopped) {
+                HttpUrl url = url()
+                        .addQueryParameter("watch", "true")
+                        .addQueryParameter("resourceVersion", resourceVersion)
+                        .addQueryParameter("allowWatchBookmarks", "true")
+                        .addQueryParameter("timeoutSeconds", String.valueOf(WATCH_TIMEOUT_SECONDS))
+                        .build();
+                Call watchCall = cluster.watchClient.newCall(new Request.Builder().url(url).get().build());
+                call = watchCall;
+                try (Response response = watchCall.execute()) {
+                    if (response.code() == HttpURLConnection.HTTP_GONE) {
+                        // the resource version is too old, list again
+                        return;
+                    }
+                    if (!response.isSuccessful() || response.body() == null) {
+                        throw ApiResources.requestFailed(response.code(), ApiResources.readBody(response));
+                    }
+                    BufferedSource source = response.body().source();
+                    String line;
+                    while ((line = source.readUtf8Line()) != null) {
+                        if (line.isEmpty()) {
+                            continue;
+                        }
+                        resourceVersion = handle(Serialization.jsonMapper().readTree(line), resourceVersion);
+                        if (resourceVersion == null) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Apply a watch event to the cache.
+         *
+         * @return the resource version to resume the watch from, or {@code null} if the informer should list again
+         */
+        private String handle(JsonNode event, String resourceVersion) throws IOException {
+            String eventType = event.path("type").asText();
+            JsonNode object = event.path("object");
+            if ("ERROR".equals(eventType)) {
+                return null;
+            }
+            String version = object.path("metadata").path("resourceVersion").asText(resourceVersion);
+            if ("BOOKMARK".equals(eventType)) {
+                return version;
+            }
+            HasMetadata resource = Serialization.jsonMapper().treeToValue(object, type);
+            if ("DELETED".equals(eventType)) {
+                items.remove(resource.getMetadata().getName());
+            } else {
+                items.put(resource.getMetadata().getName(), resource);
+            }
+            return version;
+        }
+
+        private static boolean isNewer(HasMetadata resource, HasMetadata cached) {
+            try {
+                return Long.parseLong(resource.getMetadata().getResourceVersion())
+                        > Long.parseLong(cached.getMetadata().getResourceVersion());
+            } catch (NumberFormatException e) {
+                // the resource versions are opaque, prefer the one returned by the write request
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+/**
+ * The presets of the HTTP transport settings of the Kubernetes client, which the {@link TransportProfile} may
+ * override one by one. A {@code null} setting keeps the default of the client.
+ */
+public enum TransportPreset {
+    /**
+     * The defaults of the Kubernetes client: at most 5 concurrent requests to the API server.
+     */
+    DEFAULT("Client defaults", null, null, null, null, null, null, null, null, null),
+
+    /**
+     * Jenkins and the API server in the same cluster or network: short connect timeouts, and enough concurrent
+     * requests and idle connections for parallel deployments.
+     */
+    IN_CLUSTER("In-cluster (low latency)", 128, 64, 32, 300, true, 2000, 30000, 120000, null),
+
+    /**
+     * The API server in another region: fewer connections kept alive longer, so that they are not negotiated again,
+     * longer timeouts, and a larger TLS session cache so that the new connections resume the TLS sessions.
+     */
+    CROSS_REGION("Cross-region (high latency)", 64, 16, 8, 600, true, 15000, 60000, 300000, 256);
+
+    private final String title;
+    private final Integer maxConcurrentRequests;
+    private final Integer maxConcurrentRequestsPerHost;
+    private final Integer maxIdleConnections;
+    private final Integer keepAliveSeconds;
+    private final Boolean http2;
+    private final Integer connectTimeoutMillis;
+    private final Integer readTimeoutMillis;
+    private final Integer requestTimeoutMillis;
+    private final Integer tlsSessionCacheSize;
+
+    TransportPreset(String title,
+                    Integer maxConcurrentRequests,
+                    Integer maxConcurrentRequestsPerHost,
+                    Integer maxIdleConnections,
+                    Integer keepAliveSeconds,
+                    Boolean http2,
+                    Integer connectTimeoutMillis,
+                    Integer readTimeoutMillis,
+                    Integer requestTimeoutMillis,
+                    Integer tlsSessionCacheSize) {
+        this.title = title;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxConcurrentRequestsPerHost = maxConcurrentRequestsPerHost;
+        this.maxIdleConnections = maxIdleConnections;
+        this.keepAliveSeconds = keepAliveSeconds;
+        this.http2 = http2;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.tlsSessionCacheSize = tlsSessionCacheSize;
+    }
+
+    public String title() {
+        return title;
+    }
+
+    public Integer getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public Integer getMaxConcurrentRequestsPerHost() {
+        return maxConcurrentRequestsPerHost;
+    }
+
+    public Integer getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public Integer getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public Boolean getHttp2() {
+        return http2;
+    }
+
+    public Integer getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public Integer getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    public Integer getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    public Integer getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    public static TransportPreset fromString(String value) {
+        for (TransportPreset preset : values()) {
+            if (preset.name().equalsIgnoreCase(value)) {
+                return preset;
+            }
+        }
+        return DEFAULT;
+    }
+}
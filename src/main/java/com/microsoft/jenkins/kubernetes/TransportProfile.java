@@ -0,0 +1,417 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.google.common.base.Joiner;
+import hudson.Extension;
+import hudson.model.AbstractDescribableImpl;
+import hudson.model.Descriptor;
+import hudson.util.ListBoxModel;
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.internal.SSLUtils;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.apache.commons.lang3.StringUtils;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+
+import javax.annotation.Nonnull;
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HTTP transport settings of the Kubernetes client: a {@link TransportPreset}, with each of its settings
+ * optionally overridden.
+ * <p>
+ * The concurrent request limits and the connect and read timeouts are set on the client {@link Config}, and the
+ * others on the OkHttp client built from it, see {@link #customize(OkHttpClient, Config)}.
+ * <p>
+ * The rate limit is not part of the presets: the requests to the API server are throttled by the
+ * {@link ApiServerRateLimiter} shared by all the clients in the JVM, with {@link #getQps()} and {@link #getBurst()}
+ * if they are set, or the defaults of the rate limiter otherwise.
+ */
+public class TransportProfile extends AbstractDescribableImpl<TransportProfile> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+    private static final int DEFAULT_KEEP_ALIVE_SECONDS = 300;
+
+    private final String preset;
+    private Integer maxConcurrentRequests;
+    private Integer maxConcurrentRequestsPerHost;
+    private Integer maxIdleConnections;
+    private Integer keepAliveSeconds;
+    private Boolean http2;
+    private Integer connectTimeoutMillis;
+    private Integer readTimeoutMillis;
+    private Integer requestTimeoutMillis;
+    private Integer tlsSessionCacheSize;
+    private Double qps;
+    private Integer burst;
+
+    @DataBoundConstructor
+    public TransportProfile(String preset) {
+        if (TransportPreset.DEFAULT.name().equals(preset)) {
+            this.preset = null;
+        } else {
+            this.preset = StringUtils.trimToNull(preset);
+        }
+    }
+
+    public String getPreset() {
+        if (preset == null) {
+            return TransportPreset.DEFAULT.name();
+        }
+        return preset;
+    }
+
+    public TransportPreset getPresetEnum() {
+        return TransportPreset.fromString(getPreset());
+    }
+
+    public Integer getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    @DataBoundSetter
+    public void setMaxConcurrentRequests(Integer maxConcurrentRequests) {
+        this.maxConcurrentRequests = positiveOrNull(maxConcurrentRequests);
+    }
+
+    public Integer getMaxConcurrentRequestsPerHost() {
+        return maxConcurrentRequestsPerHost;
+    }
+
+    @DataBoundSetter
+    public void setMaxConcurrentRequestsPerHost(Integer maxConcurrentRequestsPerHost) {
+        this.maxConcurrentRequestsPerHost = positiveOrNull(maxConcurrentRequestsPerHost);
+    }
+
+    public Integer getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    @DataBoundSetter
+    public void setMaxIdleConnections(Integer maxIdleConnections) {
+        this.maxIdleConnections = positiveOrNull(maxIdleConnections);
+    }
+
+    public Integer getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    @DataBoundSetter
+    public void setKeepAliveSeconds(Integer keepAliveSeconds) {
+        this.keepAliveSeconds = positiveOrNull(keepAliveSeconds);
+    }
+
+    public Boolean getHttp2() {
+        return http2;
+    }
+
+    @DataBoundSetter
+    public void setHttp2(Boolean http2) {
+        this.http2 = http2;
+    }
+
+    public Integer getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    @DataBoundSetter
+    public void setConnectTimeoutMillis(Integer connectTimeoutMillis) {
+        this.connectTimeoutMillis = positiveOrNull(connectTimeoutMillis);
+    }
+
+    public Integer getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    @DataBoundSetter
+    public void setReadTimeoutMillis(Integer readTimeoutMillis) {
+        this.readTimeoutMillis = positiveOrNull(readTimeoutMillis);
+    }
+
+    public Integer getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    @DataBoundSetter
+    public void setRequestTimeoutMillis(Integer requestTimeoutMillis) {
+        this.requestTimeoutMillis = positiveOrNull(requestTimeoutMillis);
+    }
+
+    public Integer getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    @DataBoundSetter
+    public void setTlsSessionCacheSize(Integer tlsSessionCacheSize) {
+        this.tlsSessionCacheSize = positiveOrNull(tlsSessionCacheSize);
+    }
+
+    public Double getQps() {
+        return qps;
+    }
+
+    @DataBoundSetter
+    public void setQps(Double qps) {
+        if (qps == null || qps <= 0) {
+            this.qps = null;
+        } else {
+            this.qps = qps;
+        }
+    }
+
+    public Integer getBurst() {
+        return burst;
+    }
+
+    @DataBoundSetter
+    public void setBurst(Integer burst) {
+        this.burst = positiveOrNull(burst);
+    }
+
+    /**
+     * Get the refill rate of the token bucket of the rate limiter, in requests per second.
+     */
+    public double getEffectiveQps() {
+        return qps == null ? ApiServerRateLimiter.DEFAULT_QPS : qps;
+    }
+
+    /**
+     * Get the capacity of the token bucket of the rate limiter, which defaults to one second of requests if the rate
+     * is set.
+     */
+    public int getEffectiveBurst() {
+        if (burst != null) {
+            return burst;
+        }
+        if (qps == null) {
+            return ApiServerRateLimiter.DEFAULT_BURST;
+        }
+        return Math.max(1, (int) Math.ceil(qps));
+    }
+
+    public Integer getEffectiveMaxConcurrentRequests() {
+        return firstNonNull(maxConcurrentRequests, getPresetEnum().getMaxConcurrentRequests());
+    }
+
+    public Integer getEffectiveMaxConcurrentRequestsPerHost() {
+        return firstNonNull(maxConcurrentRequestsPerHost, getPresetEnum().getMaxConcurrentRequestsPerHost());
+    }
+
+    public Integer getEffectiveMaxIdleConnections() {
+        return firstNonNull(maxIdleConnections, getPresetEnum().getMaxIdleConnections());
+    }
+
+    public Integer getEffectiveKeepAliveSeconds() {
+        return firstNonNull(keepAliveSeconds, getPresetEnum().getKeepAliveSeconds());
+    }
+
+    public Boolean getEffectiveHttp2() {
+        return firstNonNull(http2, getPresetEnum().getHttp2());
+    }
+
+    public Integer getEffectiveConnectTimeoutMillis() {
+        return firstNonNull(connectTimeoutMillis, getPresetEnum().getConnectTimeoutMillis());
+    }
+
+    public Integer getEffectiveReadTimeoutMillis() {
+        return firstNonNull(readTimeoutMillis, getPresetEnum().getReadTimeoutMillis());
+    }
+
+    public Integer getEffectiveRequestTimeoutMillis() {
+        return firstNonNull(requestTimeoutMillis, getPresetEnum().getRequestTimeoutMillis());
+    }
+
+    public Integer getEffectiveTlsSessionCacheSize() {
+        return firstNonNull(tlsSessionCacheSize, getPresetEnum().getTlsSessionCacheSize());
+    }
+
+    /**
+     * Compute the digest of the effective settings, which tells apart the pooled clients built with different
+     * profiles.
+     */
+    public String digest() {
+        return Joiner.on(',').useForNull("").join(Arrays.asList(
+                getEffectiveMaxConcurrentRequests(),
+                getEffectiveMaxConcurrentRequestsPerHost(),
+                getEffectiveMaxIdleConnections(),
+                getEffectiveKeepAliveSeconds(),
+                getEffectiveHttp2(),
+                getEffectiveConnectTimeoutMillis(),
+                getEffectiveReadTimeoutMillis(),
+                getEffectiveRequestTimeoutMillis(),
+                getEffectiveTlsSessionCacheSize(),
+                getEffectiveQps(),
+                getEffectiveBurst()));
+    }
+
+    /**
+     * Apply the settings that are part of the client {@link Config}: the concurrent request limits of the
+     * dispatcher, and the connect and read timeouts.
+     *
+     * @param config the config to change
+     */
+    public void configure(Config config) {
+        Integer value = getEffectiveMaxConcurrentRequests();
+        if (value != null) {
+            config.setMaxConcurrentRequests(value);
+        }
+        value = getEffectiveMaxConcurrentRequestsPerHost();
+        if (value != null) {
+            config.setMaxConcurrentRequestsPerHost(value);
+        }
+        value = getEffectiveConnectTimeoutMillis();
+        if (value != null) {
+            config.setConnectionTimeout(value);
+        }
+        value = getEffectiveReadTimeoutMillis();
+        if (value != null) {
+            // the request timeout of the client config is the read timeout of the OkHttp client
+            config.setRequestTimeout(value);
+        }
+    }
+
+    /**
+     * Apply the settings that the client {@link Config} does not cover to the OkHttp client built from the config.
+     *
+     * @param http   the OkHttp client built from the config
+     * @param config the client config
+     * @return the customized OkHttp client, sharing the dispatcher of the given one
+     */
+    public OkHttpClient customize(OkHttpClient http, Config config) {
+        OkHttpClient.Builder builder = http.newBuilder();
+
+        Integer idle = getEffectiveMaxIdleConnections();
+        Integer keepAlive = getEffectiveKeepAliveSeconds();
+        if (idle != null || keepAlive != null) {
+            builder.connectionPool(new ConnectionPool(
+                    idle == null ? DEFAULT_MAX_IDLE_CONNECTIONS : idle,
+                    keepAlive == null ? DEFAULT_KEEP_ALIVE_SECONDS : keepAlive,
+                    TimeUnit.SECONDS));
+        }
+
+        Boolean h2 = getEffectiveHttp2();
+        if (h2 != null) {
+            List<Protocol> protocols = h2
+                    ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                    : Collections.singletonList(Protocol.HTTP_1_1);
+            builder.protocols(protocols);
+        }
+
+        Integer callTimeout = getEffectiveRequestTimeoutMillis();
+        if (callTimeout != null) {
+            builder.callTimeout(callTimeout, TimeUnit.MILLISECONDS);
+        }
+
+        Integer sessionCacheSize = getEffectiveTlsSessionCacheSize();
+        if (sessionCacheSize != null && StringUtils.startsWithIgnoreCase(config.getMasterUrl(), "https:")) {
+            applyTlsSessionCacheSize(builder, config, sessionCacheSize);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Rebuild the SSL context the same way the Kubernetes client does, with the given size of its client session
+     * cache, so that the new connections to the API server can resume the cached TLS sessions.
+     */
+    @SuppressWarnings("deprecation")
+    private static void applyTlsSessionCacheSize(OkHttpClient.Builder builder, Config config, int size) {
+        try {
+            TrustManager[] trustManagers = SSLUtils.trustManagers(config);
+            KeyManager[] keyManagers = SSLUtils.keyManagers(config);
+            SSLContext sslContext = SSLUtils.sslContext(keyManagers, trustManagers, config.isTrustCerts());
+            sslContext.getClientSessionContext().setSessionCacheSize(size);
+
+            X509TrustManager trustManager = null;
+            if (trustManagers != null && trustManagers.length == 1) {
+                trustManager = (X509TrustManager) trustManagers[0];
+            }
+            if (trustManager != null) {
+                builder.sslSocketFactory(sslContext.getSocketFactory(), trustManager);
+            } else {
+                builder.sslSocketFactory(sslContext.getSocketFactory());
+            }
+        } catch (Exception e) {
+            throw KubernetesClientException.launderThrowable(e);
+        }
+    }
+
+    /**
+     * Find the transport profile to use for the given API server.
+     *
+     * @param stepProfile     the profile configured in the step, which takes precedence if present
+     * @param clusterProfiles the profiles configured for the API servers in the global configuration
+     * @param defaultProfile  the default profile in the global configuration
+     * @param serverUrl       the URL of the API server
+     * @return the profile to use, or {@code null} if none is configured
+     */
+    public static TransportProfile resolve(TransportProfile stepProfile,
+                                           List<ClusterTransportProfile> clusterProfiles,
+                                           TransportProfile defaultProfile,
+                                           String serverUrl) {
+        if (stepProfile != null) {
+            return stepProfile;
+        }
+        if (clusterProfiles != null && serverUrl != null) {
+            for (ClusterTransportProfile cluster : clusterProfiles) {
+                if (cluster.matches(serverUrl)) {
+                    return cluster.getTransportProfile();
+                }
+            }
+        }
+        return defaultProfile;
+    }
+
+    private static Integer positiveOrNull(Integer value) {
+        if (value == null || value <= 0) {
+            return null;
+        }
+        return value;
+    }
+
+    private static <T> T firstNonNull(T first, T second) {
+        return first != null ? first : second;
+    }
+
+    @Extension
+    public static final class DescriptorImpl extends Descriptor<TransportProfile> {
+        @Nonnull
+        @Override
+        public String getDisplayName() {
+            return Messages.TransportProfile_displayName();
+        }
+
+        public ListBoxModel doFillPresetItems() {
+            ListBoxModel model = new ListBoxModel();
+            for (TransportPreset preset : TransportPreset.values()) {
+                model.add(preset.title(), preset.name());
+            }
+            return model;
+        }
+
+        public ListBoxModel doFillHttp2Items() {
+            ListBoxModel model = new ListBoxModel();
+            model.add(Messages.TransportProfile_http2Preset(), "");
+            model.add(Messages.TransportProfile_http2Enabled(), Boolean.TRUE.toString());
+            model.add(Messages.TransportProfile_http2Disabled(), Boolean.FALSE.toString());
+            return model;
+        }
+    }
+}
@@ -13,12 +13,20 @@ import com.microsoft.jenkins.azurecommons.command.IBaseCommandData;
 import com.microsoft.jenkins.azurecommons.command.ICommand;
 import com.microsoft.jenkins.azurecommons.core.EnvironmentInjector;
 import com.microsoft.jenkins.azurecommons.telemetry.AppInsightsUtils;
+import com.microsoft.jenkins.kubernetes.ApplyLedger;
+import com.microsoft.jenkins.kubernetes.ApplyLedgerSession;
+import com.microsoft.jenkins.kubernetes.ApplyStrategy;
+import com.microsoft.jenkins.kubernetes.ClusterTransportProfile;
+import com.microsoft.jenkins.kubernetes.KubernetesCDGlobalConfiguration;
 import com.microsoft.jenkins.kubernetes.KubernetesCDPlugin;
+import com.microsoft.jenkins.kubernetes.KubernetesClientPool;
 import com.microsoft.jenkins.kubernetes.KubernetesClientWrapper;
 import com.microsoft.jenkins.kubernetes.Messages;
+import com.microsoft.jenkins.kubernetes.TransportProfile;
 import com.microsoft.jenkins.kubernetes.credentials.ClientWrapperFactory;
 import com.microsoft.jenkins.kubernetes.credentials.ResolvedDockerRegistryEndpoint;
 import com.microsoft.jenkins.kubernetes.util.Constants;
+import com.microsoft.jenkins.kubernetes.util.RetryPolicy;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.model.Item;
@@ -32,6 +40,7 @@ import org.apache.commons.lang3.StringUtils;
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -63,9 +72,35 @@ public class DeploymentCommand implements ICommand<DeploymentCommand.IDeployment
             task.setDefaultSecretNameSeed(jobContext.getRun().getDisplayName());
             task.setEnableSubstitution(context.isEnableConfigSubstitution());
             task.setDockerRegistryEndpoints(context.resolveEndpoints(jobContext.getRun().getParent()));
+            task.setParallelism(context.getParallelism());
+            task.setFailFast(context.isFailFast());
+            task.setMaxRetries(context.getMaxRetries());
+            task.setPrefetchResources(context.isPrefetchResources());
+            task.setPrefetchLabelSelector(context.getPrefetchLabelSelector());
+            task.setSkipUnchanged(context.isSkipUnchanged());
+            task.setApplyStrategy(context.getApplyStrategyEnum());
+            task.setSharedCache(context.isSharedCache());
+            task.setStreamDocuments(context.isStreamDocuments());
+            task.setTransportProfile(context.getTransportProfile());
+            KubernetesCDGlobalConfiguration globalConfiguration = KubernetesCDGlobalConfiguration.get();
+            if (globalConfiguration != null) {
+                task.setDefaultTransportProfile(globalConfiguration.getTransportProfile());
+                task.setClusterTransportProfiles(globalConfiguration.getClusterTransportProfiles());
+            }
+            if (context.isUseApplyLedger()) {
+                task.setApplyLedger(ApplyLedger.get().open(jobContext.getRun().getParent().getFullName()));
+            }
 
             taskResult = workspace.act(task);
 
+            if (taskResult.applyLedger != null) {
+                try {
+                    ApplyLedger.get().record(taskResult.applyLedger);
+                } catch (IOException e) {
+                    jobContext.getTaskListener().error(Messages.DeploymentCommand_ledgerNotSaved(e.getMessage()));
+                }
+            }
+
             for (Map.Entry<String, String> entry : taskResult.extraEnvVars.entrySet()) {
                 EnvironmentInjector.inject(jobContext.getRun(), envVars, entry.getKey(), entry.getValue());
             }
@@ -113,6 +148,19 @@ public class DeploymentCommand implements ICommand<DeploymentCommand.IDeployment
         private String secretNameCfg;
         private String defaultSecretNameSeed;
         private boolean enableSubstitution;
+        private int parallelism;
+        private boolean failFast;
+        private int maxRetries = RetryPolicy.DEFAULT_MAX_RETRIES;
+        private boolean prefetchResources;
+        private String prefetchLabelSelector;
+        private boolean skipUnchanged;
+        private ApplyStrategy applyStrategy = ApplyStrategy.DEFAULT;
+        private ApplyLedgerSession applyLedger;
+        private boolean sharedCache;
+        private boolean streamDocuments;
+        private TransportProfile transportProfile;
+        private TransportProfile defaultTransportProfile;
+        private List<ClusterTransportProfile> clusterTransportProfiles;
 
         private List<ResolvedDockerRegistryEndpoint> dockerRegistryEndpoints;
 
@@ -137,37 +185,63 @@ public class DeploymentCommand implements ICommand<DeploymentCommand.IDeployment
             checkState(StringUtils.isNotBlank(secretNamespace), Messages.DeploymentCommand_blankNamespace());
             checkState(StringUtils.isNotBlank(configPaths), Messages.DeploymentCommand_blankConfigFiles());
 
-            KubernetesClientWrapper wrapper =
-                    clientFactory.buildClient(workspace).withLogger(taskListener.getLogger());
-            result.masterHost = getMasterHost(wrapper);
-
-            FilePath[] configFiles = workspace.list(configPaths);
-            if (configFiles.length == 0) {
-                String message = Messages.DeploymentCommand_noMatchingConfigFiles(configPaths);
-                taskListener.error(message);
-                result.commandState = CommandState.HasError;
-                throw new IllegalStateException(message);
+            KubernetesClientWrapper wrapper = clientFactory.buildClient(workspace);
+            TransportProfile profile = TransportProfile.resolve(
+                    transportProfile, clusterTransportProfiles, defaultTransportProfile, wrapper.getServerUrl());
+            if (profile != null) {
+                taskListener.getLogger().println(
+                        Messages.DeploymentCommand_transportProfile(profile.getPresetEnum().title()));
             }
+            wrapper.withTransportProfile(profile)
+                    .withLogger(taskListener.getLogger())
+                    .withParallelism(parallelism)
+                    .withFailFast(failFast)
+                    .withRetryPolicy(new RetryPolicy(maxRetries))
+                    .withPrefetch(prefetchResources)
+                    .withPrefetchLabelSelector(prefetchLabelSelector)
+                    .withSkipUnchanged(skipUnchanged)
+                    .withApplyStrategy(applyStrategy)
+                    .withApplyLedger(applyLedger)
+                    .withSharedCache(sharedCache)
+                    .withStreamDocuments(streamDocuments);
+            try {
+                result.masterHost = getMasterHost(wrapper);
+
+                FilePath[] configFiles = workspace.list(configPaths);
+                if (configFiles.length == 0) {
+                    String message = Messages.DeploymentCommand_noMatchingConfigFiles(configPaths);
+                    taskListener.error(message);
+                    result.commandState = CommandState.HasError;
+                    throw new IllegalStateException(message);
+                }
 
-            if (!dockerRegistryEndpoints.isEmpty()) {
-                String secretName =
-                        KubernetesClientWrapper.prepareSecretName(secretNameCfg, defaultSecretNameSeed, envVars);
+                if (!dockerRegistryEndpoints.isEmpty()) {
+                    String secretName =
+                            KubernetesClientWrapper.prepareSecretName(secretNameCfg, defaultSecretNameSeed, envVars);
 
-                wrapper.createOrReplaceSecrets(secretNamespace, secretName, dockerRegistryEndpoints);
+                    wrapper.createOrReplaceSecrets(secretNamespace, secretName, dockerRegistryEndpoints);
 
-                taskListener.getLogger().println(Messages.DeploymentCommand_injectSecretName(
-                        Constants.KUBERNETES_SECRET_NAME_PROP, secretName));
-                envVars.put(Constants.KUBERNETES_SECRET_NAME_PROP, secretName);
-                result.extraEnvVars.put(Constants.KUBERNETES_SECRET_NAME_PROP, secretName);
-            }
+                    taskListener.getLogger().println(Messages.DeploymentCommand_injectSecretName(
+                            Constants.KUBERNETES_SECRET_NAME_PROP, secretName));
+                    envVars.put(Constants.KUBERNETES_SECRET_NAME_PROP, secretName);
+                    result.extraEnvVars.put(Constants.KUBERNETES_SECRET_NAME_PROP, secretName);
+                }
 
-            if (enableSubstitution) {
-                wrapper.withVariableResolver(new VariableResolver.ByMap<>(envVars));
-            }
+                if (enableSubstitution) {
+                    wrapper.withVariableResolver(new VariableResolver.ByMap<>(envVars));
+                }
+
+                wrapper.apply(configFiles);
 
-            wrapper.apply(configFiles);
+                KubernetesClientPool.Stats stats = KubernetesClientPool.get().getStats();
+                taskListener.getLogger().println(Messages.DeploymentCommand_clientPoolStats(
+                        stats.getHits(), stats.getMisses(), stats.getLiveClients(), stats.getOpenConnections()));
 
-            result.commandState = CommandState.Success;
+                result.applyLedger = applyLedger;
+                result.commandState = CommandState.Success;
+            } finally {
+                wrapper.close();
+            }
 
             return result;
         }
@@ -211,6 +285,58 @@ public class DeploymentCommand implements ICommand<DeploymentCommand.IDeployment
         public void setDockerRegistryEndpoints(List<ResolvedDockerRegistryEndpoint> dockerRegistryEndpoints) {
             this.dockerRegistryEndpoints = dockerRegistryEndpoints;
         }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+
+        public void setFailFast(boolean failFast) {
+            this.failFast = failFast;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public void setPrefetchResources(boolean prefetchResources) {
+            this.prefetchResources = prefetchResources;
+        }
+
+        public void setPrefetchLabelSelector(String prefetchLabelSelector) {
+            this.prefetchLabelSelector = prefetchLabelSelector;
+        }
+
+        public void setSkipUnchanged(boolean skipUnchanged) {
+            this.skipUnchanged = skipUnchanged;
+        }
+
+        public void setApplyStrategy(ApplyStrategy applyStrategy) {
+            this.applyStrategy = applyStrategy;
+        }
+
+        public void setApplyLedger(ApplyLedgerSession applyLedger) {
+            this.applyLedger = applyLedger;
+        }
+
+        public void setSharedCache(boolean sharedCache) {
+            this.sharedCache = sharedCache;
+        }
+
+        public void setStreamDocuments(boolean streamDocuments) {
+            this.streamDocuments = streamDocuments;
+        }
+
+        public void setTransportProfile(TransportProfile transportProfile) {
+            this.transportProfile = transportProfile;
+        }
+
+        public void setDefaultTransportProfile(TransportProfile defaultTransportProfile) {
+            this.defaultTransportProfile = defaultTransportProfile;
+        }
+
+        public void setClusterTransportProfiles(List<ClusterTransportProfile> clusterTransportProfiles) {
+            this.clusterTransportProfiles = new ArrayList<>(clusterTransportProfiles);
+        }
     }
 
     public static class TaskResult implements Serializable {
@@ -218,6 +344,7 @@ public class DeploymentCommand implements ICommand<DeploymentCommand.IDeployment
 
         private CommandState commandState = CommandState.Unknown;
         private String masterHost;
+        private ApplyLedgerSession applyLedger;
         private final Map<String, String> extraEnvVars = new HashMap<>();
     }
 
@@ -233,5 +360,27 @@ public class DeploymentCommand implements ICommand<DeploymentCommand.IDeployment
         String getConfigs();
 
         boolean isEnableConfigSubstitution();
+
+        int getParallelism();
+
+        boolean isFailFast();
+
+        int getMaxRetries();
+
+        boolean isPrefetchResources();
+
+        String getPrefetchLabelSelector();
+
+        boolean isSkipUnchanged();
+
+        ApplyStrategy getApplyStrategyEnum();
+
+        boolean isUseApplyLedger();
+
+        TransportProfile getTransportProfile();
+
+        boolean isSharedCache();
+
+        boolean isStreamDocuments();
     }
 }
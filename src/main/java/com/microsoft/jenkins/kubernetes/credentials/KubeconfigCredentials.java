@@ -14,7 +14,6 @@ import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
 import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
 import com.cloudbees.plugins.credentials.domains.DomainRequirement;
 import com.cloudbees.plugins.credentials.impl.BaseStandardCredentials;
-import com.microsoft.jenkins.azurecommons.remote.SSHClient;
 import com.microsoft.jenkins.kubernetes.util.Constants;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.DescriptorExtensionList;
@@ -27,14 +26,12 @@ import hudson.security.ACL;
 import hudson.util.ListBoxModel;
 import hudson.util.Secret;
 import jenkins.model.Jenkins;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 
 import javax.annotation.Nonnull;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
@@ -174,7 +171,7 @@ public class KubeconfigCredentials extends BaseStandardCredentials implements An
                 File file = new File(kubeconfigFile);
                 if (file.isFile()) {
                     try {
-                        return FileUtils.readFileToString(file);
+                        return WatchedFileCache.get().read(file);
                     } catch (IOException e) {
                         throw new RuntimeException(e);
                     }
@@ -284,13 +281,7 @@ public class KubeconfigCredentials extends BaseStandardCredentials implements An
             }
 
             try {
-                SSHClient sshClient = new SSHClient(getHost(), getPort(), creds);
-                try (SSHClient connected = sshClient.connect()) {
-                    try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-                        connected.copyFrom(Constants.KUBECONFIG_FILE, out);
-                        return out.toString(Constants.DEFAULT_CHARSET);
-                    }
-                }
+                return SSHKubeconfigCache.get().getContent(getHost(), getPort(), creds, getFile());
             } catch (Exception ex) {
                 throw new RuntimeException(ex);
             }
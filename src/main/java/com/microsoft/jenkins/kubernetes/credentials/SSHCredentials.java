@@ -13,7 +13,6 @@ import com.cloudbees.plugins.credentials.common.StandardListBoxModel;
 import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
 import com.cloudbees.plugins.credentials.domains.DomainRequirement;
-import com.microsoft.jenkins.azurecommons.remote.SSHClient;
 import com.microsoft.jenkins.kubernetes.KubernetesClientWrapper;
 import com.microsoft.jenkins.kubernetes.Messages;
 import com.microsoft.jenkins.kubernetes.util.Constants;
@@ -32,7 +31,6 @@ import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
 import javax.annotation.Nonnull;
-import java.io.OutputStream;
 import java.util.Collections;
 
 /**
@@ -144,23 +142,8 @@ public class SSHCredentials
 
         @Override
         public KubernetesClientWrapper buildClient(FilePath workspace) throws Exception {
-            FilePath kubeconfig = fetchConfig(workspace);
-            try {
-                return new KubernetesClientWrapper(kubeconfig.getRemote());
-            } finally {
-                kubeconfig.delete();
-            }
-        }
-
-        private FilePath fetchConfig(FilePath workspace) throws Exception {
-            SSHClient sshClient = new SSHClient(host, port, credentials);
-            try (SSHClient ignore = sshClient.connect()) {
-                FilePath configFile = workspace.createTempFile(Constants.KUBECONFIG_PREFIX, "");
-                try (OutputStream out = configFile.write()) {
-                    sshClient.copyFrom(Constants.KUBECONFIG_FILE, out);
-                }
-                return configFile;
-            }
+            return new KubernetesClientWrapper(
+                    SSHKubeconfigCache.get().getContent(host, port, credentials, Constants.KUBECONFIG_FILE));
         }
     }
 }
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes.credentials;
+
+import com.cloudbees.jenkins.plugins.sshcredentials.SSHUserPrivateKey;
+import com.cloudbees.plugins.credentials.common.StandardUsernameCredentials;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import com.google.common.base.Joiner;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.microsoft.jenkins.azurecommons.remote.SSHClient;
+import com.microsoft.jenkins.kubernetes.util.Constants;
+import hudson.util.Secret;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache of the kubeconfig files fetched from a remote host over SSH, keyed by the server, port, file path and a
+ * fingerprint of the credentials, so that the cached files and sessions are not reused once the credentials are
+ * updated.
+ * <p>
+ * A cached file is returned as is for {@link #TTL_SECONDS} seconds. After that, it is revalidated with a
+ * {@code cksum} of the remote file, and copied again only if the checksum has changed. The SSH sessions are kept
+ * open and reused for the same server and credentials, and closed after {@link #SESSION_IDLE_SECONDS} seconds
+ * without use, along with the cached files that have not been revalidated since. A session is leased for the whole
+ * of a fetch, and never closed while it is leased.
+ */
+final class SSHKubeconfigCache {
+    private static final Logger LOGGER = Logger.getLogger(SSHKubeconfigCache.class.getName());
+
+    static final long TTL_SECONDS = Long.getLong(SSHKubeconfigCache.class.getName() + ".ttlSeconds", 60);
+    static final long SESSION_IDLE_SECONDS =
+            Long.getLong(SSHKubeconfigCache.class.getName() + ".sessionIdleSeconds", 300);
+
+    private static final long EVICTION_INTERVAL_SECONDS = 30;
+
+    private static final SSHKubeconfigCache INSTANCE = new SSHKubeconfigCache(
+            TimeUnit.SECONDS.toMillis(TTL_SECONDS), TimeUnit.SECONDS.toMillis(SESSION_IDLE_SECONDS));
+
+    private final long ttlMillis;
+    private final long idleMillis;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, PooledSession> sessions = new HashMap<>();
+    private ScheduledExecutorService evictionExecutor;
+
+    SSHKubeconfigCache(long ttlMillis, long idleMillis) {
+        this.ttlMillis = ttlMillis;
+        this.idleMillis = idleMillis;
+    }
+
+    static SSHKubeconfigCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the contents of the remote file, without writing it to the disk.
+     *
+     * @param host        the SSH server
+     * @param port        the SSH port
+     * @param credentials the SSH credentials
+     * @param file        the path of the file, relative to the home directory of the SSH user
+     * @return the file contents
+     * @throws Exception if the file cannot be fetched
+     */
+    String getContent(String host, int port, StandardUsernameCredentials credentials, String file) throws Exception {
+        String fingerprint = fingerprint(credentials);
+        String key = Joiner.on('\n').join(host, port, fingerprint, file);
+        Entry entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.validatedAt < ttlMillis) {
+            return entry.content;
+        }
+
+        PooledSession session = acquire(host, port, credentials, fingerprint);
+        try {
+            synchronized (session) {
+                // another thread may have revalidated the file while this one waited for the session
+                entry = entries.get(key);
+                long now = System.currentTimeMillis();
+                if (entry != null && now - entry.validatedAt < ttlMillis) {
+                    return entry.content;
+                }
+                String checksum = session.checksum(file);
+                String content;
+                if (entry != null && entry.checksum.equals(checksum)) {
+                    content = entry.content;
+                } else {
+                    content = session.copy(file);
+                }
+                entries.put(key, new Entry(content, checksum, now));
+                return content;
+            }
+        } finally {
+            release(session);
+        }
+    }
+
+    /**
+     * Get the fingerprint of the credentials, which changes when the user name, password, private keys or passphrase
+     * are updated.
+     */
+    static String fingerprint(StandardUsernameCredentials credentials) {
+        List<String> parts = new ArrayList<>();
+        parts.add(credentials.getId());
+        parts.add(credentials.getUsername());
+        if (credentials instanceof StandardUsernamePasswordCredentials) {
+            parts.add(Secret.toString(((StandardUsernamePasswordCredentials) credentials).getPassword()));
+        }
+        if (credentials instanceof SSHUserPrivateKey) {
+            SSHUserPrivateKey key = (SSHUserPrivateKey) credentials;
+            parts.addAll(key.getPrivateKeys());
+            parts.add(Secret.toString(key.getPassphrase()));
+        }
+        return DigestUtils.sha256Hex(Joiner.on('\n').useForNull("").join(parts));
+    }
+
+    /**
+     * Lease the session to the server, so that it is not closed by {@link #evictIdle()} until it is released.
+     */
+    synchronized PooledSession acquire(
+            String host, int port, StandardUsernameCredentials credentials, String fingerprint) {
+        String key = Joiner.on('\n').join(host, port, fingerprint);
+        PooledSession session = sessions.get(key);
+        if (session == null) {
+            session = new PooledSession(host, port, credentials);
+            sessions.put(key, session);
+        }
+        ++session.leases;
+        if (evictionExecutor == null) {
+            evictionExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("kubernetes-cd-ssh-eviction")
+                    .setDaemon(true)
+                    .build());
+            evictionExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    evictIdle();
+                }
+            }, EVICTION_INTERVAL_SECONDS, EVICTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+        return session;
+    }
+
+    synchronized void release(PooledSession session) {
+        --session.leases;
+        session.lastUsed = System.currentTimeMillis();
+    }
+
+    /**
+     * Close the SSH sessions that are not leased and have not been used for the idle timeout, and drop the cached
+     * files that have not been revalidated for as long.
+     */
+    synchronized void evictIdle() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledSession> sessionIter = sessions.values().iterator();
+        while (sessionIter.hasNext()) {
+            PooledSession session = sessionIter.next();
+            if (session.leases == 0 && now - session.lastUsed >= idleMillis) {
+                sessionIter.remove();
+                session.close();
+            }
+        }
+        Iterator<Entry> entryIter = entries.values().iterator();
+        while (entryIter.hasNext()) {
+            if (now - entryIter.next().validatedAt >= Math.max(idleMillis, ttlMillis)) {
+                entryIter.remove();
+            }
+        }
+    }
+
+    static String quote(String file) {
+        return "'" + file.replace("'", "'\\''") + "'";
+    }
+
+    private static final class Entry {
+        private final String content;
+        private final String checksum;
+        private final long validatedAt;
+
+        Entry(String content, String checksum, long validatedAt) {
+            this.content = content;
+            this.checksum = checksum;
+            this.validatedAt = validatedAt;
+        }
+    }
+
+    /**
+     * An SSH session kept open between the requests. The callers synchronize on the session, and the leases are
+     * guarded by the cache.
+     */
+    static final class PooledSession {
+        private final String host;
+        private final int port;
+        private final StandardUsernameCredentials credentials;
+        private SSHClient connected;
+        private boolean closed;
+        private int leases;
+        private long lastUsed;
+
+        PooledSession(String host, int port, StandardUsernameCredentials credentials) {
+            this.host = host;
+            this.port = port;
+            this.credentials = credentials;
+        }
+
+        String checksum(String file) throws Exception {
+            try {
+                return connect().execRemote("cksum " + quote(file), false, true).trim();
+            } catch (SSHClient.ExitStatusException e) {
+                throw e;
+            } catch (Exception e) {
+                // the kept session may have been dropped by the server, retry once with a new session
+                reset();
+                return connect().execRemote("cksum " + quote(file), false, true).trim();
+            }
+        }
+
+        String copy(String file) throws Exception {
+            try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+                connect().copyFrom(file, out);
+                return out.toString(Constants.DEFAULT_CHARSET);
+            } catch (Exception e) {
+                reset();
+                throw e;
+            }
+        }
+
+        private SSHClient connect() throws Exception {
+            if (connected == null) {
+                connected = new SSHClient(host, port, credentials).connect();
+            }
+            return connected;
+        }
+
+        private void reset() {
+            if (connected != null) {
+                try {
+                    connected.close();
+                } catch (Exception e) {
+                    LOGGER.log(Level.FINE, "Failed to close the SSH session to " + host, e);
+                }
+                connected = null;
+            }
+        }
+
+        synchronized void close() {
+            reset();
+            closed = true;
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes.credentials;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache of the contents of the files on the Jenkins controller, invalidated by the {@link WatchService} events of
+ * their directories.
+ * <p>
+ * The directories that cannot be watched, and all the directories if {@link #POLL_ONLY} is set (e.g., for the
+ * network file systems whose changes are not reported to the local watch service), fall back to polling: a cached
+ * file is checked for a different modification time or size when it has not been checked for
+ * {@link #POLL_INTERVAL_MILLIS} milliseconds.
+ */
+final class WatchedFileCache {
+    private static final Logger LOGGER = Logger.getLogger(WatchedFileCache.class.getName());
+
+    static final boolean POLL_ONLY = Boolean.getBoolean(WatchedFileCache.class.getName() + ".pollOnly");
+    static final long POLL_INTERVAL_MILLIS =
+            Long.getLong(WatchedFileCache.class.getName() + ".pollIntervalMillis", 2000);
+
+    private static final WatchedFileCache INSTANCE = new WatchedFileCache(POLL_ONLY, POLL_INTERVAL_MILLIS);
+
+    private final boolean pollOnly;
+    private final long pollIntervalMillis;
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Path, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final Set<Path> watchedDirectories = ConcurrentHashMap.newKeySet();
+    private final AtomicLong reads = new AtomicLong();
+    private WatchService watchService;
+
+    WatchedFileCache(boolean pollOnly, long pollIntervalMillis) {
+        this.pollOnly = pollOnly;
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    static WatchedFileCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Read the file contents with the platform default charset, from the cache if the file has not changed.
+     *
+     * @param file the file to read
+     * @return the file contents
+     * @throws IOException if the file cannot be read
+     */
+    String read(File file) throws IOException {
+        Path path = file.getAbsoluteFile().toPath().normalize();
+        AtomicLong version = version(path);
+        Entry entry = entries.get(path);
+        if (entry != null && entry.version == version.get() && isFresh(entry, file)) {
+            return entry.content;
+        }
+
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        boolean watched = watch(path.getParent());
+        // read the version before the contents, so that a change during the read invalidates the new entry
+        long readVersion = version.get();
+        long lastModified = file.lastModified();
+        long length = file.length();
+        String content = FileUtils.readFileToString(file);
+        reads.incrementAndGet();
+        entries.put(path, new Entry(content, readVersion, !watched, lastModified, length));
+        return content;
+    }
+
+    /**
+     * Get the number of file reads.
+     */
+    long getReads() {
+        return reads.get();
+    }
+
+    private AtomicLong version(Path path) {
+        AtomicLong version = versions.get(path);
+        if (version == null) {
+            AtomicLong created = new AtomicLong();
+            version = versions.putIfAbsent(path, created);
+            if (version == null) {
+                version = created;
+            }
+        }
+        return version;
+    }
+
+    private boolean isFresh(Entry entry, File file) {
+        if (!entry.polled) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now - entry.checkedAt < pollIntervalMillis) {
+            return true;
+        }
+        if (file.lastModified() != entry.lastModified || file.length() != entry.length) {
+            return false;
+        }
+        entry.checkedAt = now;
+        return true;
+    }
+
+    private void invalidate(Path path) {
+        version(path).incrementAndGet();
+        entries.remove(path);
+    }
+
+    /**
+     * Register the directory with the watch service.
+     *
+     * @return whether the changes of the files in the directory are reported by the watch service
+     */
+    private synchronized boolean watch(Path directory) {
+        if (pollOnly || directory == null) {
+            return false;
+        }
+        if (watchedDirectories.contains(directory)) {
+            return true;
+        }
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        processEvents();
+                    }
+                }, "kubernetes-cd-kubeconfig-watcher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            watchedDirectories.add(directory);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.log(Level.FINE, "Cannot watch " + directory + ", fall back to polling", e);
+            return false;
+        }
+    }
+
+    private void processEvents() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // some events are lost, invalidate all the files in the directory
+                    for (Path path : entries.keySet()) {
+                        if (directory.equals(path.getParent())) {
+                            invalidate(path);
+                        }
+                    }
+                } else {
+                    invalidate(directory.resolve((Path) event.context()));
+                }
+            }
+            if (!key.reset()) {
+                // the directory is no longer accessible
+                watchedDirectories.remove(directory);
+                for (Path path : entries.keySet()) {
+                    if (directory.equals(path.getParent())) {
+                        invalidate(path);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final String content;
+        private final long version;
+        private final boolean polled;
+        private final long lastModified;
+        private final long length;
+        private volatile long checkedAt;
+
+        Entry(String content, long version, boolean polled, long lastModified, long length) {
+            this.content = content;
+            this.version = version;
+            this.polled = polled;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.checkedAt = System.currentTimeMillis();
+        }
+    }
+}
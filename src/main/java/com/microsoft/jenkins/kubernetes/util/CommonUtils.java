@@ -7,13 +7,20 @@
 package com.microsoft.jenkins.kubernetes.util;
 
 import com.microsoft.jenkins.kubernetes.Messages;
-import hudson.Util;
 import hudson.util.VariableResolver;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.ReaderInputStream;
+import org.apache.commons.lang.StringUtils;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 
 public final class CommonUtils {
@@ -41,7 +48,10 @@ public final class CommonUtils {
      * Replace the variables in the given {@code InputStream} and produce a new stream.
      * If the {@code variableResolver} is null, the original {@code InputStream} will be returned.
      * <p>
-     * Note that although we're processing streams, all the contents will be loaded and returned for this substitution.
+     * The contents of up to {@link MacroTemplateCache#MAX_TEMPLATE_BYTES} bytes are compiled into a
+     * {@link MacroTemplate}, cached by their digest, and rendered in memory. The variables of larger contents are
+     * replaced as the returned stream is read, see {@link MacroSubstitutingReader}, so they are never loaded as a
+     * whole. Closing the returned stream closes the original one.
      *
      * @param original         the original {@code InputStream}
      * @param variableResolver the variable resolver
@@ -54,17 +64,62 @@ public final class CommonUtils {
         if (variableResolver == null) {
             return original;
         }
+        Charset charset = Charset.forName(Constants.DEFAULT_CHARSET);
+        MacroTemplateCache templateCache = MacroTemplateCache.get();
+        int maxTemplateBytes = templateCache.getMaxTemplateBytes();
+        byte[] head;
         try {
-            String content = IOUtils.toString(original, Constants.DEFAULT_CHARSET);
-            content = Util.replaceMacro(content, variableResolver);
-            if (content != null) {
-                return new ByteArrayInputStream(content.getBytes(Constants.DEFAULT_CHARSET));
-            } else {
-                throw new IllegalArgumentException(Messages.JobContext_nullContent());
-            }
-        } finally {
+            head = readHead(original, maxTemplateBytes);
+        } catch (IOException e) {
             original.close();
+            throw e;
+        }
+        if (head.length <= maxTemplateBytes) {
+            original.close();
+            MacroTemplate template = templateCache.getTemplate(head, charset);
+            return new ByteArrayInputStream(template.render(variableResolver).getBytes(charset));
+        }
+        InputStream rest = new SequenceInputStream(new ByteArrayInputStream(head), original);
+        return new ReaderInputStream(
+                new MacroSubstitutingReader(new InputStreamReader(rest, charset), variableResolver), charset);
+    }
+
+    /**
+     * Read the head of the stream, up to one byte more than the limit, so that the caller can tell whether the
+     * contents fit in the limit by the length of the result. The rest of the stream is left unread.
+     *
+     * @param in    the stream to read
+     * @param limit the maximum number of bytes that the caller holds in memory
+     * @return the bytes read, at most {@code limit + 1}
+     * @throws IOException error on reading the stream
+     */
+    public static byte[] readHead(InputStream in, int limit) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOUtils.copyLarge(in, out, 0, limit + 1L);
+        return out.toByteArray();
+    }
+
+    /**
+     * Parse an equality-based label selector, e.g., {@code app=web,tier==frontend}.
+     *
+     * @param selector the label selector
+     * @return the label key and values that should be matched, empty if the selector is blank
+     * @throws IllegalArgumentException if the selector is not equality-based
+     */
+    public static Map<String, String> parseLabelSelector(String selector) {
+        Map<String, String> labels = new LinkedHashMap<>();
+        if (StringUtils.isBlank(selector)) {
+            return labels;
+        }
+        for (String requirement : selector.split(",")) {
+            String[] parts = requirement.split("==?", 2);
+            if (parts.length != 2 || requirement.contains("!")
+                    || StringUtils.isBlank(parts[0]) || parts[1].contains("=")) {
+                throw new IllegalArgumentException(Messages.KubernetesClientWrapper_invalidLabelSelector(selector));
+            }
+            labels.put(parts[0].trim(), parts[1].trim());
         }
+        return labels;
     }
 
     public static Random threadLocalRandom() {
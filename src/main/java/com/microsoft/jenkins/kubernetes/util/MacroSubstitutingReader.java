@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes.util;
+
+import hudson.Util;
+import hudson.util.VariableResolver;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reader that replaces the {@code $VAR} and {@code ${VAR}} variables of the underlying reader as it is read, with
+ * the same semantics as {@link Util#replaceMacro(String, VariableResolver)}:
+ * <ul>
+ * <li>{@code $$} is replaced by {@code $};</li>
+ * <li>{@code $NAME} takes the longest run of {@code [A-Za-z0-9_]}, and {@code ${NAME}} allows dots in the name;</li>
+ * <li>the variables resolved to {@code null} are kept as is;</li>
+ * <li>the replaced values are not scanned for variables again.</li>
+ * </ul>
+ * <p>
+ * The underlying reader is consumed through a fixed-size buffer, and only the variable being scanned and the value
+ * being emitted are held besides, so the memory used does not grow with the size of the contents.
+ */
+public final class MacroSubstitutingReader extends Reader {
+    static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final Reader in;
+    private final VariableResolver<String> resolver;
+    private final char[] buffer;
+    private int position;
+    private int limit;
+
+    /**
+     * Characters read ahead while scanning a variable that turned out not to match, to be scanned again.
+     */
+    private String rescan = "";
+    private int rescanPosition;
+
+    /**
+     * The replacement of the last variable, not yet returned to the caller.
+     */
+    private String pending = "";
+    private int pendingPosition;
+
+    public MacroSubstitutingReader(Reader in, VariableResolver<String> resolver) {
+        this(in, resolver, DEFAULT_BUFFER_SIZE);
+    }
+
+    MacroSubstitutingReader(Reader in, VariableResolver<String> resolver, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+        }
+        this.in = in;
+        this.resolver = resolver;
+        this.buffer = new char[bufferSize];
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int count = 0;
+        while (count < len) {
+            if (pendingPosition < pending.length()) {
+                int n = Math.min(len - count, pending.length() - pendingPosition);
+                pending.getChars(pendingPosition, pendingPosition + n, cbuf, off + count);
+                pendingPosition += n;
+                count += n;
+                continue;
+            }
+            if (rescanPosition >= rescan.length() && position < limit) {
+                // copy the plain text up to the next variable directly from the buffer
+                int end = Math.min(limit, position + len - count);
+                int start = position;
+                while (position < end && buffer[position] != '$') {
+                    ++position;
+                }
+                if (position > start) {
+                    System.arraycopy(buffer, start, cbuf, off + count, position - start);
+                    count += position - start;
+                    continue;
+                }
+            }
+            int c = next();
+            if (c == -1) {
+                break;
+            }
+            if (c == '$') {
+                pending = scanVariable();
+                pendingPosition = 0;
+            } else {
+                cbuf[off + count++] = (char) c;
+            }
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Scan the variable after a {@code $}.
+     *
+     * @return the text to emit in place of the scanned characters
+     */
+    private String scanVariable() throws IOException {
+        int c = next();
+        if (c == -1) {
+            return "$";
+        }
+        if (c == '$') {
+            return "$";
+        }
+        if (MacroTemplate.isNameChar(c)) {
+            StringBuilder name = new StringBuilder().append((char) c);
+            c = next();
+            while (c != -1 && MacroTemplate.isNameChar(c)) {
+                name.append((char) c);
+                c = next();
+            }
+            if (c != -1) {
+                unread(String.valueOf((char) c));
+            }
+            String value = resolver.resolve(name.toString());
+            return value == null ? "$" + name : value;
+        }
+        if (c == '{') {
+            StringBuilder name = new StringBuilder();
+            c = next();
+            while (c != -1 && (MacroTemplate.isNameChar(c) || c == '.')) {
+                name.append((char) c);
+                c = next();
+            }
+            if (c == '}' && name.length() > 0) {
+                String value = resolver.resolve(name.toString());
+                return value == null ? "${" + name + "}" : value;
+            }
+            // not a variable, scan the characters after the '$' again as they may start one
+            name.insert(0, '{');
+            if (c != -1) {
+                name.append((char) c);
+            }
+            unread(name.toString());
+            return "$";
+        }
+        unread(String.valueOf((char) c));
+        return "$";
+    }
+
+    private int next() throws IOException {
+        if (rescanPosition < rescan.length()) {
+            return rescan.charAt(rescanPosition++);
+        }
+        if (position >= limit) {
+            int n;
+            do {
+                n = in.read(buffer, 0, buffer.length);
+            } while (n == 0);
+            if (n == -1) {
+                return -1;
+            }
+            position = 0;
+            limit = n;
+        }
+        return buffer[position++];
+    }
+
+    private void unread(String chars) {
+        rescan = chars + rescan.substring(rescanPosition);
+        rescanPosition = 0;
+    }
+}
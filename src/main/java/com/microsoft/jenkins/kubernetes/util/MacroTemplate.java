@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes.util;
+
+import hudson.Util;
+import hudson.util.VariableResolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Text split once into the literal segments and the variable slots, so that the variables can be replaced with a
+ * single pass of concatenation, with the same result as {@link Util#replaceMacro(String, VariableResolver)}.
+ * <p>
+ * The tokens found by {@code Util.replaceMacro} do not depend on the values of the variables, as the replaced values
+ * are not scanned again, so they can be found ahead of the rendering. The {@code $$} escapes are folded into the
+ * literal segments.
+ */
+public final class MacroTemplate {
+    /**
+     * The literal segments, one more than the variables: {@code literals[i]} precedes {@code names[i]}.
+     */
+    private final String[] literals;
+    private final String[] names;
+    /**
+     * The variables as written in the text, kept in place of the variables that cannot be resolved.
+     */
+    private final String[] tokens;
+    private final int literalLength;
+
+    private MacroTemplate(String[] literals, String[] names, String[] tokens) {
+        this.literals = literals;
+        this.names = names;
+        this.tokens = tokens;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Split the text into the literal segments and the {@code $VAR} and {@code ${VAR}} variables.
+     *
+     * @param text the text to compile
+     * @return the compiled template
+     */
+    public static MacroTemplate compile(String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<String> tokens = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int length = text.length();
+        int index = 0;
+        while (index < length) {
+            int dollar = text.indexOf('$', index);
+            if (dollar < 0 || dollar == length - 1) {
+                literal.append(text, index, length);
+                break;
+            }
+            literal.append(text, index, dollar);
+            char c = text.charAt(dollar + 1);
+            int end = -1;
+            String name = null;
+            if (c == '$') {
+                literal.append('$');
+                index = dollar + 2;
+                continue;
+            } else if (isNameChar(c)) {
+                end = dollar + 2;
+                while (end < length && isNameChar(text.charAt(end))) {
+                    ++end;
+                }
+                name = text.substring(dollar + 1, end);
+            } else if (c == '{') {
+                int close = dollar + 2;
+                while (close < length && (isNameChar(text.charAt(close)) || text.charAt(close) == '.')) {
+                    ++close;
+                }
+                if (close < length && text.charAt(close) == '}' && close > dollar + 2) {
+                    end = close + 1;
+                    name = text.substring(dollar + 2, close);
+                }
+            }
+            if (name == null) {
+                // not a variable, the characters after the '$' are scanned again as they may start one
+                literal.append('$');
+                index = dollar + 1;
+                continue;
+            }
+            literals.add(literal.toString());
+            literal.setLength(0);
+            names.add(name);
+            tokens.add(text.substring(dollar, end));
+            index = end;
+        }
+        literals.add(literal.toString());
+        return new MacroTemplate(literals.toArray(new String[0]), names.toArray(new String[0]),
+                tokens.toArray(new String[0]));
+    }
+
+    /**
+     * Replace the variables with their values.
+     *
+     * @param resolver the variable resolver
+     * @return the text with the resolved variables replaced, and the others kept as is
+     */
+    public String render(VariableResolver<String> resolver) {
+        if (names.length == 0) {
+            return literals[0];
+        }
+        String[] values = new String[names.length];
+        int length = literalLength;
+        for (int i = 0; i < names.length; ++i) {
+            String value = resolver.resolve(names[i]);
+            values[i] = value == null ? tokens[i] : value;
+            length += values[i].length();
+        }
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < names.length; ++i) {
+            sb.append(literals[i]).append(values[i]);
+        }
+        return sb.append(literals[names.length]).toString();
+    }
+
+    /**
+     * Get the number of characters held by the template.
+     */
+    public int weight() {
+        int weight = literalLength;
+        for (int i = 0; i < names.length; ++i) {
+            weight += names[i].length() + tokens[i].length();
+        }
+        return weight;
+    }
+
+    /**
+     * Get the number of variables in the template.
+     */
+    public int getVariableCount() {
+        return names.length;
+    }
+
+    /**
+     * Get the names of the variables referenced by the template, in the order of their first occurrence.
+     */
+    public Set<String> getVariableNames() {
+        return new LinkedHashSet<>(Arrays.asList(names));
+    }
+
+    static boolean isNameChar(int c) {
+        return c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '_';
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of the {@link MacroTemplate}s compiled from the configuration files, keyed by the SHA-256 digest of
+ * the file contents, so that the same files deployed by every build are only scanned for variables once in the JVM.
+ * <p>
+ * Only the files of at most {@link #MAX_TEMPLATE_BYTES} bytes are compiled, the larger ones are substituted while they
+ * are streamed with {@link MacroSubstitutingReader} instead of being held in memory. The cached templates hold at
+ * most {@link #MAX_CACHED_CHARS} characters in total, and each is evicted after
+ * {@link #EXPIRE_AFTER_ACCESS_MINUTES} minutes without access.
+ */
+public final class MacroTemplateCache {
+    static final int MAX_TEMPLATE_BYTES =
+            Integer.getInteger(MacroTemplateCache.class.getName() + ".maxTemplateBytes", 1024 * 1024);
+    static final long MAX_CACHED_CHARS =
+            Long.getLong(MacroTemplateCache.class.getName() + ".maxCachedChars", 16L * 1024 * 1024);
+    static final long EXPIRE_AFTER_ACCESS_MINUTES =
+            Long.getLong(MacroTemplateCache.class.getName() + ".expireAfterAccessMinutes", 30);
+
+    private static final MacroTemplateCache INSTANCE = new MacroTemplateCache(
+            MAX_TEMPLATE_BYTES, MAX_CACHED_CHARS, TimeUnit.MINUTES.toMillis(EXPIRE_AFTER_ACCESS_MINUTES));
+
+    private final int maxTemplateBytes;
+    private final Cache<String, MacroTemplate> cache;
+
+    MacroTemplateCache(int maxTemplateBytes, long maxCachedChars, long expireAfterAccessMillis) {
+        this.maxTemplateBytes = maxTemplateBytes;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxCachedChars)
+                .weigher(new Weigher<String, MacroTemplate>() {
+                    @Override
+                    public int weigh(String key, MacroTemplate value) {
+                        return key.length() + value.weight();
+                    }
+                })
+                .expireAfterAccess(expireAfterAccessMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public static MacroTemplateCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the size limit of the files to be compiled, larger files should be streamed.
+     */
+    public int getMaxTemplateBytes() {
+        return maxTemplateBytes;
+    }
+
+    /**
+     * Get the template compiled from the file contents.
+     *
+     * @param content the raw file contents, used for the cache key
+     * @param charset the charset of the contents
+     * @return the cached template, or the one compiled from the contents if not cached
+     */
+    public MacroTemplate getTemplate(byte[] content, Charset charset) {
+        return getTemplate(DigestUtils.sha256Hex(content), content, charset);
+    }
+
+    /**
+     * Get the template compiled from the file contents, whose digest is already known to the caller.
+     *
+     * @param digest  the hex encoded SHA-256 digest of the contents
+     * @param content the raw file contents
+     * @param charset the charset of the contents
+     * @return the cached template, or the one compiled from the contents if not cached
+     */
+    public MacroTemplate getTemplate(String digest, byte[] content, Charset charset) {
+        String key = digest + '\n' + charset.name();
+        MacroTemplate template = cache.getIfPresent(key);
+        if (template == null) {
+            // two threads may compile the same contents, the results are the same
+            template = MacroTemplate.compile(new String(content, charset));
+            cache.put(key, template);
+        }
+        return template;
+    }
+
+    long size() {
+        return cache.size();
+    }
+}
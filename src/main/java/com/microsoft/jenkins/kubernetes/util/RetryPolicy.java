@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes.util;
+
+import io.fabric8.kubernetes.api.model.Status;
+import io.fabric8.kubernetes.api.model.StatusDetails;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+
+import java.io.Serializable;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retry policy for the requests to the API server that fail with a transient error: HTTP 409 Conflict, 429 Too Many
+ * Requests, or a 500, 502, 503 or 504 server error.
+ * <p>
+ * The n-th retry waits for a random time between zero and {@code min(maxDelay, baseDelay * 2^(n-1))} (exponential
+ * backoff with full jitter), and at least for the {@code retryAfterSeconds} returned by the API server, if any.
+ * The delays can be changed with the system properties {@link #BASE_DELAY_MILLIS} and {@link #MAX_DELAY_MILLIS}.
+ */
+public final class RetryPolicy implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The retries are opt-in, so the resources are not applied again unless a number of retries is configured.
+     */
+    public static final int DEFAULT_MAX_RETRIES = 0;
+
+    static final long BASE_DELAY_MILLIS = Long.getLong(RetryPolicy.class.getName() + ".baseDelayMillis", 500);
+    static final long MAX_DELAY_MILLIS = Long.getLong(RetryPolicy.class.getName() + ".maxDelayMillis", 30000);
+
+    private static final int HTTP_CONFLICT = 409;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int HTTP_SERVER_ERROR = 500;
+    private static final int HTTP_BAD_GATEWAY = 502;
+    private static final int HTTP_UNAVAILABLE = 503;
+    private static final int HTTP_GATEWAY_TIMEOUT = 504;
+
+    /**
+     * The policy that never retries.
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(0, 0, 0);
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy(int maxRetries) {
+        this(maxRetries, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS);
+    }
+
+    public RetryPolicy(int maxRetries, long baseDelayMillis, long maxDelayMillis) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Check whether the failed request should be retried.
+     *
+     * @param retry the number of the retry, starting from 1
+     * @param error the failure of the previous attempt
+     * @return whether the request may be sent again
+     */
+    public boolean shouldRetry(int retry, Throwable error) {
+        return retry <= maxRetries && isTransient(error);
+    }
+
+    /**
+     * Compute the time to wait before the given retry.
+     *
+     * @param retry the number of the retry, starting from 1
+     * @param error the failure of the previous attempt
+     * @return the delay in milliseconds
+     */
+    public long getDelayMillis(int retry, Throwable error) {
+        return getDelayMillis(retry, error, ThreadLocalRandom.current());
+    }
+
+    long getDelayMillis(int retry, Throwable error, Random random) {
+        long cap = baseDelayMillis;
+        for (int i = 1; i < retry && cap < maxDelayMillis; ++i) {
+            cap *= 2;
+        }
+        cap = Math.min(cap, maxDelayMillis);
+        long delay = cap <= 0 ? 0 : (long) (random.nextDouble() * cap);
+        return Math.max(delay, getRetryAfterMillis(error));
+    }
+
+    /**
+     * Check whether the error is a transient failure of the API server.
+     */
+    public static boolean isTransient(Throwable error) {
+        if (!(error instanceof KubernetesClientException)) {
+            return false;
+        }
+        switch (((KubernetesClientException) error).getCode()) {
+            case HTTP_CONFLICT:
+            case HTTP_TOO_MANY_REQUESTS:
+            case HTTP_SERVER_ERROR:
+            case HTTP_BAD_GATEWAY:
+            case HTTP_UNAVAILABLE:
+            case HTTP_GATEWAY_TIMEOUT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Get the delay the API server asked for in the {@code retryAfterSeconds} of the returned status, which it sends
+     * along with the {@code Retry-After} header, e.g., when the request is throttled by API Priority and Fairness.
+     *
+     * @return the delay in milliseconds, or 0 if the API server did not ask for one
+     */
+    static long getRetryAfterMillis(Throwable error) {
+        if (!(error instanceof KubernetesClientException)) {
+            return 0;
+        }
+        Status status = ((KubernetesClientException) error).getStatus();
+        if (status == null) {
+            return 0;
+        }
+        StatusDetails details = status.getDetails();
+        if (details == null || details.getRetryAfterSeconds() == null) {
+            return 0;
+        }
+        return TimeUnit.SECONDS.toMillis(Math.max(0, details.getRetryAfterSeconds()));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reader that splits a YAML stream into its documents, one at a time, so that a stream of many documents can be
+ * processed without holding more than one document in memory.
+ * <p>
+ * A document ends at a document start marker ({@code ---}) or a document end marker ({@code ...}) at the beginning
+ * of a line. YAML does not allow these markers in the document contents, so the stream is split without being
+ * parsed. The documents that contain nothing but blank lines and comments are skipped.
+ */
+public final class YamlDocumentReader implements Closeable {
+    private static final String DOCUMENT_START = "---";
+    private static final String DOCUMENT_END = "...";
+
+    private final BufferedReader reader;
+    /**
+     * The start marker of the next document, read ahead when the previous document ended.
+     */
+    private String pendingLine;
+
+    public YamlDocumentReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /**
+     * Read the next document.
+     *
+     * @return the text of the next document, or {@code null} if there are no more documents
+     * @throws IOException if the stream cannot be read
+     */
+    public String next() throws IOException {
+        StringBuilder document = new StringBuilder();
+        boolean hasContent = false;
+        while (true) {
+            String line = pendingLine;
+            if (line == null) {
+                line = reader.readLine();
+            } else {
+                pendingLine = null;
+            }
+            if (line == null) {
+                return hasContent ? document.toString() : null;
+            }
+            if (isMarker(line, DOCUMENT_START)) {
+                if (hasContent) {
+                    pendingLine = line;
+                    return document.toString();
+                }
+                document.setLength(0);
+                // the content may follow the marker on the same line, e.g., "--- |"
+                if (isContent(line.substring(DOCUMENT_START.length()))) {
+                    document.append(line).append('\n');
+                    hasContent = true;
+                }
+                continue;
+            }
+            if (isMarker(line, DOCUMENT_END)) {
+                if (hasContent) {
+                    return document.toString();
+                }
+                document.setLength(0);
+                continue;
+            }
+            document.append(line).append('\n');
+            hasContent = hasContent || isContent(line);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static boolean isMarker(String line, String marker) {
+        if (!line.startsWith(marker)) {
+            return false;
+        }
+        if (line.length() == marker.length()) {
+            return true;
+        }
+        char next = line.charAt(marker.length());
+        return next == ' ' || next == '\t';
+    }
+
+    private static boolean isContent(String line) {
+        String trimmed = line.trim();
+        return !trimmed.isEmpty() && !trimmed.startsWith("#");
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.google.common.base.Ticker;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ApiServerCircuitBreaker}.
+ */
+public class ApiServerCircuitBreakerTest {
+    private static final String SERVER = "https://example.com";
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final FakeTicker ticker = new FakeTicker();
+    private ApiServerCircuitBreaker breaker;
+    private Interceptor interceptor;
+
+    @Before
+    public void setUp() {
+        breaker = new ApiServerCircuitBreaker(10, 4, 50, 5 * SECOND, 80, 30 * SECOND, ticker);
+        interceptor = breaker.interceptor(SERVER);
+    }
+
+    private static Request request(String path) {
+        return new Request.Builder().url(SERVER + path).build();
+    }
+
+    private static Response response(Request request, int code) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("status " + code)
+                .build();
+    }
+
+    private Interceptor.Chain chain(int code) throws IOException {
+        Request request = request("/api/v1/namespaces/default/configmaps/a");
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(any(Request.class))).thenReturn(response(request, code));
+        return chain;
+    }
+
+    private Interceptor.Chain failingChain() throws IOException {
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(request("/api/v1/namespaces/default/configmaps/a"));
+        when(chain.proceed(any(Request.class))).thenThrow(new ConnectException("refused"));
+        return chain;
+    }
+
+    private void openCircuit() throws IOException {
+        for (int i = 0; i < 4; ++i) {
+            try {
+                interceptor.intercept(failingChain());
+                fail();
+            } catch (ConnectException e) {
+                // expected
+            }
+        }
+        assertEquals(ApiServerCircuitBreaker.State.OPEN, breaker.getState(SERVER));
+    }
+
+    @Test
+    public void testOpensOnFailureRate() throws Exception {
+        interceptor.intercept(chain(200));
+        interceptor.intercept(chain(500));
+        interceptor.intercept(chain(200));
+        assertEquals(ApiServerCircuitBreaker.State.CLOSED, breaker.getState(SERVER));
+        interceptor.intercept(chain(503));
+        assertEquals(ApiServerCircuitBreaker.State.OPEN, breaker.getState(SERVER));
+
+        Interceptor.Chain rejected = chain(200);
+        try {
+            interceptor.intercept(rejected);
+            fail();
+        } catch (ApiServerCircuitBreaker.CircuitOpenException e) {
+            verify(rejected, never()).proceed(any(Request.class));
+        }
+        try {
+            breaker.checkAvailable(SERVER + "/");
+            fail();
+        } catch (ApiServerCircuitBreaker.CircuitOpenException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testOpensOnSlowCalls() throws Exception {
+        Request request = request("/api/v1/namespaces/default/configmaps/a");
+        final Response slow = response(request, 200);
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(any(Request.class))).thenAnswer(new Answer<Response>() {
+            @Override
+            public Response answer(InvocationOnMock invocation) {
+                ticker.advance(6 * SECOND);
+                return slow;
+            }
+        });
+        for (int i = 0; i < 4; ++i) {
+            interceptor.intercept(chain);
+        }
+        assertEquals(ApiServerCircuitBreaker.State.OPEN, breaker.getState(SERVER));
+    }
+
+    @Test
+    public void testWatchIsNotSlow() throws Exception {
+        Request request = request("/api/v1/namespaces/default/configmaps?watch=true");
+        final Response watch = response(request, 200);
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(any(Request.class))).thenAnswer(new Answer<Response>() {
+            @Override
+            public Response answer(InvocationOnMock invocation) {
+                ticker.advance(60 * SECOND);
+                return watch;
+            }
+        });
+        for (int i = 0; i < 4; ++i) {
+            interceptor.intercept(chain);
+        }
+        assertEquals(ApiServerCircuitBreaker.State.CLOSED, breaker.getState(SERVER));
+    }
+
+    @Test
+    public void testProbeCloses() throws Exception {
+        openCircuit();
+        ticker.advance(31 * SECOND);
+        breaker.checkAvailable(SERVER);
+
+        // /readyz is missing on the old API servers, /healthz is used instead
+        Request request = request("/api/v1/namespaces/default/configmaps/a");
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(any(Request.class))).thenAnswer(new Answer<Response>() {
+            @Override
+            public Response answer(InvocationOnMock invocation) {
+                Request sent = invocation.getArgument(0);
+                return response(sent, sent.url().encodedPath().equals("/readyz") ? 404 : 200);
+            }
+        });
+        assertEquals(200, interceptor.intercept(chain).code());
+        assertEquals(ApiServerCircuitBreaker.State.CLOSED, breaker.getState(SERVER));
+    }
+
+    @Test
+    public void testProbeFailureReopens() throws Exception {
+        openCircuit();
+        ticker.advance(31 * SECOND);
+        try {
+            interceptor.intercept(chain(503));
+            fail();
+        } catch (ApiServerCircuitBreaker.CircuitOpenException e) {
+            // expected
+        }
+        assertEquals(ApiServerCircuitBreaker.State.OPEN, breaker.getState(SERVER));
+    }
+
+    private static final class FakeTicker extends Ticker {
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long delta) {
+            nanos += delta;
+        }
+    }
+}
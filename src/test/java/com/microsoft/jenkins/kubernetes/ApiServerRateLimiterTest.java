@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link ApiServerRateLimiter}.
+ */
+public class ApiServerRateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBurstThenRate() {
+        ApiServerRateLimiter.TokenBucket bucket = new ApiServerRateLimiter.TokenBucket(2, 3, 0);
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(0, bucket.reserve(0));
+
+        // the waiting requests are served in order, one every 1/qps second
+        assertEquals(SECOND / 2, bucket.reserve(0));
+        assertEquals(SECOND, bucket.reserve(0));
+
+        // the reserved tokens are paid back before the bucket fills up again
+        assertEquals(SECOND / 2, bucket.reserve(SECOND));
+        assertEquals(0, bucket.reserve(10 * SECOND));
+    }
+
+    @Test
+    public void testLimitRate() {
+        ApiServerRateLimiter.TokenBucket bucket = new ApiServerRateLimiter.TokenBucket(1, 10, 0);
+        bucket.limitRate(1, 1);
+        // the rate is not raised by a later client
+        bucket.limitRate(100, 100);
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(SECOND, bucket.reserve(0));
+    }
+
+    @Test
+    public void testSharedBucket() {
+        ApiServerRateLimiter limiter = new ApiServerRateLimiter();
+        ApiServerRateLimiter.TokenBucket bucket = limiter.bucket("https://example.com", 1, 1);
+        assertSame(bucket, limiter.bucket("https://example.com", 2, 2));
+    }
+
+    @Test
+    public void testWaitAccount() throws Exception {
+        ApiServerRateLimiter limiter = new ApiServerRateLimiter();
+        ApiServerRateLimiter.WaitAccount account = new ApiServerRateLimiter.WaitAccount();
+        ApiServerRateLimiter.WaitAccount previous = account.attach();
+        try {
+            limiter.acquire("https://example.com", 10, 1);
+            limiter.acquire("https://example.com", 10, 1);
+        } finally {
+            ApiServerRateLimiter.WaitAccount.detach(previous);
+        }
+        // not recorded once detached
+        limiter.acquire("https://example.com", 10, 1);
+
+        assertEquals(2, account.getRequests());
+        assertEquals(1, account.getThrottledRequests());
+    }
+}
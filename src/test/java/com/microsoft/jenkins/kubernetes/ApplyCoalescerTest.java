@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ApplyCoalescer}.
+ */
+public class ApplyCoalescerTest {
+    private static final String KEY =
+            ApplyCoalescer.key("cluster", "ConfigMap", "default", "shared", "digest", "update");
+
+    @Test
+    public void testFollowersShareResult() throws Exception {
+        final ApplyCoalescer coalescer = new ApplyCoalescer();
+        ApplyCoalescer.Flight leader = coalescer.join(KEY);
+        assertTrue(leader.isLeader());
+
+        final ApplyCoalescer.Flight follower = coalescer.join(KEY);
+        assertFalse(follower.isLeader());
+        assertEquals(1, coalescer.getCoalesced());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ConfigMap> shared = executor.submit(new Callable<ConfigMap>() {
+                @Override
+                public ConfigMap call() throws Exception {
+                    return follower.await();
+                }
+            });
+            ConfigMap original = new ConfigMapBuilder()
+                    .withNewMetadata().withName("shared").withResourceVersion("41").endMetadata()
+                    .build();
+            ConfigMap applied = new ConfigMapBuilder()
+                    .withNewMetadata().withName("shared").withResourceVersion("42").endMetadata()
+                    .build();
+            leader.complete(original, applied);
+
+            ConfigMap result = shared.get();
+            assertEquals("42", result.getMetadata().getResourceVersion());
+            assertNotSame(applied, result);
+            // the follower reports an update of the existing resource to its monitor, not a creation
+            ConfigMap followerOriginal = follower.getOriginal();
+            assertEquals("41", followerOriginal.getMetadata().getResourceVersion());
+            assertNotSame(original, followerOriginal);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // the flight has ended, the next apply leads a new one
+        assertEquals(0, coalescer.getInFlight());
+        assertTrue(coalescer.join(KEY).isLeader());
+    }
+
+    @Test
+    public void testFollowersShareCreation() throws Exception {
+        ApplyCoalescer coalescer = new ApplyCoalescer();
+        ApplyCoalescer.Flight leader = coalescer.join(KEY);
+        ApplyCoalescer.Flight follower = coalescer.join(KEY);
+        leader.complete(null, new ConfigMapBuilder().withNewMetadata().withName("shared").endMetadata().build());
+        assertEquals("shared", follower.<ConfigMap>await().getMetadata().getName());
+        assertNull(follower.<ConfigMap>getOriginal());
+    }
+
+    @Test
+    public void testLeaderFailure() throws Exception {
+        ApplyCoalescer coalescer = new ApplyCoalescer();
+        ApplyCoalescer.Flight leader = coalescer.join(KEY);
+        ApplyCoalescer.Flight follower = coalescer.join(KEY);
+        leader.fail();
+        assertNull(follower.<ConfigMap>await());
+        assertEquals(0, coalescer.getInFlight());
+    }
+
+    @Test
+    public void testDifferentDigests() {
+        ApplyCoalescer coalescer = new ApplyCoalescer();
+        assertTrue(coalescer.join(KEY).isLeader());
+        assertTrue(coalescer.join(
+                ApplyCoalescer.key("cluster", "ConfigMap", "default", "shared", "other", "update")).isLeader());
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ApplyLedger} and {@link ApplyLedgerSession}.
+ */
+public class ApplyLedgerTest {
+    private static final String ENDPOINT = "https://example.com/";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ApplyLedger ledger = new ApplyLedger(folder.getRoot(), TimeUnit.DAYS.toMillis(1), 100);
+        ApplyLedgerSession first = ledger.open("job");
+        assertNull(first.getEndpoint());
+
+        String key = ApplyLedgerSession.key("ConfigMap", "default", "cfg");
+        first.bind(ENDPOINT);
+        first.record(key, "digest", "42");
+        ledger.record(first);
+
+        ApplyLedgerSession second = ledger.open("job");
+        assertEquals(Collections.singleton(ENDPOINT), second.getEndpoints());
+        second.bind(ENDPOINT);
+        assertEquals(ENDPOINT, second.getEndpoint());
+        assertTrue(second.isCandidate(key, "digest"));
+        assertFalse(second.isCandidate(key, "changed"));
+
+        // not up to date until the live resource version is checked
+        assertFalse(second.isUpToDate(key, "digest"));
+        second.putLiveVersions("ConfigMap", "default", ImmutableMap.of("cfg", "42"));
+        assertTrue(second.isUpToDate(key, "digest"));
+        second.putLiveVersions("ConfigMap", "default", ImmutableMap.of("cfg", "43"));
+        assertFalse(second.isUpToDate(key, "digest"));
+
+        // the entries of other jobs are not loaded
+        assertFalse(ledger.open("other").isCandidate(key, "digest"));
+    }
+
+    @Test
+    public void testOtherCluster() throws Exception {
+        ApplyLedger ledger = new ApplyLedger(folder.getRoot(), TimeUnit.DAYS.toMillis(1), 100);
+        ApplyLedgerSession first = ledger.open("job");
+        String key = ApplyLedgerSession.key("ConfigMap", "default", "cfg");
+        first.bind(ENDPOINT);
+        first.record(key, "digest", "42");
+        ledger.record(first);
+
+        ApplyLedgerSession second = ledger.open("job");
+        second.bind("https://other.example.com/");
+        assertFalse(second.isCandidate(key, "digest"));
+    }
+
+    @Test
+    public void testMultipleClusters() throws Exception {
+        final String other = "https://other.example.com/";
+        ApplyLedger ledger = new ApplyLedger(folder.getRoot(), TimeUnit.DAYS.toMillis(1), 100);
+        String key = ApplyLedgerSession.key("ConfigMap", "default", "cfg");
+
+        ApplyLedgerSession first = ledger.open("job");
+        first.bind(ENDPOINT);
+        first.record(key, "digest", "42");
+        ledger.record(first);
+
+        ApplyLedgerSession second = ledger.open("job");
+        second.bind(other);
+        assertFalse(second.isCandidate(key, "digest"));
+        second.record(key, "digest-other", "7");
+        ledger.record(second);
+
+        // the deployment to one cluster does not overwrite the entries of the other
+        ApplyLedgerSession third = ledger.open("job");
+        assertEquals(ImmutableSet.of(ENDPOINT, other), third.getEndpoints());
+        third.bind(ENDPOINT);
+        assertTrue(third.isCandidate(key, "digest"));
+        assertFalse(third.isCandidate(key, "digest-other"));
+
+        ApplyLedgerSession fourth = ledger.open("job");
+        fourth.bind(other);
+        assertTrue(fourth.isCandidate(key, "digest-other"));
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        ApplyLedger ledger = new ApplyLedger(folder.getRoot(), TimeUnit.DAYS.toMillis(1), 2);
+        ApplyLedgerSession session = new ApplyLedgerSession("job",
+                Collections.<String, Map<String, ApplyLedger.Entry>>emptyMap());
+        session.bind(ENDPOINT);
+        for (int i = 0; i < 3; ++i) {
+            session.record(ApplyLedgerSession.key("ConfigMap", "default", "cfg" + i), "digest", "1");
+            Thread.sleep(2);
+        }
+        ledger.record(session);
+
+        ApplyLedgerSession loaded = ledger.open("job");
+        assertFalse(loaded.isCandidate(ApplyLedgerSession.key("ConfigMap", "default", "cfg0"), "digest"));
+        assertTrue(loaded.isCandidate(ApplyLedgerSession.key("ConfigMap", "default", "cfg1"), "digest"));
+        assertTrue(loaded.isCandidate(ApplyLedgerSession.key("ConfigMap", "default", "cfg2"), "digest"));
+
+        ApplyLedger expiring = new ApplyLedger(folder.getRoot(), -1, 2);
+        ApplyLedgerSession next = expiring.open("job");
+        next.bind(ENDPOINT);
+        next.keep(ApplyLedgerSession.key("ConfigMap", "default", "cfg1"));
+        expiring.record(next);
+        assertTrue(expiring.open("job").getEndpoints().isEmpty());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.Namespace;
+import io.fabric8.kubernetes.api.model.NamespaceBuilder;
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.api.model.SecretBuilder;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import io.fabric8.kubernetes.api.model.apps.Deployment;
+import io.fabric8.kubernetes.api.model.apps.DeploymentBuilder;
+import io.fabric8.kubernetes.api.model.extensions.Ingress;
+import io.fabric8.kubernetes.api.model.extensions.IngressBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ApplyPlanner}.
+ */
+public class ApplyPlannerTest {
+    @Test
+    public void testKindOrdering() {
+        Ingress ingress = new IngressBuilder().withNewMetadata().withName("ing").withNamespace("app").endMetadata()
+                .build();
+        Deployment deployment = new DeploymentBuilder().withNewMetadata().withName("web").withNamespace("app")
+                .endMetadata().build();
+        Service service = new ServiceBuilder().withNewMetadata().withName("web").withNamespace("app").endMetadata()
+                .build();
+        ConfigMap configMap = new ConfigMapBuilder().withNewMetadata().withName("cfg").withNamespace("app")
+                .endMetadata().build();
+        Namespace namespace = new NamespaceBuilder().withNewMetadata().withName("app").endMetadata().build();
+
+        List<List<HasMetadata>> levels = ApplyPlanner.plan(
+                list(ingress, deployment, service, configMap, namespace));
+        assertEquals(5, levels.size());
+        assertEquals(list(namespace), levels.get(0));
+        assertEquals(list(configMap), levels.get(1));
+        assertEquals(list(service), levels.get(2));
+        assertEquals(list(deployment), levels.get(3));
+        assertEquals(list(ingress), levels.get(4));
+    }
+
+    @Test
+    public void testIndependentResourcesShareLevel() {
+        ConfigMap a = new ConfigMapBuilder().withNewMetadata().withName("a").withNamespace("one").endMetadata()
+                .build();
+        ConfigMap b = new ConfigMapBuilder().withNewMetadata().withName("b").withNamespace("two").endMetadata()
+                .build();
+        Deployment deployment = new DeploymentBuilder().withNewMetadata().withName("web").withNamespace("two")
+                .endMetadata().build();
+
+        List<List<HasMetadata>> levels = ApplyPlanner.plan(list(a, deployment, b));
+        assertEquals(2, levels.size());
+        // loading order is kept within the level
+        assertEquals(list(a, b), levels.get(0));
+        assertEquals(list(deployment), levels.get(1));
+    }
+
+    @Test
+    public void testReferenceDependencies() {
+        Deployment deployment = new DeploymentBuilder()
+                .withNewMetadata().withName("web").endMetadata()
+                .withNewSpec()
+                .withNewTemplate()
+                .withNewSpec()
+                .addNewVolume().withName("config").withNewConfigMap().withName("cfg").endConfigMap().endVolume()
+                .addNewContainer()
+                .withName("web")
+                .addNewEnvFrom().withNewSecretRef().withName("creds").endSecretRef().endEnvFrom()
+                .endContainer()
+                .endSpec()
+                .endTemplate()
+                .endSpec()
+                .build();
+        ConfigMap configMap = new ConfigMapBuilder().withNewMetadata().withName("cfg").endMetadata().build();
+        Secret secret = new SecretBuilder().withNewMetadata().withName("creds").endMetadata().build();
+
+        List<List<HasMetadata>> levels = ApplyPlanner.plan(list(deployment, configMap, secret));
+        assertEquals(2, levels.size());
+        assertEquals(list(configMap, secret), levels.get(0));
+        assertEquals(list(deployment), levels.get(1));
+    }
+
+    @Test
+    public void testEmpty() {
+        assertTrue(ApplyPlanner.plan(new ArrayList<HasMetadata>()).isEmpty());
+    }
+
+    private static List<HasMetadata> list(HasMetadata... resources) {
+        return new ArrayList<>(Arrays.asList(resources));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import io.fabric8.kubernetes.client.Config;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Tests for {@link ConfigCache}.
+ */
+public class ConfigCacheTest {
+    private static String kubeconfig(String token) {
+        return "apiVersion: v1\n"
+                + "kind: Config\n"
+                + "clusters:\n"
+                + "- name: c\n"
+                + "  cluster:\n"
+                + "    server: https://k8s.example.com\n"
+                + "users:\n"
+                + "- name: u\n"
+                + "  user:\n"
+                + "    token: " + token + "\n"
+                + "contexts:\n"
+                + "- name: c\n"
+                + "  context:\n"
+                + "    cluster: c\n"
+                + "    user: u\n"
+                + "current-context: c\n";
+    }
+
+    @Test
+    public void testCopies() {
+        ConfigCache cache = new ConfigCache(2, TimeUnit.MINUTES.toMillis(1));
+        Config a = cache.fromKubeconfig(kubeconfig("token-a"));
+        Config a2 = cache.fromKubeconfig(kubeconfig("token-a"));
+        assertNotSame(a, a2);
+        assertEquals("token-a", a2.getOauthToken());
+        assertEquals(1, cache.size());
+
+        // changes by the caller do not leak into the cache
+        a.setOauthToken("changed");
+        assertEquals("token-a", cache.fromKubeconfig(kubeconfig("token-a")).getOauthToken());
+    }
+
+    @Test
+    public void testEvictionKeepsCopies() {
+        ConfigCache cache = new ConfigCache(1, TimeUnit.MINUTES.toMillis(1));
+        Config a = cache.fromKubeconfig(kubeconfig("token-a"));
+        cache.fromKubeconfig(kubeconfig("token-b"));
+        assertEquals(1, cache.size());
+
+        cache.invalidateAll();
+        assertEquals("token-a", a.getOauthToken());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.api.model.SecretBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link ContentDigest}.
+ */
+public class ContentDigestTest {
+    @Test
+    public void testStableDigest() {
+        ConfigMap a = new ConfigMapBuilder()
+                .withNewMetadata().withName("cfg").addToLabels("a", "1").addToLabels("b", "2").endMetadata()
+                .addToData("x", "1")
+                .addToData("y", "2")
+                .build();
+        ConfigMap b = new ConfigMapBuilder()
+                .withNewMetadata().withName("cfg").addToLabels("b", "2").addToLabels("a", "1").endMetadata()
+                .addToData("y", "2")
+                .addToData("x", "1")
+                .build();
+        assertEquals(ContentDigest.of(a), ContentDigest.of(b));
+
+        b.getData().put("x", "changed");
+        assertNotEquals(ContentDigest.of(a), ContentDigest.of(b));
+    }
+
+    @Test
+    public void testStampExcludedFromDigest() {
+        ConfigMap configMap = new ConfigMapBuilder()
+                .withNewMetadata().withName("cfg").endMetadata()
+                .addToData("x", "1")
+                .build();
+        assertNull(ContentDigest.get(configMap));
+
+        String digest = ContentDigest.of(configMap);
+        ContentDigest.stamp(configMap, digest);
+        assertEquals(digest, ContentDigest.get(configMap));
+        assertEquals(digest, ContentDigest.of(configMap));
+    }
+
+    @Test
+    public void testServerFieldsExcludedFromDigest() {
+        ConfigMap desired = new ConfigMapBuilder()
+                .withNewMetadata().withName("cfg").endMetadata()
+                .addToData("x", "1")
+                .build();
+        ConfigMap live = new ConfigMapBuilder()
+                .withNewMetadata().withName("cfg").withResourceVersion("42").withUid("uid").endMetadata()
+                .addToData("x", "1")
+                .build();
+        assertEquals(ContentDigest.of(desired), ContentDigest.of(live));
+    }
+
+    @Test
+    public void testSecretDataExcludedFromStamp() {
+        Secret a = new SecretBuilder()
+                .withNewMetadata().withName("creds").endMetadata()
+                .addToStringData("password", "secret")
+                .build();
+        Secret b = new SecretBuilder()
+                .withNewMetadata().withName("creds").endMetadata()
+                .addToStringData("password", "changed")
+                .build();
+        assertEquals(ContentDigest.of(a), ContentDigest.of(b));
+        assertNotEquals(ContentDigest.ofContent(a), ContentDigest.ofContent(b));
+
+        b.getMetadata().setName("other");
+        assertNotEquals(ContentDigest.of(a), ContentDigest.of(b));
+    }
+}
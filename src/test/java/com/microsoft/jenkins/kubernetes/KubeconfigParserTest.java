@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link KubeconfigParser}.
+ */
+public class KubeconfigParserTest {
+    private static final String IMPERSONATE_USERNAME_PROPERTY = "kubernetes.impersonate.username";
+
+    @Test
+    public void testParse() throws Exception {
+        String kubeconfig;
+        try (InputStream in = getClass().getResourceAsStream("kubeconfig.yml")) {
+            kubeconfig = IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+        Config config = KubeconfigParser.parse(kubeconfig);
+        assertEquals("https://example.com/", config.getMasterUrl());
+        assertEquals("test-certificate-authority-data", config.getCaCertData());
+        assertEquals("test-client-certificate-data", config.getClientCertData());
+        assertEquals("test-client-key-data", config.getClientKeyData());
+        assertFalse(config.isTrustCerts());
+        assertNull(config.getOauthToken());
+        assertNull(config.getNamespace());
+        assertNull(System.getProperty(Config.KUBERNETES_AUTH_TRYKUBECONFIG_SYSTEM_PROPERTY));
+    }
+
+    @Test
+    public void testCurrentContext() {
+        String kubeconfig = "apiVersion: v1\n"
+                + "kind: Config\n"
+                + "clusters:\n"
+                + "- name: a\n"
+                + "  cluster:\n"
+                + "    server: https://a.example.com\n"
+                + "- name: b\n"
+                + "  cluster:\n"
+                + "    server: https://b.example.com\n"
+                + "    insecure-skip-tls-verify: true\n"
+                + "users:\n"
+                + "- name: a\n"
+                + "  user:\n"
+                + "    token: token-a\n"
+                + "- name: b\n"
+                + "  user:\n"
+                + "    auth-provider:\n"
+                + "      name: oidc\n"
+                + "      config:\n"
+                + "        id-token: token-b\n"
+                + "contexts:\n"
+                + "- name: a\n"
+                + "  context:\n"
+                + "    cluster: a\n"
+                + "    user: a\n"
+                + "- name: b\n"
+                + "  context:\n"
+                + "    cluster: b\n"
+                + "    user: b\n"
+                + "    namespace: ns-b\n"
+                + "current-context: b\n";
+        Config config = KubeconfigParser.parse(kubeconfig);
+        assertEquals("https://b.example.com/", config.getMasterUrl());
+        assertTrue(config.isTrustCerts());
+        assertEquals("token-b", config.getOauthToken());
+        assertEquals("ns-b", config.getNamespace());
+    }
+
+    @Test
+    public void testNothingInheritedFromEnvironment() {
+        String[] properties = {
+                Config.KUBERNETES_MASTER_SYSTEM_PROPERTY,
+                Config.KUBERNETES_OAUTH_TOKEN_SYSTEM_PROPERTY,
+                Config.KUBERNETES_NAMESPACE_SYSTEM_PROPERTY,
+                Config.KUBERNETES_TRUST_CERT_SYSTEM_PROPERTY,
+                IMPERSONATE_USERNAME_PROPERTY
+        };
+        String[] originals = new String[properties.length];
+        for (int i = 0; i < properties.length; ++i) {
+            originals[i] = System.getProperty(properties[i]);
+        }
+        try {
+            System.setProperty(Config.KUBERNETES_MASTER_SYSTEM_PROPERTY, "https://leaked.example.com");
+            System.setProperty(Config.KUBERNETES_OAUTH_TOKEN_SYSTEM_PROPERTY, "leaked-token");
+            System.setProperty(Config.KUBERNETES_NAMESPACE_SYSTEM_PROPERTY, "leaked");
+            System.setProperty(Config.KUBERNETES_TRUST_CERT_SYSTEM_PROPERTY, "true");
+            System.setProperty(IMPERSONATE_USERNAME_PROPERTY, "leaked-user");
+
+            Config defaults = KubeconfigParser.newDefaults();
+            assertEquals("https://kubernetes.default.svc/", new ConfigBuilder(defaults).build().getMasterUrl());
+            assertNull(defaults.getOauthToken());
+            assertNull(defaults.getNamespace());
+            assertFalse(defaults.isTrustCerts());
+            assertNull(defaults.getImpersonateUsername());
+
+            Config config = KubeconfigParser.parse("apiVersion: v1\n"
+                    + "kind: Config\n"
+                    + "clusters:\n"
+                    + "- name: a\n"
+                    + "  cluster:\n"
+                    + "    server: https://a.example.com\n"
+                    + "contexts:\n"
+                    + "- name: a\n"
+                    + "  context:\n"
+                    + "    cluster: a\n"
+                    + "current-context: a\n");
+            assertEquals("https://a.example.com/", config.getMasterUrl());
+            assertNull(config.getOauthToken());
+            assertNull(config.getNamespace());
+            assertFalse(config.isTrustCerts());
+            assertNull(config.getImpersonateUsername());
+
+            config = KubeconfigParser.parse("apiVersion: v1\nkind: Config\n");
+            assertEquals("https://kubernetes.default.svc/", config.getMasterUrl());
+            assertNull(config.getOauthToken());
+        } finally {
+            for (int i = 0; i < properties.length; ++i) {
+                if (originals[i] == null) {
+                    System.clearProperty(properties[i]);
+                } else {
+                    System.setProperty(properties[i], originals[i]);
+                }
+            }
+        }
+    }
+}
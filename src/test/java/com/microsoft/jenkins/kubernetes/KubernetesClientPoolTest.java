@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link KubernetesClientPool}.
+ */
+public class KubernetesClientPoolTest {
+    private static Config config(String token) {
+        return new ConfigBuilder().withMasterUrl("https://k8s.example.com").withOauthToken(token).build();
+    }
+
+    @Test
+    public void testReuse() {
+        KubernetesClientPool pool = new KubernetesClientPool(0);
+        KubernetesClientPool.Lease a = pool.acquire(config("token-a"));
+        KubernetesClientPool.Lease a2 = pool.acquire(config("token-a"));
+        KubernetesClientPool.Lease b = pool.acquire(config("token-b"));
+        try {
+            assertSame(a.getClient(), a2.getClient());
+            assertNotSame(a.getClient(), b.getClient());
+
+            KubernetesClientPool.Stats stats = pool.getStats();
+            assertEquals(1, stats.getHits());
+            assertEquals(2, stats.getMisses());
+            assertEquals(2, stats.getLiveClients());
+            assertEquals(2, stats.getLeasedClients());
+        } finally {
+            a.close();
+            a2.close();
+            b.close();
+            pool.evictIdle();
+        }
+    }
+
+    @Test
+    public void testEvictIdle() {
+        KubernetesClientPool pool = new KubernetesClientPool(0);
+        KubernetesClientPool.Lease a = pool.acquire(config("token-a"));
+        KubernetesClientPool.Lease a2 = pool.acquire(config("token-a"));
+
+        a.close();
+        // closing the same lease again does not release the client held by the other lease
+        a.close();
+        pool.evictIdle();
+        assertEquals(1, pool.getStats().getLiveClients());
+
+        a2.close();
+        pool.evictIdle();
+        KubernetesClientPool.Stats stats = pool.getStats();
+        assertEquals(0, stats.getLiveClients());
+        assertEquals(1, stats.getEvictions());
+    }
+}
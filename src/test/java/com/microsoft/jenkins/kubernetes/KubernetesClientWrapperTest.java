@@ -8,14 +8,20 @@ package com.microsoft.jenkins.kubernetes;
 
 import com.microsoft.jenkins.kubernetes.util.Constants;
 import hudson.EnvVars;
+import hudson.FilePath;
 import io.fabric8.kubernetes.client.Config;
 import org.apache.commons.io.IOUtils;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -48,6 +54,62 @@ public class KubernetesClientWrapperTest {
         assertTrue(KubernetesClientWrapper.prepareSecretName(null, new String(new char[lengthLimit + 1]).replace('\0', 'a'), new EnvVars()).length() <= Constants.KUBERNETES_NAME_LENGTH_LIMIT);
     }
 
+    @Test
+    public void testKubeconfigContentAndFile() throws Exception {
+        String kubeconfig;
+        try (InputStream in = getClass().getResourceAsStream("kubeconfig.yml")) {
+            kubeconfig = IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+        File file = File.createTempFile("kubeconfig", ".yml");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(kubeconfig.getBytes(StandardCharsets.UTF_8));
+            }
+            try (KubernetesClientWrapper fromContent = new KubernetesClientWrapper(kubeconfig);
+                 KubernetesClientWrapper fromFile = new KubernetesClientWrapper(file.getAbsolutePath())) {
+                Config config = fromContent.getClient().getConfiguration();
+                assertEquals("https://example.com/", config.getMasterUrl());
+                assertEquals("test-client-key-data", config.getClientKeyData());
+                // the same kubeconfig shares the pooled client
+                assertTrue(fromContent.getClient() == fromFile.getClient());
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testLoadErrorsReportedTogether() throws Exception {
+        String kubeconfig;
+        try (InputStream in = getClass().getResourceAsStream("kubeconfig.yml")) {
+            kubeconfig = IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+        File dir = Files.createTempDirectory("manifests").toFile();
+        try {
+            FilePath valid = new FilePath(new File(dir, "valid.yml"));
+            valid.write("apiVersion: v1\nkind: ConfigMap\nmetadata:\n  name: cfg\n", Constants.DEFAULT_CHARSET);
+            FilePath invalid1 = new FilePath(new File(dir, "invalid1.yml"));
+            invalid1.write("kind: [", Constants.DEFAULT_CHARSET);
+            FilePath invalid2 = new FilePath(new File(dir, "invalid2.yml"));
+            invalid2.write("kind: {", Constants.DEFAULT_CHARSET);
+
+            ByteArrayOutputStream log = new ByteArrayOutputStream();
+            try (KubernetesClientWrapper wrapper = new KubernetesClientWrapper(kubeconfig)) {
+                wrapper.withLogger(new PrintStream(log, true, Constants.DEFAULT_CHARSET));
+                wrapper.apply(new FilePath[]{invalid1, valid, invalid2});
+                fail();
+            } catch (IOException e) {
+                // both the files are reported before any resource is applied
+                assertEquals(Messages.KubernetesClientWrapper_failedToLoad(2, 3), e.getMessage());
+                assertEquals(2, e.getSuppressed().length);
+            }
+            String output = log.toString(Constants.DEFAULT_CHARSET);
+            assertTrue(output.indexOf("invalid1.yml: ") < output.indexOf("invalid2.yml: "));
+        } finally {
+            new FilePath(dir).deleteRecursive();
+        }
+    }
+
     private <T extends Exception> void assertException(Class<T> clazz, Runnable action) {
         try {
             action.run();
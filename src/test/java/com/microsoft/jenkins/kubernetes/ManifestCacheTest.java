@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.google.common.collect.ImmutableMap;
+import com.microsoft.jenkins.kubernetes.util.Constants;
+import hudson.util.VariableResolver;
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Tests for {@link ManifestCache}.
+ */
+public class ManifestCacheTest {
+    private static final String MANIFEST = "apiVersion: v1\n"
+            + "kind: ConfigMap\n"
+            + "metadata:\n"
+            + "  name: cfg\n"
+            + "data:\n"
+            + "  key: value\n";
+
+    private static final String TEMPLATE = "apiVersion: v1\n"
+            + "kind: ConfigMap\n"
+            + "metadata:\n"
+            + "  name: cfg-$NAME\n"
+            + "data:\n"
+            + "  key: value\n";
+
+    private static final String SECRET = "apiVersion: v1\n"
+            + "kind: Secret\n"
+            + "metadata:\n"
+            + "  name: creds\n"
+            + "stringData:\n"
+            + "  password: secret\n";
+
+    private static final int MAX_CACHED_BYTES = 1024 * 1024;
+
+    private KubernetesClient client;
+
+    @Before
+    public void setUp() {
+        client = new DefaultKubernetesClient(new ConfigBuilder().withMasterUrl("https://k8s.example.com").build());
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+    }
+
+    @Test
+    public void testCopies() throws Exception {
+        ManifestCache cache = new ManifestCache(MAX_CACHED_BYTES, MAX_CACHED_BYTES, TimeUnit.MINUTES.toMillis(1));
+        List<HasMetadata> a = load(cache, MANIFEST, ImmutableMap.of("NAME", "a"));
+        assertEquals("cfg", a.get(0).getMetadata().getName());
+
+        // changes by the caller do not leak into the cache
+        ((ConfigMap) a.get(0)).getData().put("key", "changed");
+        a.get(0).getMetadata().setName("changed");
+        List<HasMetadata> a2 = load(cache, MANIFEST, ImmutableMap.of("NAME", "b"));
+        assertNotSame(a.get(0), a2.get(0));
+        assertEquals("cfg", a2.get(0).getMetadata().getName());
+        assertEquals("value", ((ConfigMap) a2.get(0)).getData().get("key"));
+        // the values of the variables not referenced by the file are not part of the key
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testSubstitutedKeyedApart() throws Exception {
+        ManifestCache cache = new ManifestCache(MAX_CACHED_BYTES, MAX_CACHED_BYTES, TimeUnit.MINUTES.toMillis(1));
+        String manifest = MANIFEST.replace("value", "$$value");
+        assertEquals("$value", ((ConfigMap) load(cache, manifest, ImmutableMap.<String, String>of()).get(0))
+                .getData().get("key"));
+        assertEquals("$$value", ((ConfigMap) load(cache, manifest, null).get(0)).getData().get("key"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testKeyedByReferencedValues() throws Exception {
+        ManifestCache cache = new ManifestCache(MAX_CACHED_BYTES, MAX_CACHED_BYTES, TimeUnit.MINUTES.toMillis(1));
+        assertEquals("cfg-a", load(cache, TEMPLATE, ImmutableMap.of("NAME", "a")).get(0).getMetadata().getName());
+        assertEquals(1, cache.size());
+
+        // a hit as long as the referenced values stay the same
+        assertEquals("cfg-a", load(cache, TEMPLATE, ImmutableMap.of("NAME", "a", "UNUSED", "1"))
+                .get(0).getMetadata().getName());
+        assertEquals(1, cache.size());
+
+        // a miss once they change
+        assertEquals("cfg-b", load(cache, TEMPLATE, ImmutableMap.of("NAME", "b")).get(0).getMetadata().getName());
+        assertEquals(2, cache.size());
+        assertEquals("cfg-$NAME", load(cache, TEMPLATE, ImmutableMap.<String, String>of())
+                .get(0).getMetadata().getName());
+        assertEquals(3, cache.size());
+        assertEquals("cfg-$NAME", load(cache, TEMPLATE, null).get(0).getMetadata().getName());
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    public void testSecretsNotCached() throws Exception {
+        ManifestCache cache = new ManifestCache(MAX_CACHED_BYTES, MAX_CACHED_BYTES, TimeUnit.MINUTES.toMillis(1));
+        assertEquals("creds", load(cache, SECRET, null).get(0).getMetadata().getName());
+        assertEquals("creds", load(cache, MANIFEST + "---\n" + SECRET, null).get(1).getMetadata().getName());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLargeManifestNotCached() throws Exception {
+        ManifestCache cache = new ManifestCache(MANIFEST.length() - 1, MAX_CACHED_BYTES, TimeUnit.MINUTES.toMillis(1));
+        assertEquals("cfg", load(cache, MANIFEST, null).get(0).getMetadata().getName());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testWeightBound() throws Exception {
+        // the cached JSON is larger than the single byte allowed
+        ManifestCache cache = new ManifestCache(MANIFEST.length(), 1, TimeUnit.MINUTES.toMillis(1));
+        load(cache, MANIFEST, null);
+        assertEquals(0, cache.size());
+    }
+
+    private List<HasMetadata> load(ManifestCache cache, String manifest, Map<String, String> variables)
+            throws Exception {
+        return cache.load(new ByteArrayInputStream(manifest.getBytes(Constants.DEFAULT_CHARSET)),
+                variables == null ? null : new VariableResolver.ByMap<>(variables), client);
+    }
+}
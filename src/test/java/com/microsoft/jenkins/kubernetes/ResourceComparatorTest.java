@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import com.google.common.collect.ImmutableMap;
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.Namespace;
+import io.fabric8.kubernetes.api.model.NamespaceBuilder;
+import io.fabric8.kubernetes.api.model.Quantity;
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.api.model.SecretBuilder;
+import io.fabric8.kubernetes.api.model.apps.Deployment;
+import io.fabric8.kubernetes.api.model.apps.DeploymentBuilder;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ResourceComparator}.
+ */
+public class ResourceComparatorTest {
+    @Test
+    public void testServerPopulatedFieldsIgnored() {
+        ConfigMap desired = new ConfigMapBuilder()
+                .withNewMetadata().withName("cfg").addToLabels("app", "web").endMetadata()
+                .addToData("key", "value")
+                .build();
+        ConfigMap live = new ConfigMapBuilder()
+                .withNewMetadata()
+                .withName("cfg")
+                .withNamespace("default")
+                .withResourceVersion("12345")
+                .withUid("a3c0b6ea-0000-0000-0000-000000000000")
+                .addToLabels("app", "web")
+                .endMetadata()
+                .addToData("key", "value")
+                .build();
+        assertTrue(ResourceComparator.isUnchanged(live, desired));
+
+        desired.getData().put("key", "changed");
+        assertFalse(ResourceComparator.isUnchanged(live, desired));
+    }
+
+    @Test
+    public void testRemovedLabelDetected() {
+        ConfigMap desired = new ConfigMapBuilder().withNewMetadata().withName("cfg").endMetadata().build();
+        ConfigMap live = new ConfigMapBuilder()
+                .withNewMetadata().withName("cfg").addToLabels("app", "web").endMetadata()
+                .build();
+        assertFalse(ResourceComparator.isUnchanged(live, desired));
+    }
+
+    @Test
+    public void testRemovedDataKeyDetected() {
+        ConfigMap desired = new ConfigMapBuilder()
+                .withNewMetadata().withName("cfg").endMetadata()
+                .addToData("key", "value")
+                .build();
+        ConfigMap live = new ConfigMapBuilder()
+                .withNewMetadata().withName("cfg").endMetadata()
+                .addToData("key", "value")
+                .addToData("removed", "value")
+                .build();
+        assertFalse(ResourceComparator.isUnchanged(live, desired));
+
+        desired.setData(null);
+        assertFalse(ResourceComparator.isUnchanged(live, desired));
+    }
+
+    @Test
+    public void testRemovedSecretKeyDetected() {
+        Secret desired = new SecretBuilder()
+                .withNewMetadata().withName("creds").endMetadata()
+                .withStringData(ImmutableMap.of("password", "secret"))
+                .build();
+        Secret live = new SecretBuilder()
+                .withNewMetadata().withName("creds").endMetadata()
+                .withData(ImmutableMap.of("password", "c2VjcmV0", "token", "dG9rZW4="))
+                .build();
+        assertFalse(ResourceComparator.isUnchanged(live, desired));
+    }
+
+    @Test
+    public void testRemovedAnnotationDetected() {
+        ConfigMap desired = new ConfigMapBuilder()
+                .withNewMetadata().withName("cfg").addToAnnotations("a", "1").endMetadata()
+                .build();
+        ConfigMap live = new ConfigMapBuilder()
+                .withNewMetadata().withName("cfg").addToAnnotations("a", "1").addToAnnotations("b", "2").endMetadata()
+                .build();
+        assertFalse(ResourceComparator.isUnchanged(live, desired));
+
+        desired.getMetadata().setAnnotations(null);
+        assertFalse(ResourceComparator.isUnchanged(live, desired));
+
+        live.getMetadata().setAnnotations(null);
+        assertTrue(ResourceComparator.isUnchanged(live, desired));
+    }
+
+    @Test
+    public void testRemovedPodSpecKeysDetected() {
+        Deployment desired = new DeploymentBuilder()
+                .withNewMetadata().withName("web").endMetadata()
+                .withNewSpec()
+                .withNewTemplate()
+                .withNewSpec()
+                .addToNodeSelector("disk", "ssd")
+                .addNewContainer()
+                .withName("web")
+                .withNewResources().addToLimits("cpu", new Quantity("1")).endResources()
+                .endContainer()
+                .endSpec()
+                .endTemplate()
+                .endSpec()
+                .build();
+        Deployment live = new DeploymentBuilder()
+                .withNewMetadata().withName("web").endMetadata()
+                .withNewSpec()
+                .withNewTemplate()
+                .withNewSpec()
+                .addToNodeSelector("disk", "ssd")
+                .addNewContainer()
+                .withName("web")
+                .withNewResources()
+                .addToLimits("cpu", new Quantity("1"))
+                .addToRequests("cpu", new Quantity("1"))
+                .endResources()
+                .endContainer()
+                .endSpec()
+                .endTemplate()
+                .endSpec()
+                .build();
+        // the requests are defaulted to the limits by the server
+        assertTrue(ResourceComparator.isUnchanged(live, desired));
+
+        live.getSpec().getTemplate().getSpec().getNodeSelector().put("zone", "a");
+        assertFalse(ResourceComparator.isUnchanged(live, desired));
+        live.getSpec().getTemplate().getSpec().getNodeSelector().remove("zone");
+
+        live.getSpec().getTemplate().getSpec().getContainers().get(0).getResources().getLimits()
+                .put("memory", new Quantity("1Gi"));
+        assertFalse(ResourceComparator.isUnchanged(live, desired));
+    }
+
+    @Test
+    public void testManagedMetadataKeysIgnored() {
+        Deployment desired = new DeploymentBuilder()
+                .withNewMetadata().withName("web").addToLabels("app", "web").endMetadata()
+                .withNewSpec().withReplicas(2).endSpec()
+                .build();
+        Deployment live = new DeploymentBuilder()
+                .withNewMetadata()
+                .withName("web")
+                .addToLabels("app", "web")
+                .addToAnnotations("deployment.kubernetes.io/revision", "3")
+                .endMetadata()
+                .withNewSpec().withReplicas(2).endSpec()
+                .build();
+        assertTrue(ResourceComparator.isUnchanged(live, desired));
+
+        Namespace desiredNamespace = new NamespaceBuilder().withNewMetadata().withName("apps").endMetadata().build();
+        Namespace liveNamespace = new NamespaceBuilder()
+                .withNewMetadata().withName("apps").addToLabels("kubernetes.io/metadata.name", "apps").endMetadata()
+                .build();
+        assertTrue(ResourceComparator.isUnchanged(liveNamespace, desiredNamespace));
+
+        // the managed keys specified in the configuration are still compared
+        desired.getMetadata().setAnnotations(ImmutableMap.of("deployment.kubernetes.io/revision", "2"));
+        assertFalse(ResourceComparator.isUnchanged(live, desired));
+
+        // and the other keys only in the live resource are still reported
+        desired.getMetadata().setAnnotations(null);
+        live.getMetadata().getAnnotations().put("team", "web");
+        assertFalse(ResourceComparator.isUnchanged(live, desired));
+    }
+
+    @Test
+    public void testIsManagedKey() {
+        assertTrue(ResourceComparator.isManagedKey("deployment.kubernetes.io/revision"));
+        assertTrue(ResourceComparator.isManagedKey("kubernetes.io/metadata.name"));
+        assertTrue(ResourceComparator.isManagedKey("node.k8s.io/zone"));
+        assertFalse(ResourceComparator.isManagedKey("app"));
+        assertFalse(ResourceComparator.isManagedKey("example.com/kubernetes.io"));
+        assertFalse(ResourceComparator.isManagedKey("notkubernetes.io/key"));
+    }
+
+    @Test
+    public void testDefaultedFieldsIgnored() {
+        Deployment desired = new DeploymentBuilder()
+                .withNewMetadata().withName("web").endMetadata()
+                .withNewSpec()
+                .withReplicas(2)
+                .withNewTemplate()
+                .withNewSpec()
+                .addNewContainer().withName("web").withImage("nginx:1.15").endContainer()
+                .endSpec()
+                .endTemplate()
+                .endSpec()
+                .build();
+        Deployment live = new DeploymentBuilder()
+                .withNewMetadata().withName("web").withGeneration(3L).endMetadata()
+                .withNewSpec()
+                .withReplicas(2)
+                .withRevisionHistoryLimit(10)
+                .withNewTemplate()
+                .withNewSpec()
+                .withRestartPolicy("Always")
+                .addNewContainer()
+                .withName("web")
+                .withImage("nginx:1.15")
+                .withImagePullPolicy("IfNotPresent")
+                .endContainer()
+                .endSpec()
+                .endTemplate()
+                .endSpec()
+                .withNewStatus().withReplicas(2).endStatus()
+                .build();
+        assertTrue(ResourceComparator.isUnchanged(live, desired));
+
+        desired.getSpec().getTemplate().getSpec().getContainers().get(0).setImage("nginx:1.16");
+        assertFalse(ResourceComparator.isUnchanged(live, desired));
+    }
+
+    @Test
+    public void testSecretStringData() {
+        Secret desired = new SecretBuilder()
+                .withNewMetadata().withName("creds").endMetadata()
+                .withStringData(ImmutableMap.of("password", "secret"))
+                .build();
+        Secret live = new SecretBuilder()
+                .withNewMetadata().withName("creds").endMetadata()
+                .withData(ImmutableMap.of("password", "c2VjcmV0"))
+                .build();
+        assertTrue(ResourceComparator.isUnchanged(live, desired));
+    }
+
+    @Test
+    public void testSecretDataUnchanged() {
+        Secret desired = new SecretBuilder()
+                .withNewMetadata().withName("creds").addToLabels("app", "web").endMetadata()
+                .withStringData(ImmutableMap.of("password", "secret"))
+                .build();
+        Secret live = new SecretBuilder()
+                .withNewMetadata().withName("creds").endMetadata()
+                .addToData("password", "c2VjcmV0")
+                .build();
+        assertTrue(ResourceComparator.isSecretDataUnchanged(live, desired));
+
+        live.getData().put("token", "dG9rZW4=");
+        assertFalse(ResourceComparator.isSecretDataUnchanged(live, desired));
+    }
+
+    @Test
+    public void testMissingLive() {
+        assertFalse(ResourceComparator.isUnchanged(null,
+                new ConfigMapBuilder().withNewMetadata().withName("cfg").endMetadata().build()));
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ResourcePaths}.
+ */
+public class ResourcePathsTest {
+    @Test
+    public void testKnownTypes() {
+        assertEquals("deployments", ResourcePaths.knownType("Deployment").getPlural());
+        assertTrue(ResourcePaths.knownType("Deployment").isNamespaced());
+        assertFalse(ResourcePaths.knownType("Namespace").isNamespaced());
+        assertNull(ResourcePaths.knownType("NetworkPolicy"));
+    }
+
+    @Test
+    public void testResourceUrl() {
+        ResourcePaths.ResourceType deployments = ResourcePaths.knownType("Deployment");
+        assertEquals("https://example.com/apis/apps/v1/namespaces/app/deployments/web",
+                ResourcePaths.resource("https://example.com/", "apps/v1", deployments, "app", "web")
+                        .build().toString());
+
+        ResourcePaths.ResourceType namespaces = ResourcePaths.knownType("Namespace");
+        assertEquals("https://example.com/api/v1/namespaces/app",
+                ResourcePaths.resource("https://example.com", "v1", namespaces, null, "app").build().toString());
+    }
+
+    @Test
+    public void testMasterUrlWithPath() {
+        ResourcePaths.ResourceType configMaps = ResourcePaths.knownType("ConfigMap");
+        assertEquals("https://example.com/k8s/clusters/c1/api/v1/namespaces/default/configmaps",
+                ResourcePaths.resource("https://example.com/k8s/clusters/c1/", "v1", configMaps, "default", null)
+                        .build().toString());
+        assertEquals("https://example.com/apis/networking.k8s.io/v1",
+                ResourcePaths.groupVersion("https://example.com/", "networking.k8s.io/v1").build().toString());
+    }
+}
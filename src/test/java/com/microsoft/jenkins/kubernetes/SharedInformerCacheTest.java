@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.api.model.SecretBuilder;
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link SharedInformerCache}.
+ */
+public class SharedInformerCacheTest {
+    @Test
+    public void testClusterKey() {
+        Config a = new ConfigBuilder().withMasterUrl("https://k8s.example.com").withOauthToken("token-a").build();
+        Config a2 = new ConfigBuilder().withMasterUrl("https://k8s.example.com").withOauthToken("token-a").build();
+        Config b = new ConfigBuilder().withMasterUrl("https://k8s.example.com").withOauthToken("token-b").build();
+        Config c = new ConfigBuilder().withMasterUrl("https://other.example.com").withOauthToken("token-a").build();
+
+        assertEquals(SharedInformerCache.clusterKey(a), SharedInformerCache.clusterKey(a2));
+        assertNotEquals(SharedInformerCache.clusterKey(a), SharedInformerCache.clusterKey(b));
+        assertNotEquals(SharedInformerCache.clusterKey(a), SharedInformerCache.clusterKey(c));
+    }
+
+    @Test
+    public void testUnwatchedKindIsMiss() {
+        SharedInformerCache cache = new SharedInformerCache(0);
+        KubernetesClient client = new DefaultKubernetesClient(
+                new ConfigBuilder().withMasterUrl("https://k8s.example.com").build());
+        SharedInformerCache.Lease lease = cache.acquire(client);
+        try {
+            assertNull(lease.get("ConfigMap", "default", "cfg"));
+            assertEquals(0, lease.getHits());
+            assertEquals(1, lease.getMisses());
+            assertEquals(0, lease.getHitRate());
+        } finally {
+            lease.close();
+            cache.evictIdle();
+            client.close();
+        }
+    }
+
+    @Test
+    public void testSecretsNotWatched() {
+        SharedInformerCache cache = new SharedInformerCache(0);
+        KubernetesClient client = new DefaultKubernetesClient(
+                new ConfigBuilder().withMasterUrl("https://k8s.example.com").build());
+        SharedInformerCache.Lease lease = cache.acquire(client);
+        try {
+            lease.watch("Secret", "v1", "default", Secret.class);
+            // nothing to confirm, as no informer is started
+            assertEquals(0, lease.confirmVersions());
+            lease.offer("Secret", "default", new SecretBuilder()
+                    .withNewMetadata().withName("creds").withResourceVersion("1").endMetadata()
+                    .build());
+            assertNull(lease.get("Secret", "default", "creds"));
+        } finally {
+            lease.close();
+            cache.evictIdle();
+            client.close();
+        }
+    }
+}
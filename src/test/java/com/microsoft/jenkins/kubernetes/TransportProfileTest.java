@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes;
+
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link TransportProfile}.
+ */
+public class TransportProfileTest {
+    @Test
+    public void testPresetOverrides() {
+        TransportProfile profile = new TransportProfile("CROSS_REGION");
+        assertEquals(TransportPreset.CROSS_REGION, profile.getPresetEnum());
+        assertEquals(Integer.valueOf(16), profile.getEffectiveMaxConcurrentRequestsPerHost());
+
+        profile.setMaxConcurrentRequestsPerHost(32);
+        profile.setTlsSessionCacheSize(0);
+        assertEquals(Integer.valueOf(32), profile.getEffectiveMaxConcurrentRequestsPerHost());
+        assertNull(profile.getTlsSessionCacheSize());
+        assertEquals(Integer.valueOf(256), profile.getEffectiveTlsSessionCacheSize());
+
+        assertEquals(ApiServerRateLimiter.DEFAULT_QPS, profile.getEffectiveQps(), 0);
+        assertEquals(ApiServerRateLimiter.DEFAULT_BURST, profile.getEffectiveBurst());
+        profile.setQps(2.5);
+        assertEquals(2.5, profile.getEffectiveQps(), 0);
+        assertEquals(3, profile.getEffectiveBurst());
+        profile.setBurst(10);
+        assertEquals(10, profile.getEffectiveBurst());
+
+        TransportProfile defaults = new TransportProfile("DEFAULT");
+        assertEquals(TransportPreset.DEFAULT.name(), defaults.getPreset());
+        assertNull(defaults.getEffectiveMaxConcurrentRequests());
+        assertEquals(TransportPreset.DEFAULT, new TransportProfile("unknown").getPresetEnum());
+    }
+
+    @Test
+    public void testDigest() {
+        TransportProfile a = new TransportProfile("IN_CLUSTER");
+        TransportProfile b = new TransportProfile("IN_CLUSTER");
+        assertEquals(a.digest(), b.digest());
+
+        b.setHttp2(false);
+        assertNotEquals(a.digest(), b.digest());
+
+        // an override equal to the preset value does not change the effective settings
+        TransportProfile c = new TransportProfile("IN_CLUSTER");
+        c.setMaxConcurrentRequests(TransportPreset.IN_CLUSTER.getMaxConcurrentRequests());
+        assertEquals(a.digest(), c.digest());
+    }
+
+    @Test
+    public void testConfigure() {
+        Config config = new ConfigBuilder().withMasterUrl("https://example.com").build();
+        TransportProfile profile = new TransportProfile("IN_CLUSTER");
+        profile.setReadTimeoutMillis(5000);
+        profile.configure(config);
+        assertEquals(128, config.getMaxConcurrentRequests());
+        assertEquals(64, config.getMaxConcurrentRequestsPerHost());
+        assertEquals(2000, config.getConnectionTimeout());
+        assertEquals(5000, config.getRequestTimeout());
+
+        Config untouched = new ConfigBuilder().withMasterUrl("https://example.com").build();
+        int requests = untouched.getMaxConcurrentRequests();
+        new TransportProfile("DEFAULT").configure(untouched);
+        assertEquals(requests, untouched.getMaxConcurrentRequests());
+    }
+
+    @Test
+    public void testCustomize() {
+        Config config = new ConfigBuilder().withMasterUrl("http://example.com").build();
+        OkHttpClient http = new OkHttpClient();
+
+        TransportProfile profile = new TransportProfile("CROSS_REGION");
+        OkHttpClient customized = profile.customize(http, config);
+        assertEquals(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1), customized.protocols());
+        assertEquals(300000, customized.callTimeoutMillis());
+        assertSame(http.dispatcher(), customized.dispatcher());
+
+        profile.setHttp2(false);
+        customized = profile.customize(http, config);
+        assertEquals(Collections.singletonList(Protocol.HTTP_1_1), customized.protocols());
+
+        customized = new TransportProfile("DEFAULT").customize(http, config);
+        assertSame(http.connectionPool(), customized.connectionPool());
+        assertEquals(http.protocols(), customized.protocols());
+    }
+
+    @Test
+    public void testResolve() {
+        TransportProfile step = new TransportProfile("IN_CLUSTER");
+        TransportProfile cluster = new TransportProfile("CROSS_REGION");
+        TransportProfile global = new TransportProfile("DEFAULT");
+        List<ClusterTransportProfile> clusters = Collections.singletonList(
+                new ClusterTransportProfile("https://Remote.example.com/", cluster));
+
+        assertSame(step, TransportProfile.resolve(step, clusters, global, "https://remote.example.com"));
+        assertSame(cluster, TransportProfile.resolve(null, clusters, global, "https://remote.example.com"));
+        assertSame(global, TransportProfile.resolve(null, clusters, global, "https://local.example.com"));
+        assertNull(TransportProfile.resolve(null, null, null, "https://local.example.com"));
+    }
+}
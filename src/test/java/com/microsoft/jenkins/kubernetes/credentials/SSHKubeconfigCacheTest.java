@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes.credentials;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link SSHKubeconfigCache}.
+ */
+public class SSHKubeconfigCacheTest {
+    @Test
+    public void testQuote() {
+        assertEquals("'.kube/config'", SSHKubeconfigCache.quote(".kube/config"));
+        assertEquals("'it'\\''s config'", SSHKubeconfigCache.quote("it's config"));
+    }
+
+    @Test
+    public void testLeasedSessionNotEvicted() {
+        SSHKubeconfigCache cache = new SSHKubeconfigCache(0, 0);
+        SSHKubeconfigCache.PooledSession session = cache.acquire("example.com", 22, null, "fingerprint");
+        cache.evictIdle();
+        assertFalse(session.isClosed());
+
+        cache.release(session);
+        cache.evictIdle();
+        assertTrue(session.isClosed());
+        SSHKubeconfigCache.PooledSession next = cache.acquire("example.com", 22, null, "fingerprint");
+        assertTrue(next != session);
+        cache.release(next);
+    }
+}
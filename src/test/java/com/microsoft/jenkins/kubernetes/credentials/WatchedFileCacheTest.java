@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes.credentials;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link WatchedFileCache}.
+ */
+public class WatchedFileCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPolling() throws Exception {
+        WatchedFileCache cache = new WatchedFileCache(true, 0);
+        File file = folder.newFile("config");
+        FileUtils.writeStringToFile(file, "a");
+
+        assertEquals("a", cache.read(file));
+        assertEquals("a", cache.read(file));
+        assertEquals(1, cache.getReads());
+
+        FileUtils.writeStringToFile(file, "bb");
+        assertEquals("bb", cache.read(file));
+        assertEquals(2, cache.getReads());
+
+        assertEquals(true, file.delete());
+        try {
+            cache.read(file);
+            fail();
+        } catch (FileNotFoundException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+        WatchedFileCache cache = new WatchedFileCache(false, 0);
+        File file = folder.newFile("config");
+        FileUtils.writeStringToFile(file, "a");
+
+        assertEquals("a", cache.read(file));
+        assertEquals("a", cache.read(file));
+        assertEquals(1, cache.getReads());
+
+        FileUtils.writeStringToFile(file, "b");
+        // the watch events are delivered asynchronously
+        final long timeout = 30000;
+        long deadline = System.currentTimeMillis() + timeout;
+        while (!"b".equals(cache.read(file)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertEquals("b", cache.read(file));
+    }
+}
@@ -42,6 +42,18 @@ public class CommonUtilsTest {
         assertEquals(expected, IOUtils.toString(result, Constants.DEFAULT_CHARSET));
     }
 
+    @Test
+    public void testReplaceMacroLargeContent() throws Exception {
+        // larger than the template size limit, substituted while streamed
+        String line = "image: app:${tag} # $$tag $missing\n";
+        StringBuilder original = new StringBuilder();
+        while (original.length() <= MacroTemplateCache.MAX_TEMPLATE_BYTES) {
+            original.append(line);
+        }
+        testReplaceMacro(original.toString().replace(line, "image: app:1 # $tag $missing\n"),
+                original.toString(), ImmutableMap.of("tag", "1"));
+    }
+
     @Test
     public void testFilestream() throws Exception {
         InputStream in = CommonUtilsTest.class.getResourceAsStream("CommonUtilsTest.data");
@@ -62,6 +74,33 @@ public class CommonUtilsTest {
         }
     }
 
+    @Test
+    public void testReadHead() throws Exception {
+        InputStream in = new ByteArrayInputStream("abcdef".getBytes(Constants.DEFAULT_CHARSET));
+        assertEquals("abcd", new String(CommonUtils.readHead(in, 3), Constants.DEFAULT_CHARSET));
+        assertEquals("ef", IOUtils.toString(in, Constants.DEFAULT_CHARSET));
+
+        in = new ByteArrayInputStream("ab".getBytes(Constants.DEFAULT_CHARSET));
+        assertEquals("ab", new String(CommonUtils.readHead(in, 3), Constants.DEFAULT_CHARSET));
+    }
+
+    @Test
+    public void testParseLabelSelector() {
+        assertTrue(CommonUtils.parseLabelSelector(null).isEmpty());
+        assertTrue(CommonUtils.parseLabelSelector("  ").isEmpty());
+        assertEquals(ImmutableMap.of("app", "web"), CommonUtils.parseLabelSelector("app=web"));
+        assertEquals(ImmutableMap.of("app", "web", "tier", "frontend"),
+                CommonUtils.parseLabelSelector("app=web, tier==frontend"));
+        for (String invalid : new String[]{"app", "app!=web", "=web", "app=web=1"}) {
+            try {
+                CommonUtils.parseLabelSelector(invalid);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
     @Test
     public void testRandomString() {
         assertEquals(16, CommonUtils.randomString().length());
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes.util;
+
+import com.google.common.collect.ImmutableMap;
+import hudson.Util;
+import hudson.util.VariableResolver;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link MacroSubstitutingReader}.
+ */
+public class MacroSubstitutingReaderTest {
+    private static final Map<String, String> VARIABLES = ImmutableMap.<String, String>builder()
+            .put("a", "1")
+            .put("abc", "value")
+            .put("a.b", "dotted")
+            .put("dollar", "$a")
+            .put("ref", "${abc}")
+            .put("empty", "")
+            .build();
+
+    @Test
+    public void testSemantics() throws Exception {
+        assertMatchesUtil("");
+        assertMatchesUtil("plain text");
+        assertMatchesUtil("$");
+        assertMatchesUtil("$$");
+        assertMatchesUtil("$$$");
+        assertMatchesUtil("$$a");
+        assertMatchesUtil("$a");
+        assertMatchesUtil("$abc$a");
+        assertMatchesUtil("$abcd");
+        assertMatchesUtil("${abc}d");
+        assertMatchesUtil("${a.b}");
+        assertMatchesUtil("$a.b");
+        assertMatchesUtil("${}");
+        assertMatchesUtil("${abc");
+        assertMatchesUtil("${a$abc}");
+        assertMatchesUtil("${a b}");
+        assertMatchesUtil("$unknown$a");
+        assertMatchesUtil("${unknown}${a}");
+        assertMatchesUtil("$dollar$ref");
+        assertMatchesUtil("${empty}x$empty");
+        assertMatchesUtil("$-$ $\n$");
+        assertMatchesUtil("value: \"${abc}\"\n  - $a\n");
+    }
+
+    @Test
+    public void testRandomInputs() throws Exception {
+        final String alphabet = "$${}.ab c_\n";
+        final int inputs = 2000;
+        final int maxLength = 40;
+        Random random = new Random(0);
+        for (int i = 0; i < inputs; ++i) {
+            int length = random.nextInt(maxLength);
+            StringBuilder sb = new StringBuilder(length);
+            for (int j = 0; j < length; ++j) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertMatchesUtil(sb.toString());
+        }
+    }
+
+    @Test
+    public void testLongVariables() throws Exception {
+        String name = CommonUtils.randomString(100);
+        Map<String, String> variables = ImmutableMap.of(name, "x");
+        String text = "$" + name + "-${" + name + "}-${" + name;
+        assertEquals("x-x-${" + name, substitute(text, variables, 1));
+        assertEquals("x-x-${" + name, substitute(text, variables, MacroSubstitutingReader.DEFAULT_BUFFER_SIZE));
+    }
+
+    private static void assertMatchesUtil(String text) throws Exception {
+        String expected = Util.replaceMacro(text, new VariableResolver.ByMap<>(VARIABLES));
+        final int[] bufferSizes = {1, 2, 3, 7, MacroSubstitutingReader.DEFAULT_BUFFER_SIZE};
+        for (int bufferSize : bufferSizes) {
+            assertEquals(text, expected, substitute(text, VARIABLES, bufferSize));
+        }
+    }
+
+    private static String substitute(String text, Map<String, String> variables, int bufferSize) throws Exception {
+        return IOUtils.toString(new MacroSubstitutingReader(
+                new StringReader(text), new VariableResolver.ByMap<>(variables), bufferSize));
+    }
+}
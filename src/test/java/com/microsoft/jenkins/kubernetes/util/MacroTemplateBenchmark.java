@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes.util;
+
+import com.google.common.collect.ImmutableMap;
+import hudson.Util;
+import hudson.util.VariableResolver;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the substitution of a precompiled {@link MacroTemplate} with {@link Util#replaceMacro(String,
+ * VariableResolver)} and the streaming {@link MacroSubstitutingReader}, on configurations of 1 KB, 100 KB and 10 MB
+ * with a variable every few lines.
+ * <p>
+ * {@code Util.replaceMacro} copies the whole text for every replaced variable, so its time grows with the square of
+ * the size, and a single call takes minutes on the 10 MB configuration.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.microsoft.jenkins.kubernetes.util.MacroTemplateBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MacroTemplateBenchmark {
+    private static final String BLOCK = "apiVersion: apps/v1\n"
+            + "kind: Deployment\n"
+            + "metadata:\n"
+            + "  name: web-${BUILD_NUMBER}\n"
+            + "  labels:\n"
+            + "    app: web\n"
+            + "    price: \"$$5\"\n"
+            + "spec:\n"
+            + "  replicas: 3\n"
+            + "  template:\n"
+            + "    spec:\n"
+            + "      containers:\n"
+            + "      - name: web\n"
+            + "        image: registry.example.com/web:$IMAGE_TAG\n"
+            + "        env:\n"
+            + "        - name: UNRESOLVED\n"
+            + "          value: ${NOT_SET}\n"
+            + "---\n";
+
+    @Param({"1024", "102400", "10485760"})
+    private int size;
+
+    private String content;
+    private MacroTemplate template;
+    private VariableResolver<String> resolver;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder(size + BLOCK.length());
+        while (sb.length() < size) {
+            sb.append(BLOCK);
+        }
+        content = sb.substring(0, size);
+        template = MacroTemplate.compile(content);
+        resolver = new VariableResolver.ByMap<>(ImmutableMap.of("BUILD_NUMBER", "42", "IMAGE_TAG", "1.0.42"));
+    }
+
+    @Benchmark
+    public String replaceMacro() {
+        return Util.replaceMacro(content, resolver);
+    }
+
+    @Benchmark
+    public String compiledTemplate() {
+        return template.render(resolver);
+    }
+
+    @Benchmark
+    public String compileAndRender() {
+        return MacroTemplate.compile(content).render(resolver);
+    }
+
+    @Benchmark
+    public String streamingReader() throws IOException {
+        return IOUtils.toString(new MacroSubstitutingReader(new StringReader(content), resolver));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MacroTemplateBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes.util;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link MacroTemplateCache}.
+ */
+public class MacroTemplateCacheTest {
+    private static final Charset UTF_8 = Charset.forName(Constants.DEFAULT_CHARSET);
+
+    @Test
+    public void testCachedByContent() {
+        final int maxCachedChars = 1024;
+        MacroTemplateCache cache = new MacroTemplateCache(maxCachedChars, maxCachedChars, TimeUnit.MINUTES.toMillis(1));
+        MacroTemplate a = cache.getTemplate("name: $NAME".getBytes(UTF_8), UTF_8);
+        assertSame(a, cache.getTemplate("name: $NAME".getBytes(UTF_8), UTF_8));
+        assertNotSame(a, cache.getTemplate("name: ${NAME}".getBytes(UTF_8), UTF_8));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testWeightBound() {
+        final int maxCachedChars = 100;
+        MacroTemplateCache cache = new MacroTemplateCache(maxCachedChars, maxCachedChars, TimeUnit.MINUTES.toMillis(1));
+        cache.getTemplate(CommonUtils.randomString(maxCachedChars).getBytes(UTF_8), UTF_8);
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes.util;
+
+import com.google.common.collect.ImmutableMap;
+import hudson.Util;
+import hudson.util.VariableResolver;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link MacroTemplate}.
+ */
+public class MacroTemplateTest {
+    private static final Map<String, String> VARIABLES = ImmutableMap.<String, String>builder()
+            .put("a", "1")
+            .put("abc", "value")
+            .put("a.b", "dotted")
+            .put("dollar", "$a")
+            .put("ref", "${abc}")
+            .put("empty", "")
+            .build();
+
+    @Test
+    public void testSemantics() {
+        final String[] texts = {
+                "", "plain text", "$", "$$", "$$$", "$$a", "$a", "$abc$a", "$abcd", "${abc}d", "${a.b}", "$a.b",
+                "${}", "${abc", "${a$abc}", "${a b}", "$unknown$a", "${unknown}${a}", "$dollar$ref",
+                "${empty}x$empty", "$-$ $\n$", "value: \"${abc}\"\n  - $a\n",
+        };
+        for (String text : texts) {
+            assertMatchesUtil(text);
+        }
+    }
+
+    @Test
+    public void testRandomInputs() {
+        final String alphabet = "$${}.ab c_\n";
+        final int inputs = 5000;
+        final int maxLength = 40;
+        Random random = new Random(0);
+        for (int i = 0; i < inputs; ++i) {
+            int length = random.nextInt(maxLength);
+            StringBuilder sb = new StringBuilder(length);
+            for (int j = 0; j < length; ++j) {
+                sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertMatchesUtil(sb.toString());
+        }
+    }
+
+    @Test
+    public void testRenderWithDifferentValues() {
+        MacroTemplate template = MacroTemplate.compile("image: app:${BUILD_NUMBER}, $$BUILD_NUMBER, $MISSING");
+        assertEquals(2, template.getVariableCount());
+        assertEquals("image: app:1, $BUILD_NUMBER, $MISSING",
+                template.render(new VariableResolver.ByMap<>(ImmutableMap.of("BUILD_NUMBER", "1"))));
+        assertEquals("image: app:2, $BUILD_NUMBER, x",
+                template.render(new VariableResolver.ByMap<>(ImmutableMap.of("BUILD_NUMBER", "2", "MISSING", "x"))));
+    }
+
+    private static void assertMatchesUtil(String text) {
+        VariableResolver<String> resolver = new VariableResolver.ByMap<>(VARIABLES);
+        assertEquals(text, Util.replaceMacro(text, resolver), MacroTemplate.compile(text).render(resolver));
+    }
+}
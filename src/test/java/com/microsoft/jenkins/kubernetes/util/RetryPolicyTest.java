@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes.util;
+
+import io.fabric8.kubernetes.api.model.StatusBuilder;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link RetryPolicy}.
+ */
+public class RetryPolicyTest {
+    private static KubernetesClientException error(int code) {
+        return new KubernetesClientException("error", code, null);
+    }
+
+    @Test
+    public void testShouldRetry() {
+        RetryPolicy policy = new RetryPolicy(2, 100, 1000);
+        assertTrue(policy.shouldRetry(1, error(409)));
+        assertTrue(policy.shouldRetry(2, error(503)));
+        assertFalse(policy.shouldRetry(3, error(503)));
+        assertFalse(policy.shouldRetry(1, error(404)));
+        assertFalse(policy.shouldRetry(1, error(422)));
+        assertFalse(policy.shouldRetry(1, new IOException("error")));
+        assertFalse(RetryPolicy.NONE.shouldRetry(1, error(429)));
+    }
+
+    @Test
+    public void testExponentialBackoffWithJitter() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 1000);
+        Random random = new Random(0);
+        for (int i = 0; i < 100; ++i) {
+            assertTrue(policy.getDelayMillis(1, error(500), random) < 100);
+            assertTrue(policy.getDelayMillis(3, error(500), random) < 400);
+            assertTrue(policy.getDelayMillis(10, error(500), random) < 1000);
+        }
+
+        // the jitter covers the whole range
+        long max = 0;
+        for (int i = 0; i < 100; ++i) {
+            max = Math.max(max, policy.getDelayMillis(4, error(500), random));
+        }
+        assertTrue(max > 400);
+    }
+
+    @Test
+    public void testRetryAfter() {
+        KubernetesClientException throttled = new KubernetesClientException("throttled", 429,
+                new StatusBuilder().withNewDetails().withRetryAfterSeconds(2).endDetails().build());
+        assertEquals(2000, RetryPolicy.getRetryAfterMillis(throttled));
+        assertEquals(0, RetryPolicy.getRetryAfterMillis(error(429)));
+
+        RetryPolicy policy = new RetryPolicy(3, 100, 1000);
+        assertEquals(2000, policy.getDelayMillis(1, throttled, new Random(0)));
+    }
+}
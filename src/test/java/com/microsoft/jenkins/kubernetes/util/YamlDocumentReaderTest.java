@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) Microsoft Corporation. All rights reserved.
+ * Licensed under the MIT License. See License.txt in the project root for
+ * license information.
+ */
+
+package com.microsoft.jenkins.kubernetes.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import hudson.util.VariableResolver;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link YamlDocumentReader}.
+ */
+public class YamlDocumentReaderTest {
+    @Test
+    public void testSplit() throws Exception {
+        assertEquals(ImmutableList.of(), split(""));
+        assertEquals(ImmutableList.of(), split("---\n"));
+        assertEquals(ImmutableList.of("a: 1\n"), split("a: 1"));
+        assertEquals(ImmutableList.of("a: 1\n", "b: 2\n"), split("a: 1\n---\nb: 2\n"));
+        assertEquals(ImmutableList.of("a: 1\n", "b: 2\n"), split("---\na: 1\n...\n---\nb: 2\n...\n"));
+        assertEquals(ImmutableList.of("a: 1\n", "b: 2\n"), split("--- # first\na: 1\n---\r\nb: 2\r\n"));
+    }
+
+    @Test
+    public void testEmptyDocumentsSkipped() throws Exception {
+        assertEquals(ImmutableList.of("a: 1\n", "# c\nb: 2\n"),
+                split("a: 1\n---\n# only a comment\n\n---\n# c\nb: 2\n"));
+        assertEquals(ImmutableList.of(), split("# only\n\n"));
+    }
+
+    @Test
+    public void testContentAfterMarker() throws Exception {
+        assertEquals(ImmutableList.of("--- |\n  text\n", "c: 3\n"), split("--- |\n  text\n--- \nc: 3"));
+    }
+
+    @Test
+    public void testNotMarkers() throws Exception {
+        String text = "a: '---'\n---x: 1\n----\n  ---\n....\n";
+        assertEquals(ImmutableList.of(text), split(text));
+    }
+
+    @Test
+    public void testWithSubstitution() throws Exception {
+        VariableResolver<String> resolver = new VariableResolver.ByMap<>(ImmutableMap.of("SEPARATOR", "---"));
+        YamlDocumentReader reader = new YamlDocumentReader(
+                new MacroSubstitutingReader(new StringReader("a: $SEPARATOR\n---\nb: 2\n"), resolver));
+        assertEquals("a: ---\n", reader.next());
+        assertEquals("b: 2\n", reader.next());
+        assertEquals(null, reader.next());
+        assertEquals(null, reader.next());
+    }
+
+    private static List<String> split(String text) throws Exception {
+        List<String> documents = new ArrayList<>();
+        try (YamlDocumentReader reader = new YamlDocumentReader(new StringReader(text))) {
+            String document = reader.next();
+            while (document != null) {
+                documents.add(document);
+                document = reader.next();
+            }
+        }
+        return documents;
+    }
+}